@@ -10,6 +10,7 @@ package org.cloudbus.cloudsim;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -79,8 +80,8 @@ public class Cloudlet {
 	/** The history. */
 	private StringBuffer history;
 
-	/** The res list. */
-	private final List<Resource> resList;
+	/** The res list, empty and shared until the Cloudlet is first allocated to a resource. */
+	private List<Resource> resList;
 
 	/** The index. */
 	private int index;
@@ -189,11 +190,6 @@ public class Cloudlet {
 				utilizationModelRam,
 				utilizationModelBw,
 				false);
-		vmId = -1;
-		accumulatedBwCost = 0.0;
-		costPerBw = 0.0;
-
-		requiredFiles = new LinkedList<String>();
 	}
 
 	/**
@@ -342,10 +338,9 @@ public class Cloudlet {
 		this.cloudletFileSize = Math.max(1, cloudletFileSize);
 		this.cloudletOutputSize = Math.max(1, cloudletOutputSize);
 
-		// Normally, a Cloudlet is only executed on a resource without being
-		// migrated to others. Hence, to reduce memory consumption, set the
-		// size of this ArrayList to be less than the default one.
-		resList = new ArrayList<Resource>(2);
+		// The list is only allocated when the Cloudlet is submitted to a
+		// resource, so that Cloudlets waiting or in transit stay small.
+		resList = Collections.emptyList();
 		index = -1;
 		this.record = record;
 
@@ -353,7 +348,8 @@ public class Cloudlet {
 		accumulatedBwCost = 0.0;
 		costPerBw = 0.0;
 
-		requiredFiles = new LinkedList<String>();
+		// the list of required files is created when the first one is added
+		requiredFiles = null;
 
 		setUtilizationModelCpu(utilizationModelCpu);
 		setUtilizationModelRam(utilizationModelRam);
@@ -728,6 +724,12 @@ public class Cloudlet {
 		res.resourceName = CloudSim.getEntityName(resourceID);
 
 		// add into a list if moving to a new grid resource
+		if (resList.isEmpty()) {
+			// Normally, a Cloudlet is only executed on a resource without being
+			// migrated to others. Hence, to reduce memory consumption, set the
+			// size of this ArrayList to be less than the default one.
+			resList = new ArrayList<Resource>(2);
+		}
 		resList.add(res);
 
 		if (index == -1 && record) {
@@ -1295,9 +1297,12 @@ public class Cloudlet {
 	/**
 	 * Gets the required files.
 	 * 
-	 * @return the required files
+	 * @return the required files, or an empty list if there is none
 	 */
 	public List<String> getRequiredFiles() {
+		if (requiredFiles == null) {
+			return Collections.emptyList();
+		}
 		return requiredFiles;
 	}
 
@@ -1318,7 +1323,7 @@ public class Cloudlet {
 	 */
 	public boolean addRequiredFile(final String fileName) {
 		// if the list is empty
-		if (getRequiredFiles() == null) {
+		if (requiredFiles == null) {
 			setRequiredFiles(new LinkedList<String>());
 		}
 
@@ -50,6 +50,19 @@ public abstract class CloudletScheduler {
 	 */
 	public abstract double updateVmProcessing(double currentTime, List<Double> mipsShare);
 
+	/**
+	 * Tells whether {@link #updateVmProcessing(double, List)} would change nothing, so that callers
+	 * which update the processing only to keep it current can skip the update. The default is to
+	 * answer false, i.e. to always update.
+	 * 
+	 * @param currentTime current simulation time
+	 * @param mipsShare array with MIPS share of each processor available to the scheduler
+	 * @return true if the processing is already up to date
+	 */
+	public boolean isProcessingUpToDate(double currentTime, List<Double> mipsShare) {
+		return false;
+	}
+
 	/**
 	 * Receives an cloudlet to be executed in the VM managed by this scheduler.
 	 * 
@@ -108,6 +108,14 @@ public class CloudletSchedulerDynamicWorkload extends CloudletSchedulerTimeShare
 		return nextEvent;
 	}
 
+	/**
+	 * The updates of this scheduler are never skipped.
+	 */
+	@Override
+	public boolean isProcessingUpToDate(double currentTime, List<Double> mipsShare) {
+		return false;
+	}
+
 	/**
 	 * Receives an cloudlet to be executed in the VM managed by this scheduler.
 	 * 
@@ -108,6 +108,23 @@ public class CloudletSchedulerTimeShared extends CloudletScheduler {
 		return nextEvent;
 	}
 
+	/**
+	 * The processing is up to date if it was updated at this time with an equal MIPS share,
+	 * and no cloudlet has finished since, e.g. a cloudlet of length 0 submitted in the meantime.
+	 */
+	@Override
+	public boolean isProcessingUpToDate(double currentTime, List<Double> mipsShare) {
+		if (currentTime != getPreviousTime() || !mipsShare.equals(getCurrentMipsShare())) {
+			return false;
+		}
+		for (ResCloudlet rcl : getCloudletExecList()) {
+			if (rcl.getRemainingCloudletLength() == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Gets the capacity.
 	 * 
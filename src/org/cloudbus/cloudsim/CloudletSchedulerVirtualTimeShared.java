@@ -0,0 +1,371 @@
+/*
+ * Title: CloudSim Toolkit Description: CloudSim (Cloud Simulation) Toolkit for Modeling and
+ * Simulation of Clouds Licence: GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+
+/**
+ * CloudletSchedulerVirtualTimeShared is a {@link CloudletSchedulerTimeShared} whose updates do not
+ * walk the running cloudlets. On every update, all the cloudlets with the same number of PEs
+ * progress by the same amount of work. Each such group keeps the total work done since it was
+ * created, and each cloudlet the point of that total at which it finishes, in a min-heap. Finding
+ * the finished cloudlets and the next finish time then costs O(log n) per cloudlet that finishes
+ * instead of O(n) per update.
+ * <p>
+ * The progress of a cloudlet is only written to its {@link ResCloudlet} when it is read. The
+ * results are the same as those of {@link CloudletSchedulerTimeShared}, down to the rounding of
+ * the progress on each update and the order in which the finished cloudlets are returned.
+ *
+ * @see CloudletSchedulerTimeShared
+ */
+public class CloudletSchedulerVirtualTimeShared extends CloudletSchedulerTimeShared {
+
+	/** The cloudlets running with each number of PEs. */
+	private final Map<Integer, Lane> lanes;
+
+	/** The number of PEs used by the running cloudlets. */
+	private int pesInUse;
+
+	/** Gives the position of the cloudlets in the exec list to those that enter it. */
+	private long sequence;
+
+	/**
+	 * Creates a new CloudletSchedulerVirtualTimeShared object. This method must be invoked before
+	 * starting the actual simulation.
+	 *
+	 * @pre $none
+	 * @post $none
+	 */
+	public CloudletSchedulerVirtualTimeShared() {
+		super();
+		lanes = new HashMap<Integer, Lane>();
+	}
+
+	/**
+	 * Updates the processing of cloudlets running under management of this scheduler.
+	 *
+	 * @param currentTime current simulation time
+	 * @param mipsShare array with MIPS share of each processor available to the scheduler
+	 * @return time predicted completion time of the earliest finishing cloudlet, or 0 if there is
+	 *         no next events
+	 * @pre currentTime >= 0
+	 * @post $none
+	 */
+	@Override
+	public double updateVmProcessing(double currentTime, List<Double> mipsShare) {
+		setCurrentMipsShare(mipsShare);
+		double timeSpam = currentTime - getPreviousTime();
+
+		if (getCloudletExecList().size() == 0) {
+			setPreviousTime(currentTime);
+			return 0.0;
+		}
+
+		double capacity = getCapacity(mipsShare);
+		for (Lane lane : lanes.values()) {
+			lane.work += (long) (capacity * timeSpam * lane.pes * Consts.MILLION);
+		}
+
+		// check finished cloudlets, and finish them in the order of the exec list
+		List<VirtualResCloudlet> finished = new ArrayList<VirtualResCloudlet>();
+		for (Lane lane : lanes.values()) {
+			while (!lane.heap.isEmpty() && lane.heap.peek().isFinished()) {
+				VirtualResCloudlet rcl = lane.heap.poll();
+				rcl.detach();
+				finished.add(rcl);
+			}
+		}
+		if (!finished.isEmpty()) {
+			Collections.sort(finished, EXEC_ORDER);
+			Set<ResCloudlet> toRemove = Collections.newSetFromMap(new IdentityHashMap<ResCloudlet, Boolean>());
+			for (VirtualResCloudlet rcl : finished) {
+				pesInUse -= rcl.getNumberOfPes();
+				toRemove.add(rcl);
+				cloudletFinish(rcl);
+			}
+			getCloudletExecList().removeAll(toRemove);
+		}
+
+		// estimate finish time of cloudlets, the first of each lane finishing first
+		double nextEvent = Double.MAX_VALUE;
+		for (Lane lane : lanes.values()) {
+			if (lane.heap.isEmpty()) {
+				continue;
+			}
+			VirtualResCloudlet rcl = lane.heap.peek();
+			double estimatedFinishTime = currentTime
+					+ (rcl.getRemainingCloudletLength() / (getCapacity(mipsShare) * rcl.getNumberOfPes()));
+			if (estimatedFinishTime - currentTime < CloudSim.getMinTimeBetweenEvents()) {
+				estimatedFinishTime = currentTime + CloudSim.getMinTimeBetweenEvents();
+			}
+
+			if (estimatedFinishTime < nextEvent) {
+				nextEvent = estimatedFinishTime;
+			}
+		}
+
+		setPreviousTime(currentTime);
+		return nextEvent;
+	}
+
+	/**
+	 * The processing is up to date if it was updated at this time with an equal MIPS share,
+	 * and no cloudlet has finished since.
+	 */
+	@Override
+	public boolean isProcessingUpToDate(double currentTime, List<Double> mipsShare) {
+		if (currentTime != getPreviousTime() || !mipsShare.equals(getCurrentMipsShare())) {
+			return false;
+		}
+		for (Lane lane : lanes.values()) {
+			if (!lane.heap.isEmpty() && lane.heap.peek().isFinished()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the capacity, from the number of PEs in use kept by this scheduler.
+	 *
+	 * @param mipsShare the mips share
+	 * @return the capacity
+	 */
+	@Override
+	protected double getCapacity(List<Double> mipsShare) {
+		double capacity = 0.0;
+		int cpus = 0;
+		for (Double mips : mipsShare) {
+			capacity += mips;
+			if (mips > 0.0) {
+				cpus++;
+			}
+		}
+		currentCPUs = cpus;
+
+		if (pesInUse > currentCPUs) {
+			capacity /= pesInUse;
+		} else {
+			capacity /= currentCPUs;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Receives an cloudlet to be executed in the VM managed by this scheduler.
+	 *
+	 * @param cloudlet the submited cloudlet
+	 * @param fileTransferTime time required to move the required files from the SAN to the VM
+	 * @return expected finish time of this cloudlet
+	 * @pre gl != null
+	 * @post $none
+	 */
+	@Override
+	public double cloudletSubmit(Cloudlet cloudlet, double fileTransferTime) {
+		VirtualResCloudlet rcl = new VirtualResCloudlet(cloudlet);
+		rcl.setCloudletStatus(Cloudlet.INEXEC);
+		for (int i = 0; i < cloudlet.getNumberOfPes(); i++) {
+			rcl.setMachineAndPeId(0, i);
+		}
+
+		getCloudletExecList().add(rcl);
+		pesInUse += rcl.getNumberOfPes();
+
+		// use the current capacity to estimate the extra amount of
+		// time to file transferring. It must be added to the cloudlet length
+		double extraSize = getCapacity(getCurrentMipsShare()) * fileTransferTime;
+		long length = (long) (cloudlet.getCloudletLength() + extraSize);
+		cloudlet.setCloudletLength(length);
+		rcl.attach(getLane(rcl.getNumberOfPes()), rcl.getInitialRemainingWork());
+		return cloudlet.getCloudletLength() / getCapacity(getCurrentMipsShare());
+	}
+
+	@Override
+	public Cloudlet cloudletCancel(int cloudletId) {
+		Cloudlet cloudlet = super.cloudletCancel(cloudletId);
+		reindex();
+		return cloudlet;
+	}
+
+	@Override
+	public boolean cloudletPause(int cloudletId) {
+		boolean paused = super.cloudletPause(cloudletId);
+		reindex();
+		return paused;
+	}
+
+	@Override
+	public double cloudletResume(int cloudletId) {
+		// the estimate of the base class counts the resumed cloudlet among the PEs in use
+		for (ResCloudlet rcl : getCloudletPausedList()) {
+			if (rcl.getCloudletId() == cloudletId) {
+				pesInUse += rcl.getNumberOfPes();
+				double estimatedFinishTime = super.cloudletResume(cloudletId);
+				reindex();
+				return estimatedFinishTime;
+			}
+		}
+		return 0.0;
+	}
+
+	@Override
+	public Cloudlet migrateCloudlet() {
+		Cloudlet cloudlet = super.migrateCloudlet();
+		reindex();
+		return cloudlet;
+	}
+
+	/**
+	 * Rebuilds the lanes from the exec list, after cloudlets have entered or left it other than
+	 * through a submission or an update.
+	 */
+	private void reindex() {
+		List<ResCloudlet> execList = getCloudletExecList();
+		for (Lane lane : lanes.values()) {
+			for (VirtualResCloudlet rcl : lane.heap) {
+				rcl.detach();
+			}
+			lane.heap.clear();
+		}
+		pesInUse = 0;
+		for (ResCloudlet rcl : execList) {
+			pesInUse += rcl.getNumberOfPes();
+			if (!(rcl instanceof VirtualResCloudlet)) {
+				throw new IllegalStateException("Cloudlet #" + rcl.getCloudletId()
+						+ " was not submitted to " + getClass().getSimpleName());
+			}
+			VirtualResCloudlet vrcl = (VirtualResCloudlet) rcl;
+			vrcl.attach(getLane(vrcl.getNumberOfPes()), vrcl.remainingWork);
+		}
+	}
+
+	private Lane getLane(int pes) {
+		Lane lane = lanes.get(pes);
+		if (lane == null) {
+			lane = new Lane(pes);
+			lanes.put(pes, lane);
+		}
+		return lane;
+	}
+
+	/** Orders the cloudlets as they entered the exec list. */
+	private static final Comparator<VirtualResCloudlet> EXEC_ORDER = new Comparator<VirtualResCloudlet>() {
+
+		@Override
+		public int compare(VirtualResCloudlet a, VirtualResCloudlet b) {
+			return Long.compare(a.sequence, b.sequence);
+		}
+	};
+
+	/**
+	 * The running cloudlets with a given number of PEs, which all progress alike.
+	 */
+	private static final class Lane {
+
+		final int pes;
+
+		/** The work done by each cloudlet of the lane since the lane was created, in instructions. */
+		long work;
+
+		/** The cloudlets of the lane, the first to finish at the head. */
+		final PriorityQueue<VirtualResCloudlet> heap = new PriorityQueue<VirtualResCloudlet>(11,
+				new Comparator<VirtualResCloudlet>() {
+
+					@Override
+					public int compare(VirtualResCloudlet a, VirtualResCloudlet b) {
+						return Long.compare(a.finishPoint, b.finishPoint);
+					}
+				});
+
+		Lane(int pes) {
+			this.pes = pes;
+		}
+	}
+
+	/**
+	 * A cloudlet whose progress is the work done by its lane since it joined it.
+	 */
+	private final class VirtualResCloudlet extends ResCloudlet {
+
+		/** The work done by the cloudlet when it was submitted, as counted by ResCloudlet. */
+		private final long initialFinishedSoFar;
+
+		private Lane lane;
+
+		/** The work of the lane at which the cloudlet finishes. */
+		private long finishPoint;
+
+		/** The work of the lane already added to the progress of the ResCloudlet. */
+		private long syncedWork;
+
+		/** The work left, while the cloudlet is not in a lane. */
+		private long remainingWork;
+
+		private long sequence;
+
+		VirtualResCloudlet(Cloudlet cloudlet) {
+			super(cloudlet);
+			initialFinishedSoFar = cloudlet.getCloudletFinishedSoFar() * Consts.MILLION;
+		}
+
+		long getInitialRemainingWork() {
+			return getCloudlet().getCloudletTotalLength() * Consts.MILLION - initialFinishedSoFar;
+		}
+
+		void attach(Lane lane, long remaining) {
+			this.lane = lane;
+			syncedWork = lane.work;
+			finishPoint = lane.work + remaining;
+			sequence = CloudletSchedulerVirtualTimeShared.this.sequence++;
+			lane.heap.add(this);
+		}
+
+		void detach() {
+			sync();
+			remainingWork = finishPoint - lane.work;
+			lane = null;
+		}
+
+		/**
+		 * @return true if {@link #getRemainingCloudletLength()} is 0
+		 */
+		boolean isFinished() {
+			return finishPoint - lane.work < Consts.MILLION;
+		}
+
+		private void sync() {
+			if (lane != null && syncedWork != lane.work) {
+				updateCloudletFinishedSoFar(lane.work - syncedWork);
+				syncedWork = lane.work;
+			}
+		}
+
+		@Override
+		public long getRemainingCloudletLength() {
+			sync();
+			return super.getRemainingCloudletLength();
+		}
+
+		@Override
+		public void finalizeCloudlet() {
+			sync();
+			super.finalizeCloudlet();
+		}
+	}
+
+}
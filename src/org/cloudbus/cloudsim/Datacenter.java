@@ -12,11 +12,15 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.SimulationContext;
 
 
 /**
@@ -53,6 +57,9 @@ public class Datacenter extends SimEntity {
 	/** The scheduling interval. */
 	private double schedulingInterval;
 
+	/** The pool on which the hosts are updated in parallel, or null to update them in sequence. */
+	private ForkJoinPool hostUpdatePool;
+
 	/**
 	 * Allocates a new PowerDatacenter object.
 	 * 
@@ -870,10 +877,11 @@ public class Datacenter extends SimEntity {
 			List<? extends Host> list = getVmAllocationPolicy().getHostList();
 			double smallerTime = Double.MAX_VALUE;
 			// for each host...
+			double[] times = updateVmsProcessingInParallel(list, CloudSim.clock());
 			for (int i = 0; i < list.size(); i++) {
 				Host host = list.get(i);
 				// inform VMs to update processing
-				double time = host.updateVmsProcessing(CloudSim.clock());
+				double time = times != null ? times[i] : host.updateVmsProcessing(CloudSim.clock());
 				// what time do we expect that the next cloudlet will finish?
 				if (time < smallerTime) {
 					smallerTime = time;
@@ -890,6 +898,27 @@ public class Datacenter extends SimEntity {
 		}
 	}
 
+	/**
+	 * Updates the processing of the VMs of the hosts on the host update pool, if there is one and
+	 * the log is disabled, since the hosts log their updates. The hosts are updated in parallel, so
+	 * the callers combine the times in the order of the hosts to get the same results as in
+	 * sequence.
+	 * 
+	 * @param hosts the hosts
+	 * @param currentTime the current time
+	 * @return the times returned by {@link Host#updateVmsProcessing(double)}, in the order of the
+	 *         hosts, or null if the hosts have to be updated in sequence
+	 */
+	protected double[] updateVmsProcessingInParallel(List<? extends Host> hosts, double currentTime) {
+		if (getHostUpdatePool() == null || !Log.isDisabled() || hosts.size() < 2) {
+			return null;
+		}
+		double[] times = new double[hosts.size()];
+		getHostUpdatePool().invoke(
+				new HostUpdateTask(SimulationContext.current(), hosts, currentTime, times, 0, hosts.size()));
+		return times;
+	}
+
 	/**
 	 * Verifies if some cloudlet inside this PowerDatacenter already finished. If yes, send it to
 	 * the User/Broker
@@ -1176,4 +1205,85 @@ public class Datacenter extends SimEntity {
 		this.schedulingInterval = schedulingInterval;
 	}
 
+	/**
+	 * Gets the pool on which the hosts are updated in parallel.
+	 * 
+	 * @return the pool, or null if the hosts are updated in sequence
+	 */
+	public ForkJoinPool getHostUpdatePool() {
+		return hostUpdatePool;
+	}
+
+	/**
+	 * Sets the pool on which the hosts are updated in parallel, while the log is disabled. The
+	 * results are the same as in sequence as long as the VMs of different hosts share no mutable
+	 * state, e.g. a stochastic utilization model.
+	 * 
+	 * @param hostUpdatePool the pool, or null to update the hosts in sequence
+	 */
+	public void setHostUpdatePool(ForkJoinPool hostUpdatePool) {
+		this.hostUpdatePool = hostUpdatePool;
+	}
+
+	/**
+	 * Updates the processing of a range of hosts, splitting it among the threads of the pool.
+	 */
+	private static class HostUpdateTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/** The number of hosts below which a range is not split any further. */
+		private static final int THRESHOLD = 16;
+
+		private final SimulationContext context;
+
+		private final List<? extends Host> hosts;
+
+		private final double currentTime;
+
+		private final double[] times;
+
+		private final int from;
+
+		private final int to;
+
+		HostUpdateTask(SimulationContext context, List<? extends Host> hosts, double currentTime,
+				double[] times, int from, int to) {
+			this.context = context;
+			this.hosts = hosts;
+			this.currentTime = currentTime;
+			this.times = times;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(
+						new HostUpdateTask(context, hosts, currentTime, times, from, middle),
+						new HostUpdateTask(context, hosts, currentTime, times, middle, to));
+				return;
+			}
+			// the hosts read the clock of the simulation, which is bound to the calling thread
+			try {
+				context.call(new Callable<Void>() {
+
+					@Override
+					public Void call() {
+						for (int i = from; i < to; i++) {
+							times[i] = hosts.get(i).updateVmsProcessing(currentTime);
+						}
+						return null;
+					}
+				});
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
 }
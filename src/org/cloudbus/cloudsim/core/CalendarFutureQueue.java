@@ -0,0 +1,459 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A future event queue implemented as a calendar queue (R. Brown, "Calendar Queues: A Fast O(1)
+ * Priority Queue Implementation for the Simulation Event Set Problem", CACM 31(10), 1988). Events
+ * are hashed by time into an array of buckets ("days") of a fixed width, and each bucket is kept
+ * sorted. Taking the first event scans forward from the current day, so as long as the bucket
+ * width matches the spacing of the pending events both adding and removing an event cost O(1) on
+ * average. The number of buckets and their width are recomputed whenever the queue doubles or
+ * halves in size.
+ * <p>
+ * Events are handed out in the same order as {@link TreeSetFutureQueue}.
+ *
+ * @see FutureQueue
+ * @see TreeSetFutureQueue
+ */
+public class CalendarFutureQueue implements FutureQueue {
+
+	/** The minimal number of buckets. */
+	private static final int MIN_BUCKETS = 16;
+
+	/** How many of the earliest events are sampled to estimate the bucket width. */
+	private static final int WIDTH_SAMPLE_SIZE = 25;
+
+	/** The buckets; the number of buckets is always a power of two. */
+	private Bucket[] buckets;
+
+	/** The width of a bucket, in simulation time. */
+	private double width;
+
+	/** The day (time divided by the bucket width) the scan for the first event starts from. */
+	private long currentDay = 0;
+
+	/** The number of events in the queue. */
+	private int size = 0;
+
+	/** The serial. */
+	private long serial = 0;
+
+	/** The number of events that got serial 0 so far. */
+	private long firsts = 0;
+
+	/** The next serial of the events added last. */
+	private long lasts = LAST_SERIAL;
+
+	/**
+	 * Creates a calendar queue with a bucket width of 1.0. The width adapts to the pending events
+	 * as the queue grows.
+	 */
+	public CalendarFutureQueue() {
+		this(1.0);
+	}
+
+	/**
+	 * Creates a calendar queue with the given initial bucket width.
+	 *
+	 * @param width the initial bucket width, in simulation time
+	 */
+	public CalendarFutureQueue(double width) {
+		if (width <= 0 || Double.isInfinite(width) || Double.isNaN(width)) {
+			throw new IllegalArgumentException("The bucket width should be positive, but is:" + width);
+		}
+		this.width = width;
+		buckets = newBuckets(MIN_BUCKETS);
+	}
+
+	@Override
+	public void addEvent(SimEvent newEvent) {
+		long eventSerial = serial++;
+		newEvent.setSerial(eventSerial);
+		// serial 0 ties with the events added first; see FutureQueue for the order
+		insert(newEvent, newEvent.eventTime(), eventSerial == 0 ? Long.MIN_VALUE + firsts++ : eventSerial);
+		size++;
+		if (size > buckets.length << 1) {
+			resize(buckets.length << 1);
+		}
+	}
+
+	@Override
+	public void addEventFirst(SimEvent newEvent) {
+		newEvent.setSerial(0);
+		insert(newEvent, newEvent.eventTime(), Long.MIN_VALUE + firsts++);
+		size++;
+		if (size > buckets.length << 1) {
+			resize(buckets.length << 1);
+		}
+	}
+
+	@Override
+	public void addEventLast(SimEvent newEvent) {
+		long eventSerial = lasts++;
+		newEvent.setSerial(eventSerial);
+		insert(newEvent, newEvent.eventTime(), eventSerial);
+		size++;
+		if (size > buckets.length << 1) {
+			resize(buckets.length << 1);
+		}
+	}
+
+	@Override
+	public SimEvent peek() {
+		Bucket bucket = firstBucket();
+		return bucket == null ? null : bucket.events[bucket.head];
+	}
+
+	@Override
+	public SimEvent poll() {
+		Bucket bucket = firstBucket();
+		if (bucket == null) {
+			return null;
+		}
+		return removeFirst(bucket);
+	}
+
+	@Override
+	public SimEvent pollAt(double time) {
+		Bucket bucket = firstBucket();
+		if (bucket == null || bucket.times[bucket.head] != time) {
+			return null;
+		}
+		return removeFirst(bucket);
+	}
+
+	/**
+	 * Removes the first event of the bucket holding the first event of the queue.
+	 *
+	 * @param bucket the bucket
+	 * @return the first event
+	 */
+	private SimEvent removeFirst(Bucket bucket) {
+		SimEvent first = bucket.removeFirst();
+		size--;
+		if (size < buckets.length >> 1 && buckets.length > MIN_BUCKETS) {
+			resize(buckets.length >> 1);
+		}
+		return first;
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int bucket = 0;
+
+			private int next = buckets[0].head;
+
+			@Override
+			public boolean hasNext() {
+				while (bucket < buckets.length && next >= buckets[bucket].tail) {
+					bucket++;
+					if (bucket < buckets.length) {
+						next = buckets[bucket].head;
+					}
+				}
+				return bucket < buckets.length;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return buckets[bucket].events[next++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use FutureQueue.remove(SimEvent) instead.");
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		Bucket bucket = buckets[(int) (dayOf(event.eventTime()) & (buckets.length - 1))];
+		for (int i = bucket.head; i < bucket.tail; i++) {
+			if (bucket.events[i] == event) {
+				bucket.removeAt(i);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean removeAll(Collection<SimEvent> events) {
+		if (events.isEmpty()) {
+			return false;
+		}
+		Set<SimEvent> removed = Collections.newSetFromMap(new IdentityHashMap<SimEvent, Boolean>());
+		removed.addAll(events);
+		int previousSize = size;
+		for (Bucket bucket : buckets) {
+			int kept = bucket.head;
+			for (int i = bucket.head; i < bucket.tail; i++) {
+				if (!removed.contains(bucket.events[i])) {
+					bucket.move(i, kept++);
+				}
+			}
+			size -= bucket.tail - kept;
+			Arrays.fill(bucket.events, kept, bucket.tail, null);
+			bucket.tail = kept;
+		}
+		return size < previousSize;
+	}
+
+	@Override
+	public void clear() {
+		buckets = newBuckets(MIN_BUCKETS);
+		currentDay = 0;
+		size = 0;
+	}
+
+	/**
+	 * Finds the bucket holding the first event and moves the current day to that event.
+	 *
+	 * @return the bucket, or <tt>null</tt> if the queue is empty
+	 */
+	private Bucket firstBucket() {
+		if (size == 0) {
+			return null;
+		}
+		int mask = buckets.length - 1;
+
+		// scan one "year" of days starting from the current one
+		for (int n = 0; n < buckets.length; n++) {
+			Bucket bucket = buckets[(int) (currentDay & mask)];
+			if (bucket.head < bucket.tail && dayOf(bucket.times[bucket.head]) <= currentDay) {
+				return bucket;
+			}
+			currentDay++;
+		}
+
+		// the next event is more than a year ahead: look at the head of every bucket
+		Bucket first = null;
+		for (Bucket bucket : buckets) {
+			if (bucket.head < bucket.tail && (first == null || HeapFutureQueue.precedes(bucket.times[bucket.head],
+					bucket.ranks[bucket.head], first.times[first.head], first.ranks[first.head]))) {
+				first = bucket;
+			}
+		}
+		currentDay = dayOf(first.times[first.head]);
+		return first;
+	}
+
+	/**
+	 * Inserts an event into its bucket, without updating the size.
+	 *
+	 * @param event the event
+	 * @param time the event time
+	 * @param rank the ordering rank of the event
+	 */
+	private void insert(SimEvent event, double time, long rank) {
+		long day = dayOf(time);
+		if (day < currentDay) {
+			// keep the scan from skipping over an event that was added behind it
+			currentDay = day;
+		}
+		buckets[(int) (day & (buckets.length - 1))].add(event, time, rank);
+	}
+
+	/**
+	 * Rebuilds the queue with a new number of buckets and a bucket width estimated from the
+	 * spacing of the earliest pending events.
+	 *
+	 * @param bucketCount the new number of buckets
+	 */
+	private void resize(int bucketCount) {
+		Bucket[] old = buckets;
+		double newWidth = estimateWidth(old);
+		if (newWidth > 0 && !Double.isInfinite(newWidth)) {
+			width = newWidth;
+		}
+		buckets = newBuckets(bucketCount);
+		long firstDay = Long.MAX_VALUE;
+		for (Bucket bucket : old) {
+			for (int i = bucket.head; i < bucket.tail; i++) {
+				long day = dayOf(bucket.times[i]);
+				firstDay = Math.min(firstDay, day);
+				buckets[(int) (day & (bucketCount - 1))].add(bucket.events[i], bucket.times[i], bucket.ranks[i]);
+			}
+		}
+		currentDay = firstDay == Long.MAX_VALUE ? 0 : firstDay;
+	}
+
+	/**
+	 * Estimates a bucket width as three times the average separation of the earliest events,
+	 * ignoring separations larger than twice the average, as proposed by Brown.
+	 *
+	 * @param from the buckets holding the events
+	 * @return the estimated width, or <tt>0</tt> if it cannot be estimated
+	 */
+	private double estimateWidth(Bucket[] from) {
+		double[] sample = new double[WIDTH_SAMPLE_SIZE];
+		int count = 0;
+		for (Bucket bucket : from) {
+			for (int i = bucket.head; i < bucket.tail; i++) {
+				double time = bucket.times[i];
+				if (count == sample.length && time >= sample[count - 1]) {
+					continue;
+				}
+				int j = count == sample.length ? count - 1 : count++;
+				while (j > 0 && sample[j - 1] > time) {
+					sample[j] = sample[j - 1];
+					j--;
+				}
+				sample[j] = time;
+			}
+		}
+		if (count < 2) {
+			return 0;
+		}
+		double average = (sample[count - 1] - sample[0]) / (count - 1);
+		double sum = 0;
+		int separations = 0;
+		for (int i = 1; i < count; i++) {
+			double separation = sample[i] - sample[i - 1];
+			if (separation <= 2 * average) {
+				sum += separation;
+				separations++;
+			}
+		}
+		return separations == 0 ? 0 : 3 * sum / separations;
+	}
+
+	/**
+	 * Gets the day an event time falls into.
+	 *
+	 * @param time the event time
+	 * @return the day
+	 */
+	private long dayOf(double time) {
+		return (long) Math.floor(time / width);
+	}
+
+	/**
+	 * Creates an array of empty buckets.
+	 *
+	 * @param count the number of buckets
+	 * @return the buckets
+	 */
+	private static Bucket[] newBuckets(int count) {
+		Bucket[] result = new Bucket[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = new Bucket();
+		}
+		return result;
+	}
+
+	/**
+	 * A bucket of the calendar. The events are kept sorted in the slots between <tt>head</tt>
+	 * (inclusive) and <tt>tail</tt> (exclusive), so the first event is taken by moving the head.
+	 */
+	private static final class Bucket {
+
+		/** The initial capacity of a bucket. */
+		private static final int INITIAL_CAPACITY = 4;
+
+		SimEvent[] events = new SimEvent[INITIAL_CAPACITY];
+
+		double[] times = new double[INITIAL_CAPACITY];
+
+		long[] ranks = new long[INITIAL_CAPACITY];
+
+		int head = 0;
+
+		int tail = 0;
+
+		void add(SimEvent event, double time, long rank) {
+			if (tail == events.length) {
+				makeRoom();
+			}
+			// most events go to the end of their bucket, so search backwards
+			int i = tail;
+			while (i > head && HeapFutureQueue.precedes(time, rank, times[i - 1], ranks[i - 1])) {
+				move(i - 1, i);
+				i--;
+			}
+			events[i] = event;
+			times[i] = time;
+			ranks[i] = rank;
+			tail++;
+		}
+
+		SimEvent removeFirst() {
+			SimEvent first = events[head];
+			events[head++] = null;
+			if (head == tail) {
+				head = 0;
+				tail = 0;
+			}
+			return first;
+		}
+
+		void removeAt(int i) {
+			for (int j = i; j < tail - 1; j++) {
+				move(j + 1, j);
+			}
+			events[--tail] = null;
+			if (head == tail) {
+				head = 0;
+				tail = 0;
+			}
+		}
+
+		void move(int from, int to) {
+			events[to] = events[from];
+			times[to] = times[from];
+			ranks[to] = ranks[from];
+		}
+
+		private void makeRoom() {
+			int count = tail - head;
+			if (head > 0 && count < events.length >> 1) {
+				// reuse the slots freed at the head
+				System.arraycopy(events, head, events, 0, count);
+				System.arraycopy(times, head, times, 0, count);
+				System.arraycopy(ranks, head, ranks, 0, count);
+				Arrays.fill(events, count, tail, null);
+			} else {
+				int capacity = events.length << 1;
+				SimEvent[] newEvents = new SimEvent[capacity];
+				double[] newTimes = new double[capacity];
+				long[] newRanks = new long[capacity];
+				System.arraycopy(events, head, newEvents, 0, count);
+				System.arraycopy(times, head, newTimes, 0, count);
+				System.arraycopy(ranks, head, newRanks, 0, count);
+				events = newEvents;
+				times = newTimes;
+				ranks = newRanks;
+			}
+			head = 0;
+			tail = count;
+		}
+	}
+
+}
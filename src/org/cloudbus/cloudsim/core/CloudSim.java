@@ -9,9 +9,9 @@
 package org.cloudbus.cloudsim.core;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,31 +39,8 @@ public class CloudSim {
 	/** The Constant CLOUDSIM_VERSION_STRING. */
 	private static final String CLOUDSIM_VERSION_STRING = "3.0";
 
-	/** The id of CIS entity. */
-	private static int cisId = -1;
-
-	/** The id of CloudSimShutdown entity. */
-	@SuppressWarnings("unused")
-	private static int shutdownId = -1;
-
-	/** The CIS object. */
-	private static CloudInformationService cis = null;
-
 	/** The Constant NOT_FOUND. */
 	private static final int NOT_FOUND = -1;
-
-	/** The trace flag. */
-	@SuppressWarnings("unused")
-	private static boolean traceFlag = false;
-
-	/** The calendar. */
-	private static Calendar calendar = null;
-
-	/** The termination time. */
-	private static double terminateAt = -1;
-
-	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
-	private static double minTimeBetweenEvents = 0.1;
 	
 	/**
 	 * Initialises all the common attributes.
@@ -79,20 +56,21 @@ public class CloudSim {
 	private static void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser)
 			throws Exception {
 		initialize();
+		SimulationContext c = SimulationContext.current();
 		// NOTE: the order for the below 3 lines are important
-		traceFlag = _traceFlag;
+		c.traceFlag = _traceFlag;
 
 		// Set the current Wall clock time as the starting time of
 		// simulation
 		if (_calendar == null) {
-			calendar = Calendar.getInstance();
+			c.calendar = Calendar.getInstance();
 		} else {
-			calendar = _calendar;
+			c.calendar = _calendar;
 		}
 
 		// creates a CloudSimShutdown object
 		CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
-		shutdownId = shutdown.getId();
+		c.shutdownId = shutdown.getId();
 	}
 
 	/**
@@ -121,10 +99,11 @@ public class CloudSim {
 			initCommonVariable(cal, traceFlag, numUser);
 
 			// create a GIS object
-			cis = new CloudInformationService("CloudInformationService");
+			SimulationContext c = SimulationContext.current();
+			c.cis = new CloudInformationService("CloudInformationService");
 
 			// set all the above entity IDs
-			cisId = cis.getId();
+			c.cisId = c.cis.getId();
 		} catch (IllegalArgumentException s) {
 			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
 			Log.printLine(s.getMessage());
@@ -163,7 +142,33 @@ public class CloudSim {
 	    }
 	    
 	    init(numUser, cal, traceFlag);
-	    minTimeBetweenEvents = periodBetweenEvents;
+	    SimulationContext.current().minTimeBetweenEvents = periodBetweenEvents;
+	}
+
+	/**
+	 * Initialises CloudSim parameters with a given future event queue implementation. This method
+	 * should be called before creating any entities. All the {@link FutureQueue} implementations
+	 * hand events out in the same order, so the choice only affects the simulation speed.
+	 * 
+	 * @param numUser the number of User Entities created
+	 * @param cal starting time for this simulation. If it is <tt>null</tt>, then the time will be
+	 *            taken from <tt>Calendar.getInstance()</tt>
+	 * @param traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 * @param futureQueue the queue that will hold the future events, e.g. a
+	 *            {@link HeapFutureQueue} or a {@link CalendarFutureQueue}
+	 * @see #init(int, Calendar, boolean)
+	 * @pre numUser >= 0
+	 * @pre futureQueue != null
+	 * @post $none
+	 */
+	public static void init(int numUser, Calendar cal, boolean traceFlag, FutureQueue futureQueue) {
+		if (futureQueue == null) {
+			throw new IllegalArgumentException("The future event queue can't be null.");
+		}
+
+		init(numUser, cal, traceFlag);
+		futureQueue.clear();
+		SimulationContext.current().future = futureQueue;
 	}
 	
 	
@@ -188,11 +193,12 @@ public class CloudSim {
 			double clock = run();
 
 			// reset all static variables
-			cisId = -1;
-			shutdownId = -1;
-			cis = null;
-			calendar = null;
-			traceFlag = false;
+			SimulationContext c = SimulationContext.current();
+			c.cisId = -1;
+			c.shutdownId = -1;
+			c.cis = null;
+			c.calendar = null;
+			c.traceFlag = false;
 
 			return clock;
 		} catch (IllegalArgumentException e) {
@@ -229,7 +235,7 @@ public class CloudSim {
 	 * @return true, if successful; false otherwise.
 	 */
 	public static boolean terminateSimulation() {
-		running = false;
+		SimulationContext.current().running = false;
 		printMessage("Simulation: Reached termination time.");
 		return true;
 	}
@@ -241,10 +247,11 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean terminateSimulation(double time) {
-		if (time <= clock) {
+		SimulationContext c = SimulationContext.current();
+		if (time <= c.clock) {
 			return false;
 		} else {
-			terminateAt = time;
+			c.terminateAt = time;
 		}
 		return true;
 	}
@@ -255,7 +262,7 @@ public class CloudSim {
 	 * @return the minimum time between events.
 	 */
 	public static double getMinTimeBetweenEvents() {
-	    return minTimeBetweenEvents;
+	    return SimulationContext.current().minTimeBetweenEvents;
 	}
 
 	/**
@@ -269,6 +276,7 @@ public class CloudSim {
 	 */
 	public static Calendar getSimulationCalendar() {
 		// make a new copy
+		Calendar calendar = SimulationContext.current().calendar;
 		Calendar clone = calendar;
 		if (calendar != null) {
 			clone = (Calendar) calendar.clone();
@@ -285,7 +293,7 @@ public class CloudSim {
 	 * @post $result >= -1
 	 */
 	public static int getCloudInfoServiceEntityId() {
-		return cisId;
+		return SimulationContext.current().cisId;
 	}
 
 	/**
@@ -298,6 +306,7 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static List<Integer> getCloudResourceList() {
+		CloudInformationService cis = SimulationContext.current().cis;
 		if (cis == null) {
 			return null;
 		}
@@ -307,36 +316,7 @@ public class CloudSim {
 
 	// ======== SIMULATION METHODS ===============//
 
-	/** The entities. */
-	private static List<SimEntity> entities;
-
-	/** The future event queue. */
-	protected static FutureQueue future;
-
-	/** The deferred event queue. */
-	protected static DeferredQueue deferred;
-
-	/** The simulation clock. */
-	private static double clock;
-
-	/** Flag for checking if the simulation is running. */
-	private static boolean running;
-
-	/** The entities by name. */
-	private static Map<String, SimEntity> entitiesByName;
-
-	// The predicates used in entity wait methods
-	/** The wait predicates. */
-	private static Map<Integer, Predicate> waitPredicates;
-
-	/** The paused. */
-	private static boolean paused = false;
-
-	/** The pause at. */
-	private static long pauseAt = -1;
-
-	/** The abrupt terminate. */
-	private static boolean abruptTerminate = false;
+	// The state of the simulation is kept in the SimulationContext of the calling thread.
 
 	/**
 	 * Initialise the simulation for stand alone simulations. This function should be called at the
@@ -344,13 +324,21 @@ public class CloudSim {
 	 */
 	protected static void initialize() {
 		Log.printLine("Initialising...");
-		entities = new ArrayList<SimEntity>();
-		entitiesByName = new LinkedHashMap<String, SimEntity>();
-		future = new FutureQueue();
-		deferred = new DeferredQueue();
-		waitPredicates = new HashMap<Integer, Predicate>();
-		clock = 0;
-		running = false;
+		SimulationContext c = SimulationContext.current();
+		c.entities = new ArrayList<SimEntity>();
+		c.entitiesByName = new LinkedHashMap<String, SimEntity>();
+		c.future = new HeapFutureQueue();
+		c.deferred = new DeferredQueue();
+		c.pendingEvents = new PendingEventIndex();
+		c.waitPredicates = new HashMap<Integer, Predicate>();
+		c.entitiesToRun = new BitSet();
+		c.eventPool = c.recycleEvents ? new EventPool(c.checkRecycledEvents) : null;
+		c.clock = 0;
+		c.processedEventCount = 0;
+		c.running = false;
+		if (c.profiler != null) {
+			c.profiler.reset();
+		}
 	}
 
 	// The two standard predicates
@@ -369,7 +357,17 @@ public class CloudSim {
 	 * @return the simulation time
 	 */
 	public static double clock() {
-		return clock;
+		return SimulationContext.current().clock;
+	}
+
+	/**
+	 * Gets the number of events processed since the simulation was initialised. It is kept after
+	 * the simulation ends, so that it can be compared between runs.
+	 * 
+	 * @return the number of events
+	 */
+	public static long getProcessedEventCount() {
+		return SimulationContext.current().processedEventCount;
 	}
 
 	/**
@@ -378,7 +376,7 @@ public class CloudSim {
 	 * @return The number of entities
 	 */
 	public static int getNumEntities() {
-		return entities.size();
+		return SimulationContext.current().entities.size();
 	}
 
 	/**
@@ -388,7 +386,7 @@ public class CloudSim {
 	 * @return The entity, or if it could not be found
 	 */
 	public static SimEntity getEntity(int id) {
-		return entities.get(id);
+		return SimulationContext.current().entities.get(id);
 	}
 
 	/**
@@ -398,7 +396,7 @@ public class CloudSim {
 	 * @return The entity
 	 */
 	public static SimEntity getEntity(String name) {
-		return entitiesByName.get(name);
+		return SimulationContext.current().entitiesByName.get(name);
 	}
 
 	/**
@@ -408,7 +406,7 @@ public class CloudSim {
 	 * @return The entity's unique id number
 	 */
 	public static int getEntityId(String name) {
-		SimEntity obj = entitiesByName.get(name);
+		SimEntity obj = SimulationContext.current().entitiesByName.get(name);
 		if (obj == null) {
 			return NOT_FOUND;
 		} else {
@@ -458,7 +456,7 @@ public class CloudSim {
 		// create a new list to prevent the user from changing
 		// the list of entities used by Simulation
 		List<SimEntity> list = new LinkedList<SimEntity>();
-		list.addAll(entities);
+		list.addAll(SimulationContext.current().entities);
 		return list;
 	}
 
@@ -471,19 +469,20 @@ public class CloudSim {
 	 * @param e The new entity
 	 */
 	public static void addEntity(SimEntity e) {
+		SimulationContext c = SimulationContext.current();
 		SimEvent evt;
-		if (running) {
+		if (c.running) {
 			// Post an event to make this entity
-			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
-			future.addEvent(evt);
+			evt = new SimEvent(SimEvent.CREATE, c.clock, 1, 0, 0, e);
+			addFutureEvent(c, evt);
 		}
 		if (e.getId() == -1) { // Only add once!
 			
 			//System.out.println("From CloudSim.addEntity(): Adding SimEntity "+e.getName());
-			int id = entities.size();
+			int id = c.entities.size();
 			e.setId(id);
-			entities.add(e);
-			entitiesByName.put(e.getName(), e);
+			c.entities.add(e);
+			c.entitiesByName.put(e.getName(), e);
 		}
 	}
 
@@ -505,51 +504,59 @@ public class CloudSim {
 	/**
 	 * Internal method used to run one tick of the simulation. This method should <b>not</b> be
 	 * called in simulations.
+	 * <p>
+	 * Only the entities that received an event or were woken up since the last tick are run, in
+	 * the order of their ids. The other entities would find nothing to process in their
+	 * {@link SimEntity#run()}, so skipping them does not change the simulation.
 	 * 
 	 * @return true, if successful otherwise
 	 */
 	public static boolean runClockTick() {
+		return runClockTick(SimulationContext.current());
+	}
+
+	/**
+	 * Runs one tick of the simulation of a context.
+	 * 
+	 * @param c the context
+	 * @return true, if the future event queue is empty
+	 */
+	private static boolean runClockTick(SimulationContext c) {
 		SimEntity ent;
 		boolean queue_empty;
-		
-		int entities_size = entities.size();
+		BitSet entitiesToRun = c.entitiesToRun;
+		FutureQueue future = c.future;
 
-		for (int i = 0; i < entities_size; i++) {
-			ent = entities.get(i);
+		for (int i = entitiesToRun.nextSetBit(0); i >= 0; i = entitiesToRun.nextSetBit(i + 1)) {
+			entitiesToRun.clear(i);
+			ent = c.entities.get(i);
 			if (ent.getState() == SimEntity.RUNNABLE) {
 				ent.run();
 			}
 		}
-				
+
+		if (c.profiler != null) {
+			c.profiler.tickEnded(c.clock, future.size(), c.deferred.size());
+		}
+
 		// If there are more future events then deal with them
 		if (future.size() > 0) {
-			List<SimEvent> toRemove = new ArrayList<SimEvent>();
-			Iterator<SimEvent> fit = future.iterator();
 			queue_empty = false;
-			SimEvent first = fit.next();
-			processEvent(first);
-			future.remove(first);
-
-			fit = future.iterator();
-
-			// Check if next events are at same time...
-			boolean trymore = fit.hasNext();
-			while (trymore) {
-				SimEvent next = fit.next();
-				if (next.eventTime() == first.eventTime()) {
-					processEvent(next);
-					toRemove.add(next);
-					trymore = fit.hasNext();
-				} else {
-					trymore = false;
-				}
+			SimEvent first = future.poll();
+			c.pendingEvents.remove(first);
+			processEvent(c, first);
+
+			// Drain the next events at the same time
+			double time = first.eventTime();
+			SimEvent next;
+			while ((next = future.pollAt(time)) != null) {
+				c.pendingEvents.remove(next);
+				processEvent(c, next);
 			}
 
-			future.removeAll(toRemove);
-
 		} else {
 			queue_empty = true;
-			running = false;
+			c.running = false;
 			printMessage("Simulation: No more future events");
 		}
 
@@ -570,9 +577,10 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void hold(int src, long delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		SimulationContext c = SimulationContext.current();
+		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, c.clock + delay, src);
+		addFutureEvent(c, e);
+		c.entities.get(src).setState(SimEntity.HOLDING);
 	}
 
 	/**
@@ -582,9 +590,10 @@ public class CloudSim {
 	 * @param delay the delay
 	 */
 	public static void pause(int src, double delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		SimulationContext c = SimulationContext.current();
+		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, c.clock + delay, src);
+		addFutureEvent(c, e);
+		c.entities.get(src).setState(SimEntity.HOLDING);
 	}
 
 	/**
@@ -601,8 +610,9 @@ public class CloudSim {
 			throw new IllegalArgumentException("Send delay can't be negative.");
 		}
 
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEvent(e);
+		SimulationContext c = SimulationContext.current();
+		SimEvent e = newSendEvent(c, c.clock + delay, src, dest, tag, data);
+		addFutureEvent(c, e);
 	}
 
 	/**
@@ -619,8 +629,32 @@ public class CloudSim {
 			throw new IllegalArgumentException("Send delay can't be negative.");
 		}
 
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEventFirst(e);
+		SimulationContext c = SimulationContext.current();
+		SimEvent e = newSendEvent(c, c.clock + delay, src, dest, tag, data);
+		c.future.addEventFirst(e);
+		c.pendingEvents.add(e);
+	}
+
+	/**
+	 * Used to send an event from one entity to another, after all the other events of the same
+	 * time, even those sent later. This way an event sent ahead of time does not overtake the
+	 * events sent in the meantime for the same time.
+	 * 
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 */
+	public static void sendLast(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+
+		SimulationContext c = SimulationContext.current();
+		SimEvent e = newSendEvent(c, c.clock + delay, src, dest, tag, data);
+		c.future.addEventLast(e);
+		c.pendingEvents.add(e);
 	}
 
 	/**
@@ -632,10 +666,11 @@ public class CloudSim {
 	 * @param p the p
 	 */
 	public static void wait(int src, Predicate p) {
-		entities.get(src).setState(SimEntity.WAITING);
+		SimulationContext c = SimulationContext.current();
+		c.entities.get(src).setState(SimEntity.WAITING);
 		if (p != SIM_ANY) {
 			// If a predicate has been used store it in order to check it
-			waitPredicates.put(src, p);
+			c.waitPredicates.put(src, p);
 		}
 	}
 
@@ -647,16 +682,7 @@ public class CloudSim {
 	 * @return the int
 	 */
 	public static int waiting(int d, Predicate p) {
-		int count = 0;
-		SimEvent event;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if ((event.getDestination() == d) && (p.match(event))) {
-				count++;
-			}
-		}
-		return count;
+		return SimulationContext.current().deferred.count(d, p);
 	}
 
 	/**
@@ -664,19 +690,10 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no deferred event matches
 	 */
 	public static SimEvent select(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				iterator.remove();
-				break;
-			}
-		}
-		return ev;
+		return SimulationContext.current().deferred.removeFirst(src, p);
 	}
 
 	/**
@@ -684,18 +701,10 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no deferred event matches
 	 */
 	public static SimEvent findFirstDeferred(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				break;
-			}
-		}
-		return ev;
+		return SimulationContext.current().deferred.findFirst(src, p);
 	}
 
 	/**
@@ -703,17 +712,14 @@ public class CloudSim {
 	 * 
 	 * @param src the src
 	 * @param p the p
-	 * @return the sim event
+	 * @return the sim event, or <tt>null</tt> if no event matches
 	 */
 	public static SimEvent cancel(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-				break;
-			}
+		SimulationContext c = SimulationContext.current();
+		SimEvent ev = c.pendingEvents.first(src, p);
+		if (ev != null) {
+			c.future.remove(ev);
+			c.pendingEvents.remove(ev);
 		}
 
 		return ev;
@@ -728,35 +734,78 @@ public class CloudSim {
 	 * @return true, if successful
 	 */
 	public static boolean cancelAll(int src, Predicate p) {
-		SimEvent ev = null;
-		int previousSize = future.size();
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-			}
-		}
-		return previousSize < future.size();
+		return cancelAllEvents(src, p) > 0;
+	}
+
+	/**
+	 * Removes all events sent by an entity that match a given predicate from the future event
+	 * queue. Events are looked up through an index by source and tag, so the cost depends on the
+	 * events of the source only, and on the events with the selected tags when the predicate is a
+	 * {@link org.cloudbus.cloudsim.core.predicates.PredicateType}.
+	 * 
+	 * @param src the id of the entity that sent the events
+	 * @param p the predicate
+	 * @return the number of cancelled events
+	 */
+	public static int cancelAllEvents(int src, Predicate p) {
+		SimulationContext c = SimulationContext.current();
+		return c.pendingEvents.removeAll(src, p, c.future);
 	}
 
 	//
 	// Private internal methods
 	//
 
+	/**
+	 * Creates a SEND event, taking it from the event pool if events are recycled.
+	 */
+	private static SimEvent newSendEvent(SimulationContext c, double time, int src, int dest, int tag, Object data) {
+		if (c.eventPool != null) {
+			return c.eventPool.obtain(SimEvent.SEND, time, src, dest, tag, data);
+		}
+		return new SimEvent(SimEvent.SEND, time, src, dest, tag, data);
+	}
+
+	/**
+	 * Gives an event back to the event pool once its destination entity has processed it, unless
+	 * events are not recycled or the entity keeps them.
+	 * 
+	 * @param entity the entity that has processed the event
+	 * @param e the event
+	 */
+	static void releaseEvent(SimEntity entity, SimEvent e) {
+		EventPool pool = SimulationContext.current().eventPool;
+		if (pool != null && e.getType() == SimEvent.SEND && !entity.retainsEvents()) {
+			pool.release(e, entity);
+		}
+	}
+
+	/**
+	 * Puts an event in the future event queue and indexes it for cancellation.
+	 * 
+	 * @param c the context
+	 * @param e the event
+	 */
+	private static void addFutureEvent(SimulationContext c, SimEvent e) {
+		c.future.addEvent(e);
+		c.pendingEvents.add(e);
+	}
+
 	/**
 	 * Processes an event.
 	 * 
+	 * @param c the context
 	 * @param e the e
 	 */
-	private static void processEvent(SimEvent e) {
+	private static void processEvent(SimulationContext c, SimEvent e) {
 		int dest, src;
 		SimEntity dest_ent;
 		// Update the system's clock
-		if (e.eventTime() < clock) {
+		if (e.eventTime() < c.clock) {
 			throw new IllegalArgumentException("Past event detected.");
 		}
-		clock = e.eventTime();
+		c.clock = e.eventTime();
+		c.processedEventCount++;
 
 		// Ok now process it
 		switch (e.getType()) {
@@ -775,20 +824,23 @@ public class CloudSim {
 					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
 				} else {
 					int tag = e.getTag();
-					dest_ent = entities.get(dest);
+					dest_ent = c.entities.get(dest);
 					if (dest_ent.getState() == SimEntity.WAITING) {
 						Integer destObj = Integer.valueOf(dest);
-						Predicate p = waitPredicates.get(destObj);
+						Predicate p = c.waitPredicates.get(destObj);
 						if ((p == null) || (tag == 9999) || (p.match(e))) {
-							dest_ent.setEventBuffer((SimEvent) e.clone());
+							// a recycled event is not cloned, since its destination does not keep it
+							dest_ent.setEventBuffer(c.eventPool != null && !dest_ent.retainsEvents() ? e
+									: (SimEvent) e.clone());
 							dest_ent.setState(SimEntity.RUNNABLE);
-							waitPredicates.remove(destObj);
+							c.waitPredicates.remove(destObj);
 						} else {
-							deferred.addEvent(e);
+							c.deferred.addEvent(e);
 						}
 					} else {
-						deferred.addEvent(e);
+						c.deferred.addEvent(e);
 					}
+					c.entitiesToRun.set(dest);
 				}
 				break;
 
@@ -797,7 +849,8 @@ public class CloudSim {
 				if (src < 0) {
 					throw new IllegalArgumentException("Null entity holding.");
 				} else {
-					entities.get(src).setState(SimEntity.RUNNABLE);
+					c.entities.get(src).setState(SimEntity.RUNNABLE);
+					c.entitiesToRun.set(src);
 				}
 				break;
 
@@ -811,9 +864,10 @@ public class CloudSim {
 	 * simulations.
 	 */
 	public static void runStart() {
-		running = true;
+		SimulationContext c = SimulationContext.current();
+		c.running = true;
 		// Start all the entities
-		for (SimEntity ent : entities) {
+		for (SimEntity ent : c.entities) {
 			//System.out.println("From CloudSim.runStart(): Starting SimEntity "+ent.getName());
 			ent.startEntity();
 		}
@@ -828,7 +882,7 @@ public class CloudSim {
 	 * @return if the simulation is still running, otherwise
 	 */
 	public static boolean running() {
-		return running;
+		return SimulationContext.current().running;
 	}
 
 	/**
@@ -837,8 +891,8 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation() {
-		paused = true;
-		return paused;
+		SimulationContext.current().paused = true;
+		return true;
 	}
 
 	/**
@@ -848,10 +902,11 @@ public class CloudSim {
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation(long time) {
-		if (time <= clock) {
+		SimulationContext c = SimulationContext.current();
+		if (time <= c.clock) {
 			return false;
 		} else {
-			pauseAt = time;
+			c.pauseAt = time;
 		}
 		return true;
 	}
@@ -862,13 +917,14 @@ public class CloudSim {
 	 * @return if the simulation has been restarted or or otherwise.
 	 */
 	public static boolean resumeSimulation() {
-		paused = false;
+		SimulationContext c = SimulationContext.current();
+		c.paused = false;
 
-		if (pauseAt <= clock) {
-			pauseAt = -1;
+		if (c.pauseAt <= c.clock) {
+			c.pauseAt = -1;
 		}
 
-		return !paused;
+		return !c.paused;
 	}
 
 	/**
@@ -878,29 +934,30 @@ public class CloudSim {
 	 * @return the double last clock value
 	 */
 	public static double run() {
-		if (!running) {
+		SimulationContext c = SimulationContext.current();
+		if (!c.running) {
 			runStart();
 		}
 		while (true) {
-			if (runClockTick() || abruptTerminate) {
+			if (runClockTick(c) || c.abruptTerminate) {
 				break;
 			}
 
 			// this block allows termination of simulation at a specific time
-			if (terminateAt > 0.0 && clock >= terminateAt) {
+			if (c.terminateAt > 0.0 && c.clock >= c.terminateAt) {
 				terminateSimulation();
-				clock = terminateAt;
+				c.clock = c.terminateAt;
 				break;
 			}
 
-			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-							.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+			if (c.pauseAt != -1
+					&& ((c.future.size() > 0 && c.clock <= c.pauseAt && c.pauseAt <= c.future.peek().eventTime())
+							|| c.future.size() == 0 && c.pauseAt <= c.clock)) {
 				pauseSimulation();
-				clock = pauseAt;
+				c.clock = c.pauseAt;
 			}
 
-			while (paused) {
+			while (c.paused) {
 				try {
 					Thread.sleep(100);
 				} catch (InterruptedException e) {
@@ -922,39 +979,110 @@ public class CloudSim {
 	 * in user simulations.
 	 */
 	public static void finishSimulation() {
+		SimulationContext c = SimulationContext.current();
 		// Allow all entities to exit their body method
-		if (!abruptTerminate) {
-			for (SimEntity ent : entities) {
+		if (!c.abruptTerminate) {
+			for (SimEntity ent : c.entities) {
 				if (ent.getState() != SimEntity.FINISHED) {
 					ent.run();
 				}
 			}
 		}
 
-		for (SimEntity ent : entities) {
+		for (SimEntity ent : c.entities) {
 			ent.shutdownEntity();
 		}
 
+		if (c.profiler != null) {
+			c.profiler.simulationEnded();
+		}
+		c.closeResources();
+
 		// reset all static variables
 		// Private data members
-		entities = null;
-		entitiesByName = null;
-		future = null;
-		deferred = null;
-		clock = 0L;
-		running = false;
+		c.entities = null;
+		c.entitiesByName = null;
+		c.future = null;
+		c.deferred = null;
+		c.pendingEvents = null;
+		c.clock = 0L;
+		c.running = false;
+
+		c.waitPredicates = null;
+		c.entitiesToRun = null;
+		c.eventPool = null;
+		c.paused = false;
+		c.pauseAt = -1;
+		c.abruptTerminate = false;
+	}
+
+	/**
+	 * Ends the program once an entity has stopped the simulation, as the fog controllers do when
+	 * the simulation time is over. In the default {@link SimulationContext} this exits the JVM; in
+	 * any other context it only terminates the simulation, so that the other simulations running in
+	 * the JVM are not killed.
+	 */
+	public static void exitSimulation() {
+		SimulationContext c = SimulationContext.current();
+		if (c.isDefault()) {
+			if (c.profiler != null) {
+				c.profiler.simulationEnded();
+			}
+			c.closeResources();
+			System.exit(0);
+		}
+		abruptallyTerminate();
+	}
+
+	/**
+	 * Enables or disables event recycling. When it is enabled, the events sent between entities are
+	 * taken from a pool and given back to it once their destination entity has processed them,
+	 * and they are handed to waiting entities without being cloned. This saves one or two
+	 * allocations per event, but it is only safe if the entities do not keep references to the
+	 * events they process; see {@link SimEntity#retainsEvents()}. It has to be set before
+	 * {@link #init(int, Calendar, boolean)}, and stays set for the later simulations of the
+	 * same {@link SimulationContext}.
+	 * <p>
+	 * With <tt>checked</tt> set, processed events are not reused but marked, and any later use of
+	 * such an event throws an {@link IllegalStateException} that names the entity which processed
+	 * it last. This is meant to find the entities that keep events.
+	 * 
+	 * @param enabled true to recycle events
+	 * @param checked true to check the recycled events instead of reusing them
+	 */
+	public static void setEventRecycling(boolean enabled, boolean checked) {
+		SimulationContext c = SimulationContext.current();
+		c.recycleEvents = enabled;
+		c.checkRecycledEvents = checked;
+	}
 
-		waitPredicates = null;
-		paused = false;
-		pauseAt = -1;
-		abruptTerminate = false;
+	/**
+	 * Installs a profiler of the kernel, which counts and times the events processed by the
+	 * entities and samples the event queues; see {@link KernelProfiler}. Like event recycling, it
+	 * stays installed for the later simulations of the same {@link SimulationContext}, and its
+	 * counters are cleared when each simulation is initialised. Without a profiler, which is the
+	 * default, the kernel does not measure anything.
+	 * 
+	 * @param profiler the profiler, or <tt>null</tt> to stop profiling
+	 */
+	public static void setProfiler(KernelProfiler profiler) {
+		SimulationContext.current().profiler = profiler;
+	}
+
+	/**
+	 * Gets the profiler of the kernel.
+	 * 
+	 * @return the profiler, or <tt>null</tt> if the kernel is not profiled
+	 */
+	public static KernelProfiler getProfiler() {
+		return SimulationContext.current().profiler;
 	}
 
 	/**
 	 * Abruptally terminate.
 	 */
 	public static void abruptallyTerminate() {
-		abruptTerminate = true;
+		SimulationContext.current().abruptTerminate = true;
 	}
 
 	/**
@@ -972,7 +1100,7 @@ public class CloudSim {
 	 * @return true, if is paused
 	 */
 	public static boolean isPaused() {
-		return paused;
+		return SimulationContext.current().paused;
 	}
 
 }
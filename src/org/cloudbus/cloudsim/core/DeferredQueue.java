@@ -8,15 +8,21 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
 
 /**
- * This class implements the deferred event queue used by {@link Simulation}. The event queue uses a
- * linked list to store the events.
- * 
+ * This class implements the deferred event queue used by {@link Simulation}. The events are
+ * indexed by their destination entity: each entity has its own linked list of events, so looking
+ * up the deferred events of an entity does not depend on the events deferred for the others.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see Simulation
@@ -24,25 +30,35 @@ import java.util.ListIterator;
  */
 public class DeferredQueue {
 
-	/** The list. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
+	/** The lists of events, indexed by destination entity id. */
+	private final List<LinkedList<SimEvent>> lists = new ArrayList<LinkedList<SimEvent>>();
 
-	/** The max time. */
-	private double maxTime = -1;
+	/** The number of events in the queue. */
+	private int size = 0;
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
 	 * of the events.
-	 * 
+	 *
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
+		int destination = newEvent.getDestination();
+		while (lists.size() <= destination) {
+			lists.add(null);
+		}
+		LinkedList<SimEvent> list = lists.get(destination);
+		if (list == null) {
+			list = new LinkedList<SimEvent>();
+			lists.set(destination, list);
+		}
+		size++;
+
 		// The event has to be inserted as the last of all events
 		// with the same event_time(). Yes, this matters.
 		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
+		if (list.isEmpty() || eventTime >= list.getLast().eventTime()) {
 			list.add(newEvent);
-			maxTime = eventTime;
 			return;
 		}
 
@@ -61,28 +77,146 @@ public class DeferredQueue {
 	}
 
 	/**
-	 * Returns an iterator to the events in the queue.
-	 * 
+	 * Counts the events for an entity that match a predicate.
+	 *
+	 * @param destination the id of the destination entity
+	 * @param p the predicate
+	 * @return the number of matching events
+	 */
+	public int count(int destination, Predicate p) {
+		LinkedList<SimEvent> list = getList(destination);
+		if (list == null) {
+			return 0;
+		}
+		if (p instanceof PredicateAny) {
+			return list.size();
+		}
+		int count = 0;
+		for (SimEvent event : list) {
+			if (p.match(event)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the first event for an entity that matches a predicate.
+	 *
+	 * @param destination the id of the destination entity
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent findFirst(int destination, Predicate p) {
+		LinkedList<SimEvent> list = getList(destination);
+		if (list == null) {
+			return null;
+		}
+		for (SimEvent event : list) {
+			if (p.match(event)) {
+				return event;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the first event for an entity that matches a predicate.
+	 *
+	 * @param destination the id of the destination entity
+	 * @param p the predicate
+	 * @return the removed event, or <tt>null</tt> if no event matches
+	 */
+	public SimEvent removeFirst(int destination, Predicate p) {
+		LinkedList<SimEvent> list = getList(destination);
+		if (list == null || list.isEmpty()) {
+			return null;
+		}
+		if (p instanceof PredicateAny) {
+			size--;
+			return list.removeFirst();
+		}
+		Iterator<SimEvent> iterator = list.iterator();
+		while (iterator.hasNext()) {
+			SimEvent event = iterator.next();
+			if (p.match(event)) {
+				iterator.remove();
+				size--;
+				return event;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns an iterator to the events in the queue. The events are grouped by destination
+	 * entity and, for each entity, ordered by time.
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		return new Iterator<SimEvent>() {
+
+			private int destination = -1;
+
+			private Iterator<SimEvent> current = null;
+
+			@Override
+			public boolean hasNext() {
+				while (current == null || !current.hasNext()) {
+					if (++destination >= lists.size()) {
+						return false;
+					}
+					LinkedList<SimEvent> list = lists.get(destination);
+					current = list == null ? null : list.iterator();
+				}
+				return true;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+
+			@Override
+			public void remove() {
+				current.remove();
+				size--;
+			}
+		};
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		return size;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		lists.clear();
+		size = 0;
+	}
+
+	/**
+	 * Gets the list of events of an entity.
+	 *
+	 * @param destination the id of the destination entity
+	 * @return the list, or <tt>null</tt> if no event has ever been deferred for the entity
+	 */
+	private LinkedList<SimEvent> getList(int destination) {
+		if (destination < 0 || destination >= lists.size()) {
+			return null;
+		}
+		return lists.get(destination);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+
+/**
+ * A pool of the {@link SimEvent} objects used by {@link CloudSim#send(int, int, double, int, Object)}
+ * when event recycling is enabled. An event goes back to the pool once its destination entity has
+ * processed it in {@link SimEntity#run()}.
+ * <p>
+ * When the pool is checked, released events are never reused; they are marked instead, so that
+ * an entity that keeps a reference to an event fails as soon as it uses it again.
+ *
+ * @see CloudSim#setEventRecycling(boolean, boolean)
+ * @see SimEntity#retainsEvents()
+ */
+final class EventPool {
+
+	/** Whether released events are marked instead of reused. */
+	private final boolean checked;
+
+	/** The free events. */
+	private SimEvent[] free = new SimEvent[64];
+
+	/** The number of free events. */
+	private int size = 0;
+
+	/**
+	 * Creates a pool.
+	 *
+	 * @param checked true to mark released events instead of reusing them
+	 */
+	EventPool(boolean checked) {
+		this.checked = checked;
+	}
+
+	/**
+	 * Gets an event, reusing a free one if there is any.
+	 */
+	SimEvent obtain(int evtype, double time, int src, int dest, int tag, Object data) {
+		if (size == 0) {
+			return new SimEvent(evtype, time, src, dest, tag, data);
+		}
+		SimEvent event = free[--size];
+		free[size] = null;
+		event.reset(evtype, time, src, dest, tag, data);
+		return event;
+	}
+
+	/**
+	 * Gives back an event that has been processed by its destination entity.
+	 *
+	 * @param event the event
+	 * @param entity the entity that processed it
+	 */
+	void release(SimEvent event, SimEntity entity) {
+		if (checked) {
+			event.markRecycled(entity.getName());
+			return;
+		}
+		event.reset(SimEvent.ENULL, -1, -1, -1, -1, null);
+		if (size == free.length) {
+			free = Arrays.copyOf(free, size << 1);
+		}
+		free[size++] = event;
+	}
+
+}
@@ -10,90 +10,112 @@ package org.cloudbus.cloudsim.core;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 /**
- * This class implements the future event queue used by {@link Simulation}. The event queue uses a
- * {@link TreeSet} in order to store the events.
- * 
+ * The future event queue used by {@link CloudSim}. Implementations decide how the pending events
+ * are stored, but all of them must hand events out in exactly the same order: by event time and,
+ * for events with the same time, by the serial number assigned when the event was added. Events
+ * added through {@link #addEventFirst(SimEvent)} all get serial <tt>0</tt> and are ordered among
+ * themselves by insertion. Events added through {@link #addEventLast(SimEvent)} get serials from
+ * {@link #LAST_SERIAL} on, so they come after all the other events of the same time. Because
+ * every implementation follows this order, switching the queue never changes the results of a
+ * simulation.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
- * @see Simulation
- * @see java.util.TreeSet
+ * @see CloudSim#init(int, java.util.Calendar, boolean, FutureQueue)
+ * @see TreeSetFutureQueue
+ * @see HeapFutureQueue
+ * @see CalendarFutureQueue
  */
-public class FutureQueue {
-
-	/** The sorted set. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+public interface FutureQueue extends Iterable<SimEvent> {
 
-	/** The serial. */
-	private long serial = 0;
+	/** The first serial of the events added through {@link #addEventLast(SimEvent)}. */
+	long LAST_SERIAL = Long.MAX_VALUE / 2;
 
 	/**
 	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
 	 * the events in the queue.
-	 * 
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
-	public void addEvent(SimEvent newEvent) {
-		newEvent.setSerial(serial++);
-		sortedSet.add(newEvent);
-	}
+	void addEvent(SimEvent newEvent);
 
 	/**
 	 * Add a new event to the head of the queue.
-	 * 
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	void addEventFirst(SimEvent newEvent);
+
+	/**
+	 * Add a new event after all the other events of the same time, including the events added
+	 * later with {@link #addEvent(SimEvent)}.
+	 *
 	 * @param newEvent The event to be put in the queue.
 	 */
-	public void addEventFirst(SimEvent newEvent) {
-		newEvent.setSerial(0);
-		sortedSet.add(newEvent);
-	}
+	void addEventLast(SimEvent newEvent);
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent peek();
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	SimEvent poll();
+
+	/**
+	 * Removes and returns the first event of the queue if it occurs at the given time. Calling this
+	 * method until it returns <tt>null</tt> drains all the events of that time in order, without
+	 * building any intermediate collection.
+	 *
+	 * @param time the event time
+	 * @return the first event, or <tt>null</tt> if the queue is empty or the first event occurs
+	 *         at another time
+	 */
+	SimEvent pollAt(double time);
 
 	/**
-	 * Returns an iterator to the queue.
-	 * 
+	 * Returns an iterator to the queue. Only {@link TreeSetFutureQueue} iterates in event order;
+	 * the other implementations return the events in no particular order.
+	 *
 	 * @return the iterator
 	 */
-	public Iterator<SimEvent> iterator() {
-		return sortedSet.iterator();
-	}
+	@Override
+	Iterator<SimEvent> iterator();
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the size
 	 */
-	public int size() {
-		return sortedSet.size();
-	}
+	int size();
 
 	/**
 	 * Removes the event from the queue.
-	 * 
+	 *
 	 * @param event the event
 	 * @return true, if successful
 	 */
-	public boolean remove(SimEvent event) {
-		return sortedSet.remove(event);
-	}
+	boolean remove(SimEvent event);
 
 	/**
 	 * Removes all the events from the queue.
-	 * 
+	 *
 	 * @param events the events
 	 * @return true, if successful
 	 */
-	public boolean removeAll(Collection<SimEvent> events) {
-		return sortedSet.removeAll(events);
-	}
+	boolean removeAll(Collection<SimEvent> events);
 
 	/**
 	 * Clears the queue.
 	 */
-	public void clear() {
-		sortedSet.clear();
-	}
+	void clear();
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,332 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A future event queue backed by an implicit d-ary heap. Event times and ordering ranks are kept
+ * in primitive arrays next to the events, so adding an event does not allocate and the sift
+ * operations compare primitives only. The default arity is 4, which needs fewer levels than a
+ * binary heap and keeps the children of a node on the same cache lines.
+ * <p>
+ * Events are handed out in the same order as {@link TreeSetFutureQueue}.
+ *
+ * @see FutureQueue
+ * @see TreeSetFutureQueue
+ */
+public class HeapFutureQueue implements FutureQueue {
+
+	/** The default arity of the heap. */
+	public static final int DEFAULT_ARITY = 4;
+
+	/** The initial capacity of the heap arrays. */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/** The number of children of each node. */
+	private final int arity;
+
+	/** The events in heap order. */
+	private SimEvent[] events;
+
+	/** The event time of each heap slot. */
+	private double[] times;
+
+	/** The ordering rank of each heap slot, used to break ties between equal times. */
+	private long[] ranks;
+
+	/** The number of events in the queue. */
+	private int size = 0;
+
+	/** The serial. */
+	private long serial = 0;
+
+	/** The number of events that got serial 0 so far. */
+	private long firsts = 0;
+
+	/** The next serial of the events added last. */
+	private long lasts = LAST_SERIAL;
+
+	/**
+	 * Creates a 4-ary heap queue.
+	 */
+	public HeapFutureQueue() {
+		this(DEFAULT_ARITY);
+	}
+
+	/**
+	 * Creates a heap queue with the given arity, e.g. 2 for a binary heap.
+	 *
+	 * @param arity the number of children of each node
+	 */
+	public HeapFutureQueue(int arity) {
+		if (arity < 2) {
+			throw new IllegalArgumentException("The arity of the heap should be at least 2, but is:" + arity);
+		}
+		this.arity = arity;
+		events = new SimEvent[INITIAL_CAPACITY];
+		times = new double[INITIAL_CAPACITY];
+		ranks = new long[INITIAL_CAPACITY];
+	}
+
+	@Override
+	public void addEvent(SimEvent newEvent) {
+		long eventSerial = serial++;
+		newEvent.setSerial(eventSerial);
+		// serial 0 ties with the events added first; see FutureQueue for the order
+		insert(newEvent, eventSerial == 0 ? Long.MIN_VALUE + firsts++ : eventSerial);
+	}
+
+	@Override
+	public void addEventFirst(SimEvent newEvent) {
+		newEvent.setSerial(0);
+		insert(newEvent, Long.MIN_VALUE + firsts++);
+	}
+
+	@Override
+	public void addEventLast(SimEvent newEvent) {
+		long eventSerial = lasts++;
+		newEvent.setSerial(eventSerial);
+		insert(newEvent, eventSerial);
+	}
+
+	@Override
+	public SimEvent peek() {
+		return size == 0 ? null : events[0];
+	}
+
+	@Override
+	public SimEvent poll() {
+		if (size == 0) {
+			return null;
+		}
+		SimEvent first = events[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public SimEvent pollAt(double time) {
+		if (size == 0 || times[0] != time) {
+			return null;
+		}
+		SimEvent first = events[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return events[next++];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Use FutureQueue.remove(SimEvent) instead.");
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		int i = event.heapIndex;
+		if (i < 0 || i >= size || events[i] != event) {
+			return false;
+		}
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public boolean removeAll(Collection<SimEvent> toRemove) {
+		if (toRemove.isEmpty()) {
+			return false;
+		}
+		Set<SimEvent> removed = Collections.newSetFromMap(new IdentityHashMap<SimEvent, Boolean>());
+		removed.addAll(toRemove);
+
+		// compact the remaining events and restore the heap property bottom-up
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			if (!removed.contains(events[i])) {
+				move(i, kept++);
+			} else {
+				events[i].heapIndex = -1;
+			}
+		}
+		if (kept == size) {
+			return false;
+		}
+		Arrays.fill(events, kept, size, null);
+		size = kept;
+		for (int i = (size - 2) / arity; i >= 0; i--) {
+			siftDown(i);
+		}
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			events[i].heapIndex = -1;
+		}
+		Arrays.fill(events, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Inserts an event with the given rank and sifts it up to its place.
+	 *
+	 * @param event the event
+	 * @param rank the ordering rank of the event
+	 */
+	private void insert(SimEvent event, long rank) {
+		if (size == events.length) {
+			int capacity = events.length << 1;
+			events = Arrays.copyOf(events, capacity);
+			times = Arrays.copyOf(times, capacity);
+			ranks = Arrays.copyOf(ranks, capacity);
+		}
+		int i = size++;
+		events[i] = event;
+		times[i] = event.eventTime();
+		ranks[i] = rank;
+		siftUp(i);
+	}
+
+	/**
+	 * Removes the event at a heap slot, filling the hole with the last event.
+	 *
+	 * @param i the heap slot
+	 */
+	private void removeAt(int i) {
+		events[i].heapIndex = -1;
+		int last = --size;
+		if (i != last) {
+			move(last, i);
+			events[last] = null;
+			if (!siftDown(i)) {
+				siftUp(i);
+			}
+		} else {
+			events[last] = null;
+		}
+	}
+
+	/**
+	 * Moves the event at slot <tt>i</tt> up until its parent precedes it.
+	 *
+	 * @param i the heap slot
+	 */
+	private void siftUp(int i) {
+		SimEvent event = events[i];
+		double time = times[i];
+		long rank = ranks[i];
+		while (i > 0) {
+			int parent = (i - 1) / arity;
+			if (!precedes(time, rank, times[parent], ranks[parent])) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		place(event, time, rank, i);
+	}
+
+	/**
+	 * Moves the event at slot <tt>i</tt> down until it precedes all its children.
+	 *
+	 * @param i the heap slot
+	 * @return true if the event has moved
+	 */
+	private boolean siftDown(int i) {
+		int start = i;
+		SimEvent event = events[i];
+		double time = times[i];
+		long rank = ranks[i];
+		while (true) {
+			int firstChild = i * arity + 1;
+			if (firstChild >= size) {
+				break;
+			}
+			int lastChild = Math.min(firstChild + arity, size);
+			int best = firstChild;
+			for (int c = firstChild + 1; c < lastChild; c++) {
+				if (precedes(times[c], ranks[c], times[best], ranks[best])) {
+					best = c;
+				}
+			}
+			if (!precedes(times[best], ranks[best], time, rank)) {
+				break;
+			}
+			move(best, i);
+			i = best;
+		}
+		place(event, time, rank, i);
+		return i != start;
+	}
+
+	/**
+	 * Copies the content of a heap slot into another.
+	 *
+	 * @param from the source slot
+	 * @param to the destination slot
+	 */
+	private void move(int from, int to) {
+		place(events[from], times[from], ranks[from], to);
+	}
+
+	/**
+	 * Puts an event into a heap slot.
+	 *
+	 * @param event the event
+	 * @param time the event time
+	 * @param rank the ordering rank of the event
+	 * @param i the heap slot
+	 */
+	private void place(SimEvent event, double time, long rank, int i) {
+		events[i] = event;
+		times[i] = time;
+		ranks[i] = rank;
+		event.heapIndex = i;
+	}
+
+	/**
+	 * Checks whether an event comes before another one, by time and then by rank.
+	 */
+	static boolean precedes(double time, long rank, double otherTime, long otherRank) {
+		return time < otherTime || (time == otherTime && rank < otherRank);
+	}
+
+}
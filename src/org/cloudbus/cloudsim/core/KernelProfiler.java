@@ -0,0 +1,472 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Opt-in instrumentation of the simulation kernel. Once installed with
+ * {@link CloudSim#setProfiler(KernelProfiler)}, it counts the events handed to the entities by tag,
+ * by entity and by entity class, measures the wall time spent in their
+ * {@link SimEntity#processEvent(SimEvent)}, and samples the size of the future and deferred event
+ * queues as the simulation time goes by.
+ * <p>
+ * A {@link Snapshot} of the counters can be taken at any time, and one is handed to the listener
+ * set with {@link #setSnapshotListener(SnapshotListener)} every sample interval of simulation
+ * time. If a report path is given, a snapshot is written there as JSON when the simulation ends.
+ * <p>
+ * Tags are reported by number, and by name for the constants of the classes given to
+ * {@link #nameTags(Class)}; {@link CloudSimTags} is named by default.
+ *
+ * @see CloudSim#setProfiler(KernelProfiler)
+ */
+public class KernelProfiler {
+
+	/** The number of queue samples kept; when it is reached, every other sample is dropped. */
+	private static final int MAX_SAMPLES = 1024;
+
+	/** The tags below this bound are counted in arrays, the others in a map. */
+	private static final int DIRECT_TAGS = 256;
+
+	/**
+	 * Receives the snapshots taken periodically during a simulation.
+	 */
+	public interface SnapshotListener {
+
+		/**
+		 * Called from the simulation thread after the events of a clock tick are processed.
+		 *
+		 * @param snapshot the counters so far
+		 */
+		void snapshotTaken(Snapshot snapshot);
+	}
+
+	private final String reportPath;
+
+	private final double initialSampleInterval;
+
+	/** The current interval, doubled each time the samples are decimated. */
+	private double sampleInterval;
+
+	private SnapshotListener listener;
+
+	private final Map<Integer, String> tagNames = new HashMap<Integer, String>();
+
+	private long startNanos;
+	private long eventCount;
+	private long processNanos;
+
+	private long[] tagEvents = new long[DIRECT_TAGS];
+	private long[] tagNanos = new long[DIRECT_TAGS];
+	private final Map<Integer, long[]> otherTags = new HashMap<Integer, long[]>();
+
+	private long[] entityEvents = new long[0];
+	private long[] entityNanos = new long[0];
+	private SimEntity[] entities = new SimEntity[0];
+
+	private double nextSampleTime;
+	private int sampleCount;
+	private double[] sampleTimes = new double[MAX_SAMPLES];
+	private int[] sampleFuture = new int[MAX_SAMPLES];
+	private int[] sampleDeferred = new int[MAX_SAMPLES];
+	private int maxFuture;
+	private int maxDeferred;
+	private int lastFuture;
+	private int lastDeferred;
+
+	/**
+	 * Creates a profiler that does not write a report.
+	 *
+	 * @param sampleInterval the simulation time between two samples of the queues
+	 */
+	public KernelProfiler(double sampleInterval) {
+		this(sampleInterval, null);
+	}
+
+	/**
+	 * @param sampleInterval the simulation time between two samples of the queues
+	 * @param reportPath     the file where the report is written when the simulation ends, or
+	 *                       <tt>null</tt>
+	 */
+	public KernelProfiler(double sampleInterval, String reportPath) {
+		if (!(sampleInterval > 0)) {
+			throw new IllegalArgumentException("The sample interval must be positive");
+		}
+		initialSampleInterval = sampleInterval;
+		this.reportPath = reportPath;
+		nameTags(CloudSimTags.class);
+		reset();
+	}
+
+	/**
+	 * Names the tags after the <tt>public static final int</tt> fields of a class, e.g. the fog
+	 * events. A tag that has several names is reported with all of them.
+	 *
+	 * @param tagClass the class that holds the tag constants
+	 * @return this profiler
+	 */
+	public KernelProfiler nameTags(Class<?> tagClass) {
+		for (Field field : tagClass.getFields()) {
+			int modifiers = field.getModifiers();
+			if (field.getType() != int.class || !Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers)) {
+				continue;
+			}
+			try {
+				int tag = field.getInt(null);
+				String name = tagNames.get(tag);
+				tagNames.put(tag, name == null ? field.getName() : name + "|" + field.getName());
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the listener that receives a snapshot every sample interval of simulation time.
+	 *
+	 * @param listener the listener, or <tt>null</tt>
+	 */
+	public void setSnapshotListener(SnapshotListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return the simulation time between two samples of the queues, which grows if the samples
+	 *         are more than the profiler keeps
+	 */
+	public double getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * Clears the counters. It is called when a simulation is initialised, since the entity ids
+	 * of the previous simulation are reused.
+	 */
+	void reset() {
+		startNanos = System.nanoTime();
+		sampleInterval = initialSampleInterval;
+		eventCount = 0;
+		processNanos = 0;
+		Arrays.fill(tagEvents, 0);
+		Arrays.fill(tagNanos, 0);
+		otherTags.clear();
+		entityEvents = new long[0];
+		entityNanos = new long[0];
+		entities = new SimEntity[0];
+		nextSampleTime = 0;
+		sampleCount = 0;
+		maxFuture = 0;
+		maxDeferred = 0;
+		lastFuture = 0;
+		lastDeferred = 0;
+	}
+
+	/**
+	 * Records an event processed by an entity.
+	 *
+	 * @param entity the entity
+	 * @param tag    the tag of the event
+	 * @param nanos  the wall time spent in {@link SimEntity#processEvent(SimEvent)}
+	 */
+	void eventProcessed(SimEntity entity, int tag, long nanos) {
+		eventCount++;
+		processNanos += nanos;
+		if (tag >= 0 && tag < DIRECT_TAGS) {
+			tagEvents[tag]++;
+			tagNanos[tag] += nanos;
+		} else {
+			long[] counters = otherTags.get(tag);
+			if (counters == null) {
+				counters = new long[2];
+				otherTags.put(tag, counters);
+			}
+			counters[0]++;
+			counters[1] += nanos;
+		}
+		int id = entity.getId();
+		if (id >= entities.length) {
+			int length = Math.max(id + 1, entities.length * 2);
+			entities = Arrays.copyOf(entities, length);
+			entityEvents = Arrays.copyOf(entityEvents, length);
+			entityNanos = Arrays.copyOf(entityNanos, length);
+		}
+		entities[id] = entity;
+		entityEvents[id]++;
+		entityNanos[id] += nanos;
+	}
+
+	/**
+	 * Records the size of the queues at the end of a clock tick.
+	 *
+	 * @param clock         the simulation time
+	 * @param futureSize    the number of future events
+	 * @param deferredSize  the number of deferred events
+	 */
+	void tickEnded(double clock, int futureSize, int deferredSize) {
+		lastFuture = futureSize;
+		lastDeferred = deferredSize;
+		maxFuture = Math.max(maxFuture, futureSize);
+		maxDeferred = Math.max(maxDeferred, deferredSize);
+		if (clock < nextSampleTime) {
+			return;
+		}
+		if (sampleCount == MAX_SAMPLES) {
+			decimate();
+		}
+		sampleTimes[sampleCount] = clock;
+		sampleFuture[sampleCount] = futureSize;
+		sampleDeferred[sampleCount] = deferredSize;
+		sampleCount++;
+		nextSampleTime = clock + sampleInterval;
+		if (listener != null) {
+			listener.snapshotTaken(snapshot(clock));
+		}
+	}
+
+	/**
+	 * Keeps every other sample and doubles the interval, so that the samples span the whole
+	 * simulation in bounded memory.
+	 */
+	private void decimate() {
+		int kept = 0;
+		for (int i = 0; i < sampleCount; i += 2) {
+			sampleTimes[kept] = sampleTimes[i];
+			sampleFuture[kept] = sampleFuture[i];
+			sampleDeferred[kept] = sampleDeferred[i];
+			kept++;
+		}
+		sampleCount = kept;
+		sampleInterval *= 2;
+	}
+
+	/**
+	 * Takes a snapshot of the counters, at the current simulation time of the calling thread.
+	 *
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+		return snapshot(CloudSim.clock());
+	}
+
+	private Snapshot snapshot(double clock) {
+		Map<String, long[]> byTag = new TreeMap<String, long[]>();
+		for (int tag = 0; tag < DIRECT_TAGS; tag++) {
+			if (tagEvents[tag] > 0) {
+				byTag.put(tagName(tag), new long[] {tagEvents[tag], tagNanos[tag]});
+			}
+		}
+		for (Map.Entry<Integer, long[]> entry : otherTags.entrySet()) {
+			byTag.put(tagName(entry.getKey()), entry.getValue().clone());
+		}
+
+		Map<String, long[]> byEntity = new LinkedHashMap<String, long[]>();
+		Map<String, long[]> byClass = new TreeMap<String, long[]>();
+		for (int id = 0; id < entities.length; id++) {
+			if (entities[id] == null) {
+				continue;
+			}
+			byEntity.put(id + ":" + entities[id].getName(), new long[] {entityEvents[id], entityNanos[id]});
+			String className = entities[id].getClass().getName();
+			long[] counters = byClass.get(className);
+			if (counters == null) {
+				counters = new long[2];
+				byClass.put(className, counters);
+			}
+			counters[0] += entityEvents[id];
+			counters[1] += entityNanos[id];
+		}
+
+		double[][] samples = new double[sampleCount][];
+		for (int i = 0; i < sampleCount; i++) {
+			samples[i] = new double[] {sampleTimes[i], sampleFuture[i], sampleDeferred[i]};
+		}
+		return new Snapshot(clock, System.nanoTime() - startNanos, eventCount, processNanos, byTag, byClass,
+				byEntity, lastFuture, lastDeferred, maxFuture, maxDeferred, samples);
+	}
+
+	private String tagName(int tag) {
+		String name = tagNames.get(tag);
+		return name == null ? Integer.toString(tag) : tag + ":" + name;
+	}
+
+	/**
+	 * Writes the report, if this profiler has a report path. It is called when the simulation
+	 * ends.
+	 */
+	void simulationEnded() {
+		if (reportPath == null) {
+			return;
+		}
+		try {
+			Writer out = new FileWriter(reportPath);
+			try {
+				snapshot().writeJson(out);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot write the kernel profile to " + reportPath, e);
+		}
+	}
+
+	/**
+	 * The counters of a {@link KernelProfiler} at some point of the simulation. The counters by
+	 * tag, entity class and entity are pairs {number of events, nanoseconds}; entities are keyed
+	 * by "id:name" and tags by "tag:name" when they have a name.
+	 */
+	public static class Snapshot {
+
+		private final double clock;
+		private final long wallNanos;
+		private final long eventCount;
+		private final long processNanos;
+		private final Map<String, long[]> byTag;
+		private final Map<String, long[]> byEntityClass;
+		private final Map<String, long[]> byEntity;
+		private final int futureSize;
+		private final int deferredSize;
+		private final int maxFutureSize;
+		private final int maxDeferredSize;
+		private final double[][] queueSamples;
+
+		Snapshot(double clock, long wallNanos, long eventCount, long processNanos, Map<String, long[]> byTag,
+				Map<String, long[]> byEntityClass, Map<String, long[]> byEntity, int futureSize,
+				int deferredSize, int maxFutureSize, int maxDeferredSize, double[][] queueSamples) {
+			this.clock = clock;
+			this.wallNanos = wallNanos;
+			this.eventCount = eventCount;
+			this.processNanos = processNanos;
+			this.byTag = Collections.unmodifiableMap(byTag);
+			this.byEntityClass = Collections.unmodifiableMap(byEntityClass);
+			this.byEntity = Collections.unmodifiableMap(byEntity);
+			this.futureSize = futureSize;
+			this.deferredSize = deferredSize;
+			this.maxFutureSize = maxFutureSize;
+			this.maxDeferredSize = maxDeferredSize;
+			this.queueSamples = queueSamples;
+		}
+
+		/** @return the simulation time of the snapshot */
+		public double getClock() {
+			return clock;
+		}
+
+		/** @return the wall time since the simulation was initialised */
+		public long getWallNanos() {
+			return wallNanos;
+		}
+
+		/** @return the number of events processed by the entities */
+		public long getEventCount() {
+			return eventCount;
+		}
+
+		/** @return the wall time spent in the entities */
+		public long getProcessNanos() {
+			return processNanos;
+		}
+
+		public Map<String, long[]> getByTag() {
+			return byTag;
+		}
+
+		public Map<String, long[]> getByEntityClass() {
+			return byEntityClass;
+		}
+
+		public Map<String, long[]> getByEntity() {
+			return byEntity;
+		}
+
+		public int getFutureSize() {
+			return futureSize;
+		}
+
+		public int getDeferredSize() {
+			return deferredSize;
+		}
+
+		public int getMaxFutureSize() {
+			return maxFutureSize;
+		}
+
+		public int getMaxDeferredSize() {
+			return maxDeferredSize;
+		}
+
+		/**
+		 * @return the samples of the queues, as {time, future size, deferred size}
+		 */
+		public double[][] getQueueSamples() {
+			return queueSamples;
+		}
+
+		/**
+		 * Writes the snapshot as a JSON object.
+		 *
+		 * @param out the writer
+		 * @throws IOException if the writer fails
+		 */
+		public void writeJson(Writer out) throws IOException {
+			out.write("{\n  \"clock\": " + clock);
+			out.write(",\n  \"wallNanos\": " + wallNanos);
+			out.write(",\n  \"events\": " + eventCount);
+			out.write(",\n  \"processNanos\": " + processNanos);
+			writeCounters(out, "byTag", byTag);
+			writeCounters(out, "byEntityClass", byEntityClass);
+			writeCounters(out, "byEntity", byEntity);
+			out.write(",\n  \"queues\": {\"future\": " + futureSize + ", \"deferred\": " + deferredSize
+					+ ", \"maxFuture\": " + maxFutureSize + ", \"maxDeferred\": " + maxDeferredSize
+					+ ", \"samples\": [");
+			for (int i = 0; i < queueSamples.length; i++) {
+				out.write((i == 0 ? "\n    " : ",\n    ") + "[" + queueSamples[i][0] + ", "
+						+ (int) queueSamples[i][1] + ", " + (int) queueSamples[i][2] + "]");
+			}
+			out.write("]}\n}\n");
+		}
+
+		private static void writeCounters(Writer out, String name, Map<String, long[]> counters)
+				throws IOException {
+			out.write(",\n  \"" + name + "\": {");
+			boolean first = true;
+			for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+				out.write((first ? "\n    " : ",\n    ") + quote(entry.getKey()) + ": {\"events\": "
+						+ entry.getValue()[0] + ", \"nanos\": " + entry.getValue()[1] + "}");
+				first = false;
+			}
+			out.write("}");
+		}
+
+		private static String quote(String s) {
+			StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+			for (int i = 0; i < s.length(); i++) {
+				char ch = s.charAt(i);
+				if (ch == '"' || ch == '\\') {
+					quoted.append('\\').append(ch);
+				} else if (ch < 0x20) {
+					quoted.append(String.format("\\u%04x", (int) ch));
+				} else {
+					quoted.append(ch);
+				}
+			}
+			return quoted.append('"').toString();
+		}
+	}
+}
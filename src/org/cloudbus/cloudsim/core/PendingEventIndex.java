@@ -0,0 +1,227 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
+
+/**
+ * An index of the events in the future event queue by source entity and tag, used by
+ * {@link CloudSim#cancel(int, Predicate)} and {@link CloudSim#cancelAll(int, Predicate)}. The
+ * events of each (source, tag) pair are kept in a circular doubly linked list threaded through
+ * the events themselves, so indexing and unindexing an event costs O(1) and does not allocate.
+ * <p>
+ * Cancelling with a {@link PredicateType} only visits the events with the selected tags, and any
+ * other predicate only visits the events of the source entity.
+ *
+ * @see CloudSim
+ * @see FutureQueue
+ */
+final class PendingEventIndex {
+
+	/** The tag tables, indexed by source entity id. */
+	private TagTable[] sources = new TagTable[16];
+
+	/**
+	 * Indexes an event that has just been put in the future queue.
+	 *
+	 * @param event the event
+	 */
+	void add(SimEvent event) {
+		int src = event.getSource();
+		if (src < 0) {
+			return;
+		}
+		if (src >= sources.length) {
+			sources = Arrays.copyOf(sources, Math.max(src + 1, sources.length << 1));
+		}
+		TagTable table = sources[src];
+		if (table == null) {
+			table = new TagTable();
+			sources[src] = table;
+		}
+		SimEvent head = table.getOrCreate(event.getTag());
+		event.indexPrev = head.indexPrev;
+		event.indexNext = head;
+		head.indexPrev.indexNext = event;
+		head.indexPrev = event;
+	}
+
+	/**
+	 * Unindexes an event that has left the future queue. Does nothing if the event is not
+	 * indexed.
+	 *
+	 * @param event the event
+	 */
+	void remove(SimEvent event) {
+		if (event.indexNext == null) {
+			return;
+		}
+		event.indexPrev.indexNext = event.indexNext;
+		event.indexNext.indexPrev = event.indexPrev;
+		event.indexPrev = null;
+		event.indexNext = null;
+	}
+
+	/**
+	 * Finds the earliest pending event of a source that matches a predicate.
+	 *
+	 * @param src the id of the source entity
+	 * @param p the predicate
+	 * @return the event, or <tt>null</tt> if no event matches
+	 */
+	SimEvent first(int src, Predicate p) {
+		TagTable table = getTable(src);
+		if (table == null) {
+			return null;
+		}
+		SimEvent first = null;
+		if (p.getClass() == PredicateType.class) {
+			for (int tag : ((PredicateType) p).getTags()) {
+				first = earliest(table.get(tag), first, CloudSim.SIM_ANY);
+			}
+		} else {
+			for (int i = 0; i < table.count; i++) {
+				first = earliest(table.heads[i], first, p);
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Removes all the pending events of a source that match a predicate, both from this index
+	 * and from the future queue.
+	 *
+	 * @param src the id of the source entity
+	 * @param p the predicate
+	 * @param future the future queue
+	 * @return the number of removed events
+	 */
+	int removeAll(int src, Predicate p, FutureQueue future) {
+		TagTable table = getTable(src);
+		if (table == null) {
+			return 0;
+		}
+		int removed = 0;
+		if (p.getClass() == PredicateType.class) {
+			for (int tag : ((PredicateType) p).getTags()) {
+				removed += removeAll(table.get(tag), CloudSim.SIM_ANY, future);
+			}
+		} else {
+			for (int i = 0; i < table.count; i++) {
+				removed += removeAll(table.heads[i], p, future);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Clears the index.
+	 */
+	void clear() {
+		for (TagTable table : sources) {
+			if (table != null) {
+				for (int i = 0; i < table.count; i++) {
+					SimEvent head = table.heads[i];
+					for (SimEvent ev = head.indexNext; ev != head;) {
+						SimEvent next = ev.indexNext;
+						ev.indexPrev = null;
+						ev.indexNext = null;
+						ev = next;
+					}
+				}
+			}
+		}
+		Arrays.fill(sources, null);
+	}
+
+	private TagTable getTable(int src) {
+		return src >= 0 && src < sources.length ? sources[src] : null;
+	}
+
+	/**
+	 * Gets the earliest of the events of a list that match a predicate and a given event.
+	 */
+	private static SimEvent earliest(SimEvent head, SimEvent first, Predicate p) {
+		if (head == null) {
+			return first;
+		}
+		for (SimEvent ev = head.indexNext; ev != head; ev = ev.indexNext) {
+			if ((p == CloudSim.SIM_ANY || p.match(ev)) && (first == null || ev.compareTo(first) < 0)) {
+				first = ev;
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Removes the events of a list that match a predicate from the list and the future queue.
+	 */
+	private static int removeAll(SimEvent head, Predicate p, FutureQueue future) {
+		if (head == null) {
+			return 0;
+		}
+		int removed = 0;
+		for (SimEvent ev = head.indexNext; ev != head;) {
+			SimEvent next = ev.indexNext;
+			if (p == CloudSim.SIM_ANY || p.match(ev)) {
+				future.remove(ev);
+				ev.indexPrev.indexNext = next;
+				next.indexPrev = ev.indexPrev;
+				ev.indexPrev = null;
+				ev.indexNext = null;
+				removed++;
+			}
+			ev = next;
+		}
+		return removed;
+	}
+
+	/**
+	 * The lists of pending events of one source entity, one per tag. Each list starts with a
+	 * sentinel event that is never put in the future queue.
+	 */
+	private static final class TagTable {
+
+		int[] tags = new int[4];
+
+		SimEvent[] heads = new SimEvent[4];
+
+		int count = 0;
+
+		SimEvent get(int tag) {
+			for (int i = 0; i < count; i++) {
+				if (tags[i] == tag) {
+					return heads[i];
+				}
+			}
+			return null;
+		}
+
+		SimEvent getOrCreate(int tag) {
+			SimEvent head = get(tag);
+			if (head != null) {
+				return head;
+			}
+			if (count == tags.length) {
+				tags = Arrays.copyOf(tags, count << 1);
+				heads = Arrays.copyOf(heads, count << 1);
+			}
+			head = new SimEvent();
+			head.indexPrev = head;
+			head.indexNext = head;
+			tags[count] = tag;
+			heads[count++] = head;
+			return head;
+		}
+	}
+
+}
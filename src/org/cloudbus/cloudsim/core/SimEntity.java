@@ -399,11 +399,33 @@ public abstract class SimEntity implements Cloneable {
 	 */
 	public abstract void shutdownEntity();
 
+	/**
+	 * Tells whether this entity keeps references to the events it processes after
+	 * {@link #processEvent(SimEvent)} returns. When event recycling is enabled, the events processed
+	 * by an entity that does not keep them are reused for later events, so an entity that stores
+	 * events must override this method to return <tt>true</tt>.
+	 * 
+	 * @return <tt>false</tt>, as no entity of the toolkit keeps the events
+	 * @see CloudSim#setEventRecycling(boolean, boolean)
+	 */
+	protected boolean retainsEvents() {
+		return false;
+	}
+
 	public void run() {
 		SimEvent ev = evbuf != null ? evbuf : getNextEvent();
+		KernelProfiler profiler = ev != null ? SimulationContext.current().profiler : null;
 
 		while (ev != null) {
-			processEvent(ev);
+			if (profiler == null) {
+				processEvent(ev);
+			} else {
+				int tag = ev.getTag();
+				long start = System.nanoTime();
+				processEvent(ev);
+				profiler.eventProcessed(this, tag, System.nanoTime() - start);
+			}
+			CloudSim.releaseEvent(this, ev);
 			if (state != RUNNABLE) {
 				break;
 			}
@@ -544,6 +566,34 @@ public abstract class SimEntity implements Cloneable {
 		schedule(entityId, delay, cloudSimTag, data);
 	}
 
+	/**
+	 * Sends an event/message to another entity like {@link #send(int, double, int, Object)}, but
+	 * to be processed after all the other events of the same time, even those sent later. This is
+	 * meant for the events sent ahead of time, which must not overtake the events sent in the
+	 * meantime.
+	 * 
+	 * @param entityId the id number of the destination entity
+	 * @param delay how long from the current simulation time the event should be sent
+	 * @param cloudSimTag an user-defined number representing the type of an event/message
+	 * @param data A reference to data to be sent with the event
+	 * @see CloudSim#sendLast(int, int, double, int, Object)
+	 */
+	protected void sendLast(int entityId, double delay, int cloudSimTag, Object data) {
+		if (entityId < 0 || !CloudSim.running()) {
+			return;
+		}
+		if (delay < 0) {
+			delay = 0;
+		}
+		if (Double.isInfinite(delay)) {
+			throw new IllegalArgumentException("The specified delay is infinite value");
+		}
+		if (entityId != getId()) {
+			delay += getNetworkDelay(getId(), entityId);
+		}
+		CloudSim.sendLast(id, entityId, delay, cloudSimTag, data);
+	}
+
 	/**
 	 * Sends an event/message to another entity by <tt>delaying</tt> the simulation time from the
 	 * current time, with a tag representing the event type.
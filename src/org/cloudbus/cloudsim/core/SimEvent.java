@@ -18,10 +18,10 @@ package org.cloudbus.cloudsim.core;
 public class SimEvent implements Cloneable, Comparable<SimEvent> {
 
 	/** internal event type **/
-	private final int etype;
+	private int etype;
 
 	/** time at which event should occur **/
-	private final double time;
+	private double time;
 
 	/** time that the event was removed from the queue for service **/
 	private double endWaitingTime;
@@ -33,13 +33,25 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	private int entDst;
 
 	/** the user defined type of the event **/
-	private final int tag;
+	private int tag;
 
 	/** any data the event is carrying **/
-	private final Object data;
+	private Object data;
 
 	private long serial = -1;
 
+	/** slot of the event in a {@link HeapFutureQueue}, or -1 if it is not in one **/
+	int heapIndex = -1;
+
+	/** previous event in the {@link PendingEventIndex} list of the event **/
+	SimEvent indexPrev;
+
+	/** next event in the {@link PendingEventIndex} list of the event **/
+	SimEvent indexNext;
+
+	/** name of the entity after which the event was recycled, set only when recycling is checked **/
+	private String recycledAfter;
+
 	// Internal event types
 
 	public static final int ENULL = 0;
@@ -73,6 +85,40 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		data = edata;
 	}
 
+	/**
+	 * Reinitialises a recycled event, as the constructor with the same parameters does.
+	 */
+	void reset(int evtype, double time, int src, int dest, int tag, Object edata) {
+		etype = evtype;
+		this.time = time;
+		endWaitingTime = 0;
+		entSrc = src;
+		entDst = dest;
+		this.tag = tag;
+		data = edata;
+		serial = -1;
+	}
+
+	/**
+	 * Marks the event as recycled, so that any later use of it fails.
+	 * 
+	 * @param entityName the name of the entity that processed the event last
+	 */
+	void markRecycled(String entityName) {
+		recycledAfter = entityName;
+		data = null;
+	}
+
+	/**
+	 * Fails if the event has been marked as recycled.
+	 */
+	private void checkNotRecycled() {
+		if (recycledAfter != null) {
+			throw new IllegalStateException("An event with tag " + tag + " is used after it was recycled; "
+					+ recycledAfter + " keeps a reference to it and should override SimEntity.retainsEvents()");
+		}
+	}
+
 	SimEvent(int evtype, double time, int src) {
 		etype = evtype;
 		this.time = time;
@@ -138,6 +184,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return the id number
 	 */
 	public int getDestination() {
+		checkNotRecycled();
 		return entDst;
 	}
 
@@ -147,6 +194,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return the id number
 	 */
 	public int getSource() {
+		checkNotRecycled();
 		return entSrc;
 	}
 
@@ -156,6 +204,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return The simulation time
 	 */
 	public double eventTime() {
+		checkNotRecycled();
 		return time;
 	}
 
@@ -174,6 +223,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return The tag
 	 */
 	public int type() {
+		checkNotRecycled();
 		return tag;
 	}
 
@@ -192,6 +242,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return The tag
 	 */
 	public int getTag() {
+		checkNotRecycled();
 		return tag;
 	}
 
@@ -201,6 +252,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	 * @return A reference to the data
 	 */
 	public Object getData() {
+		checkNotRecycled();
 		return data;
 	}
 
@@ -0,0 +1,210 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * The state of one simulation: the entities, the clock and the event queues used by the static
+ * methods of {@link CloudSim}, plus named attributes in which other modules keep their own
+ * per-simulation state (e.g. the fog monitors and id counters).
+ * <p>
+ * The static methods of {@link CloudSim} work on the context bound to the calling thread. A thread
+ * that has no bound context uses the default context, so simulations that never create a context
+ * behave exactly as before. Binding a fresh context to each thread, e.g. through
+ * {@link #call(Callable)} or a {@link SimulationRunner}, lets several simulations run at the same
+ * time in one JVM without seeing each other's state.
+ *
+ * @see CloudSim
+ * @see SimulationRunner
+ */
+public class SimulationContext {
+
+	/** The context used by the threads that have not bound one. */
+	private static final SimulationContext DEFAULT = new SimulationContext();
+
+	/** The context bound to each thread. */
+	private static final ThreadLocal<SimulationContext> BOUND = new ThreadLocal<SimulationContext>();
+
+	/** The id of CIS entity. */
+	int cisId = -1;
+
+	/** The id of CloudSimShutdown entity. */
+	int shutdownId = -1;
+
+	/** The CIS object. */
+	CloudInformationService cis = null;
+
+	/** The trace flag. */
+	boolean traceFlag = false;
+
+	/** The calendar. */
+	Calendar calendar = null;
+
+	/** The termination time. */
+	double terminateAt = -1;
+
+	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
+	double minTimeBetweenEvents = 0.1;
+
+	/** The entities. */
+	List<SimEntity> entities;
+
+	/** The future event queue. */
+	FutureQueue future;
+
+	/** The deferred event queue. */
+	DeferredQueue deferred;
+
+	/** The index of the future events by source and tag, used to cancel events. */
+	PendingEventIndex pendingEvents;
+
+	/** The simulation clock. */
+	double clock;
+
+	/** The number of events processed since the simulation was initialised. */
+	long processedEventCount;
+
+	/** Flag for checking if the simulation is running. */
+	boolean running;
+
+	/** The entities by name. */
+	Map<String, SimEntity> entitiesByName;
+
+	/** The wait predicates. */
+	Map<Integer, Predicate> waitPredicates;
+
+	/** The ids of the entities that have work for the next clock tick. */
+	BitSet entitiesToRun;
+
+	/** The paused. */
+	volatile boolean paused = false;
+
+	/** The pause at. */
+	long pauseAt = -1;
+
+	/** The abrupt terminate. */
+	boolean abruptTerminate = false;
+
+	/** Whether the events sent between entities are recycled. */
+	boolean recycleEvents = false;
+
+	/** Whether recycled events are checked instead of reused. */
+	boolean checkRecycledEvents = false;
+
+	/** The pool of recycled events, or <tt>null</tt> if events are not recycled. */
+	EventPool eventPool;
+
+	/** The profiler of the kernel, or <tt>null</tt> if the kernel is not profiled. */
+	KernelProfiler profiler;
+
+	/** The attributes of other modules. */
+	private final Map<Object, Object> attributes = new HashMap<Object, Object>();
+
+	/** The resources to close when the simulation finishes. */
+	private final List<Closeable> resources = new ArrayList<Closeable>();
+
+	/**
+	 * Gets the context of the calling thread.
+	 *
+	 * @return the context bound to the thread, or the default context if there is none
+	 */
+	public static SimulationContext current() {
+		SimulationContext context = BOUND.get();
+		return context != null ? context : DEFAULT;
+	}
+
+	/**
+	 * Checks whether this is the default context, i.e. the one of the threads that have not bound
+	 * a context.
+	 *
+	 * @return true if this is the default context
+	 */
+	public boolean isDefault() {
+		return this == DEFAULT;
+	}
+
+	/**
+	 * Runs a task with this context bound to the calling thread. The previous binding of the
+	 * thread is restored when the task ends.
+	 *
+	 * @param task the task, e.g. one that sets up and runs a whole simulation
+	 * @return the result of the task
+	 * @throws Exception if the task throws it
+	 */
+	public <T> T call(Callable<T> task) throws Exception {
+		SimulationContext previous = BOUND.get();
+		BOUND.set(this);
+		try {
+			return task.call();
+		} finally {
+			if (previous == null) {
+				BOUND.remove();
+			} else {
+				BOUND.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Gets an attribute of this context.
+	 *
+	 * @param key the key of the attribute, usually the class that owns it
+	 * @return the value, or <tt>null</tt> if the attribute is not set
+	 */
+	public Object getAttribute(Object key) {
+		return attributes.get(key);
+	}
+
+	/**
+	 * Sets an attribute of this context.
+	 *
+	 * @param key the key of the attribute, usually the class that owns it
+	 * @param value the value
+	 */
+	public void setAttribute(Object key, Object value) {
+		attributes.put(key, value);
+	}
+
+	/**
+	 * Registers a resource, e.g. an output file, to close when the simulation of this context
+	 * finishes or exits. Closing it earlier is allowed, so its close method has to do nothing when
+	 * called again.
+	 *
+	 * @param resource the resource
+	 */
+	public void closeOnFinish(Closeable resource) {
+		resources.add(resource);
+	}
+
+	/**
+	 * Closes the resources registered with {@link #closeOnFinish(Closeable)}.
+	 */
+	void closeResources() {
+		for (Closeable resource : resources) {
+			try {
+				resource.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		resources.clear();
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs independent simulations on a pool of threads inside one JVM, e.g. the points of a parameter
+ * sweep. Each scenario runs in its own {@link SimulationContext}, so it must set up the whole
+ * simulation itself: call {@link CloudSim#init(int, java.util.Calendar, boolean)}, create the
+ * entities, run it and collect the results it needs before returning.
+ * <p>
+ * The {@link org.cloudbus.cloudsim.Log} output is shared by all the scenarios, so it is best
+ * disabled.
+ *
+ * @see SimulationContext
+ */
+public class SimulationRunner {
+
+	/** The number of threads. */
+	private final int threads;
+
+	/**
+	 * Creates a runner that uses one thread per available processor.
+	 */
+	public SimulationRunner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a runner.
+	 *
+	 * @param threads the number of scenarios that run at the same time
+	 */
+	public SimulationRunner(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads should be positive, but is:" + threads);
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Runs scenarios, each one in a new context, and waits for all of them to end.
+	 *
+	 * @param scenarios the scenarios
+	 * @return the results of the scenarios, in the same order
+	 * @throws InterruptedException if the calling thread is interrupted while waiting
+	 * @throws ExecutionException if a scenario throws an exception
+	 */
+	public <T> List<T> run(List<? extends Callable<T>> scenarios) throws InterruptedException,
+			ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, scenarios.size())));
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>();
+			for (final Callable<T> scenario : scenarios) {
+				futures.add(executor.submit(new Callable<T>() {
+
+					@Override
+					public T call() throws Exception {
+						return new SimulationContext().call(scenario);
+					}
+				}));
+			}
+			List<T> results = new ArrayList<T>();
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
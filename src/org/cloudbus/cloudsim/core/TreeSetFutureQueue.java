@@ -0,0 +1,153 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * This class implements the future event queue used by {@link Simulation}. The event queue uses a
+ * {@link TreeSet} in order to store the events.
+ *
+ * @author Marcos Dias de Assuncao
+ * @since CloudSim Toolkit 1.0
+ * @see Simulation
+ * @see java.util.TreeSet
+ */
+public class TreeSetFutureQueue implements FutureQueue {
+
+	/** The sorted set. */
+	private final TreeSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+
+	/** The serial. */
+	private long serial = 0;
+
+	/** The next serial of the events added last. */
+	private long lasts = LAST_SERIAL;
+
+	/**
+	 * Add a new event to the queue. Adding a new event to the queue preserves the temporal order of
+	 * the events in the queue.
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	@Override
+	public void addEvent(SimEvent newEvent) {
+		newEvent.setSerial(serial++);
+		sortedSet.add(newEvent);
+	}
+
+	/**
+	 * Add a new event to the head of the queue.
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	@Override
+	public void addEventFirst(SimEvent newEvent) {
+		newEvent.setSerial(0);
+		sortedSet.add(newEvent);
+	}
+
+	/**
+	 * Add a new event after the other events of the same time.
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	@Override
+	public void addEventLast(SimEvent newEvent) {
+		newEvent.setSerial(lasts++);
+		sortedSet.add(newEvent);
+	}
+
+	/**
+	 * Returns the first event of the queue without removing it.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	@Override
+	public SimEvent peek() {
+		return sortedSet.isEmpty() ? null : sortedSet.first();
+	}
+
+	/**
+	 * Removes and returns the first event of the queue.
+	 *
+	 * @return the first event, or <tt>null</tt> if the queue is empty
+	 */
+	@Override
+	public SimEvent poll() {
+		return sortedSet.pollFirst();
+	}
+
+	/**
+	 * Removes and returns the first event of the queue if it occurs at the given time.
+	 *
+	 * @param time the event time
+	 * @return the first event, or <tt>null</tt> if there is no event at that time
+	 */
+	@Override
+	public SimEvent pollAt(double time) {
+		if (sortedSet.isEmpty() || sortedSet.first().eventTime() != time) {
+			return null;
+		}
+		return sortedSet.pollFirst();
+	}
+
+	/**
+	 * Returns an iterator to the queue.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return sortedSet.iterator();
+	}
+
+	/**
+	 * Returns the size of this event queue.
+	 *
+	 * @return the size
+	 */
+	@Override
+	public int size() {
+		return sortedSet.size();
+	}
+
+	/**
+	 * Removes the event from the queue.
+	 *
+	 * @param event the event
+	 * @return true, if successful
+	 */
+	@Override
+	public boolean remove(SimEvent event) {
+		return sortedSet.remove(event);
+	}
+
+	/**
+	 * Removes all the events from the queue.
+	 *
+	 * @param events the events
+	 * @return true, if successful
+	 */
+	@Override
+	public boolean removeAll(Collection<SimEvent> events) {
+		return sortedSet.removeAll(events);
+	}
+
+	/**
+	 * Clears the queue.
+	 */
+	@Override
+	public void clear() {
+		sortedSet.clear();
+	}
+
+}
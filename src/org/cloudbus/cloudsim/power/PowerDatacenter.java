@@ -8,9 +8,16 @@
 
 package org.cloudbus.cloudsim.power;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletSchedulerDynamicWorkload;
 import org.cloudbus.cloudsim.Datacenter;
 import org.cloudbus.cloudsim.DatacenterCharacteristics;
 import org.cloudbus.cloudsim.Log;
@@ -33,6 +40,12 @@ import org.cloudbus.cloudsim.core.predicates.PredicateType;
  * Cloud Data Centers", Concurrency and Computation: Practice and Experience (CCPE), Volume 24,
  * Issue 13, Pages: 1397-1420, John Wiley & Sons, Ltd, New York, USA, 2012
  * 
+ * By default, all the hosts are updated at every scheduling interval. In event-driven mode, each
+ * host is only updated when one of its cloudlets may have finished or its workload changed, and
+ * the energy it consumes at a constant utilization in between is accounted when it is next updated
+ * or when the power is read. This mode is only used while migrations are disabled, since the
+ * migration policies rely on the utilization sampled at every interval.
+ * 
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 2.0
  */
@@ -50,6 +63,21 @@ public class PowerDatacenter extends Datacenter {
 	/** The migration count. */
 	private int migrationCount;
 
+	/** Whether the hosts are updated only when their processing changes. */
+	private boolean eventDriven;
+
+	/** The pending updates of the hosts, the earliest first, in event-driven mode. */
+	private final TreeSet<HostUpdate> hostUpdates = new TreeSet<HostUpdate>();
+
+	/** The pending update of each host, in event-driven mode. */
+	private final Map<PowerHost, HostUpdate> nextHostUpdates = new HashMap<PowerHost, HostUpdate>();
+
+	/** The time up to which the energy of each host is accounted, in event-driven mode. */
+	private final Map<PowerHost, Double> hostEnergyTimes = new HashMap<PowerHost, Double>();
+
+	/** The hosts updated since the finished cloudlets were last returned, in event-driven mode. */
+	private final Set<PowerHost> updatedHosts = new LinkedHashSet<PowerHost>();
+
 	/**
 	 * Instantiates a new datacenter.
 	 * 
@@ -85,6 +113,16 @@ public class PowerDatacenter extends Datacenter {
 	 */
 	@Override
 	protected void updateCloudletProcessing() {
+		if (isEventDriven()) {
+			List<PowerHost> dueHosts = new ArrayList<PowerHost>();
+			while (!hostUpdates.isEmpty()
+					&& hostUpdates.first().time - CloudSim.clock() <= CloudSim.getMinTimeBetweenEvents()) {
+				dueHosts.add(hostUpdates.pollFirst().host);
+			}
+			updateHosts(dueHosts);
+			return;
+		}
+
 		if (getCloudletSubmitted() == -1 || getCloudletSubmitted() == CloudSim.clock()) {
 			CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
 			schedule(getId(), getSchedulingInterval(), CloudSimTags.VM_DATACENTER_EVENT);
@@ -174,10 +212,14 @@ public class PowerDatacenter extends Datacenter {
 		Log.printLine("\n\n--------------------------------------------------------------\n\n");
 		Log.formatLine("New resource usage for the time frame starting at %.2f:", currentTime);
 
-		for (PowerHost host : this.<PowerHost> getHostList()) {
+		List<PowerHost> hostList = this.<PowerHost> getHostList();
+		double[] times = updateVmsProcessingInParallel(hostList, currentTime);
+		for (int i = 0; i < hostList.size(); i++) {
+			PowerHost host = hostList.get(i);
 			Log.printLine();
 
-			double time = host.updateVmsProcessing(currentTime); // inform VMs to update processing
+			// inform VMs to update processing
+			double time = times != null ? times[i] : host.updateVmsProcessing(currentTime);
 			if (time < minTime) {
 				minTime = time;
 			}
@@ -245,6 +287,150 @@ public class PowerDatacenter extends Datacenter {
 		return minTime;
 	}
 
+	/**
+	 * Updates the processing of the given hosts, in event-driven mode. The finished cloudlets of
+	 * the hosts are returned and their completed VMs removed, then the next update is scheduled.
+	 * 
+	 * @param hosts the hosts
+	 */
+	protected void updateHosts(List<? extends PowerHost> hosts) {
+		double currentTime = CloudSim.clock();
+
+		for (PowerHost host : hosts) {
+			settleEnergyConsumption(host, currentTime);
+		}
+
+		double[] times = updateVmsProcessingInParallel(hosts, currentTime);
+		for (int i = 0; i < hosts.size(); i++) {
+			PowerHost host = hosts.get(i);
+			double time = times != null ? times[i] : host.updateVmsProcessing(currentTime);
+			// the utilization of dynamic workloads changes without any event
+			if (getSchedulingInterval() > 0 && hasDynamicWorkload(host)) {
+				time = Math.min(time, currentTime + getSchedulingInterval());
+			}
+			setNextHostUpdate(host, time);
+			updatedHosts.add(host);
+
+			Log.formatLine(
+					"%.2f: [Host #%d] utilization is %.2f%%",
+					currentTime,
+					host.getId(),
+					host.getUtilizationOfCpu() * 100);
+		}
+
+		checkCloudletCompletion();
+
+		// as when polling, the VMs are left for the cloudlets submitted at the same time
+		for (PowerHost host : hosts) {
+			if (getCloudletSubmitted() == currentTime) {
+				break;
+			}
+			for (Vm vm : host.getCompletedVms()) {
+				getVmAllocationPolicy().deallocateHostForVm(vm);
+				getVmList().remove(vm);
+				Log.printLine("VM #" + vm.getId() + " has been deallocated from host #" + host.getId());
+			}
+		}
+
+		CloudSim.cancelAll(getId(), new PredicateType(CloudSimTags.VM_DATACENTER_EVENT));
+		if (!hostUpdates.isEmpty()) {
+			send(getId(), Math.max(0, hostUpdates.first().time - currentTime), CloudSimTags.VM_DATACENTER_EVENT);
+		}
+
+		setLastProcessTime(currentTime);
+	}
+
+	/**
+	 * Updates the processing of the host of a VM, in event-driven mode.
+	 * 
+	 * @param vmId the id of the VM
+	 * @param userId the id of the owner of the VM
+	 */
+	private void updateHostOfVm(int vmId, int userId) {
+		PowerHost host = (PowerHost) getVmAllocationPolicy().getHost(vmId, userId);
+		if (host != null) {
+			List<PowerHost> hosts = new ArrayList<PowerHost>();
+			hosts.add(host);
+			updateHosts(hosts);
+		}
+	}
+
+	/**
+	 * Checks if one of the VMs of a host has a dynamic workload.
+	 * 
+	 * @param host the host
+	 * @return true, if the utilization of the host changes over time
+	 */
+	private boolean hasDynamicWorkload(PowerHost host) {
+		for (Vm vm : host.getVmList()) {
+			if (vm.getCloudletScheduler() instanceof CloudletSchedulerDynamicWorkload) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sets the next time at which a host has to be updated, in event-driven mode.
+	 * 
+	 * @param host the host
+	 * @param time the time, or Double.MAX_VALUE if the host has nothing to process
+	 */
+	private void setNextHostUpdate(PowerHost host, double time) {
+		HostUpdate update = nextHostUpdates.remove(host);
+		if (update != null) {
+			hostUpdates.remove(update);
+		}
+		if (time != Double.MAX_VALUE) {
+			update = new HostUpdate(time, host);
+			nextHostUpdates.put(host, update);
+			hostUpdates.add(update);
+		}
+	}
+
+	/**
+	 * Accounts the energy consumed by a host at its current utilization until the given time, in
+	 * event-driven mode.
+	 * 
+	 * @param host the host
+	 * @param time the time
+	 */
+	private void settleEnergyConsumption(PowerHost host, double time) {
+		Double from = hostEnergyTimes.get(host);
+		if (from == null) {
+			from = 0.0;
+		}
+		if (time > from) {
+			double utilization = host.getUtilizationOfCpu();
+			power += host.getEnergyLinearInterpolation(utilization, utilization, time - from);
+		}
+		hostEnergyTimes.put(host, time);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Datacenter#checkCloudletCompletion()
+	 */
+	@Override
+	protected void checkCloudletCompletion() {
+		if (!isEventDriven()) {
+			super.checkCloudletCompletion();
+			return;
+		}
+		// cloudlets only finish when their host is updated
+		for (PowerHost host : updatedHosts) {
+			for (Vm vm : host.getVmList()) {
+				while (vm.getCloudletScheduler().isFinishedCloudlets()) {
+					Cloudlet cl = vm.getCloudletScheduler().getNextFinishedCloudlet();
+					if (cl != null) {
+						sendNow(cl.getUserId(), CloudSimTags.CLOUDLET_RETURN, cl);
+					}
+				}
+			}
+		}
+		updatedHosts.clear();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.cloudbus.cloudsim.Datacenter#processVmMigrate(org.cloudbus.cloudsim.core.SimEvent,
@@ -252,6 +438,12 @@ public class PowerDatacenter extends Datacenter {
 	 */
 	@Override
 	protected void processVmMigrate(SimEvent ev, boolean ack) {
+		if (isEventDriven()) {
+			updateHosts(this.<PowerHost> getHostList());
+			super.processVmMigrate(ev, ack);
+			updateHosts(this.<PowerHost> getHostList());
+			return;
+		}
 		updateCloudetProcessingWithoutSchedulingFutureEvents();
 		super.processVmMigrate(ev, ack);
 		SimEvent event = CloudSim.findFirstDeferred(getId(), new PredicateType(CloudSimTags.VM_MIGRATE));
@@ -268,14 +460,67 @@ public class PowerDatacenter extends Datacenter {
 	protected void processCloudletSubmit(SimEvent ev, boolean ack) {
 		super.processCloudletSubmit(ev, ack);
 		setCloudletSubmitted(CloudSim.clock());
+		if (isEventDriven()) {
+			Cloudlet cl = (Cloudlet) ev.getData();
+			updateHostOfVm(cl.getVmId(), cl.getUserId());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Datacenter#processCloudlet(org.cloudbus.cloudsim.core.SimEvent, int)
+	 */
+	@Override
+	protected void processCloudlet(SimEvent ev, int type) {
+		super.processCloudlet(ev, type);
+		if (isEventDriven()) {
+			updateHosts(this.<PowerHost> getHostList());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Datacenter#processCloudletMove(int[], int)
+	 */
+	@Override
+	protected void processCloudletMove(int[] receivedData, int type) {
+		super.processCloudletMove(receivedData, type);
+		if (isEventDriven()) {
+			updateHosts(this.<PowerHost> getHostList());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.cloudbus.cloudsim.Datacenter#processVmDestroy(org.cloudbus.cloudsim.core.SimEvent, boolean)
+	 */
+	@Override
+	protected void processVmDestroy(SimEvent ev, boolean ack) {
+		if (!isEventDriven()) {
+			super.processVmDestroy(ev, ack);
+			return;
+		}
+		Vm vm = (Vm) ev.getData();
+		PowerHost host = (PowerHost) getVmAllocationPolicy().getHost(vm);
+		super.processVmDestroy(ev, ack);
+		if (host != null) {
+			List<PowerHost> hosts = new ArrayList<PowerHost>();
+			hosts.add(host);
+			updateHosts(hosts);
+		}
 	}
 
 	/**
-	 * Gets the power.
+	 * Gets the power. In event-driven mode, the energy of the hosts is first accounted until now.
 	 * 
 	 * @return the power
 	 */
 	public double getPower() {
+		if (isEventDriven()) {
+			for (PowerHost host : this.<PowerHost> getHostList()) {
+				settleEnergyConsumption(host, CloudSim.clock());
+			}
+		}
 		return power;
 	}
 
@@ -322,6 +567,25 @@ public class PowerDatacenter extends Datacenter {
 		this.disableMigrations = disableMigrations;
 	}
 
+	/**
+	 * Checks if the hosts are updated only when their processing changes. It is the case when the
+	 * event-driven mode is set and migrations are disabled.
+	 * 
+	 * @return true, if the hosts are updated only when their processing changes
+	 */
+	public boolean isEventDriven() {
+		return eventDriven && isDisableMigrations();
+	}
+
+	/**
+	 * Sets the event-driven mode. It has to be set before the simulation starts.
+	 * 
+	 * @param eventDriven whether the hosts are updated only when their processing changes
+	 */
+	public void setEventDriven(boolean eventDriven) {
+		this.eventDriven = eventDriven;
+	}
+
 	/**
 	 * Checks if is cloudlet submited.
 	 * 
@@ -365,4 +629,28 @@ public class PowerDatacenter extends Datacenter {
 		setMigrationCount(getMigrationCount() + 1);
 	}
 
+	/**
+	 * A pending update of a host, in event-driven mode.
+	 */
+	private static class HostUpdate implements Comparable<HostUpdate> {
+
+		private final double time;
+
+		private final PowerHost host;
+
+		HostUpdate(double time, PowerHost host) {
+			this.time = time;
+			this.host = host;
+		}
+
+		@Override
+		public int compareTo(HostUpdate other) {
+			int result = Double.compare(time, other.time);
+			if (result == 0) {
+				result = Integer.compare(host.getId(), other.host.getId());
+			}
+			return result;
+		}
+	}
+
 }
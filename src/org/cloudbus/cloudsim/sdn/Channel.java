@@ -8,8 +8,13 @@
 
 package org.cloudbus.cloudsim.sdn;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 
 import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.CloudSim;
@@ -23,6 +28,10 @@ import org.cloudbus.cloudsim.core.CloudSim;
  *
  * This is logical channel. One physical link (class Link) can hold more than one logical channels (class Channel).
  * Channel is directional. It is one way.
+ *
+ * All the transmissions of a channel progress by the same amount, so the channel only keeps the amount
+ * processed so far and, for each transmission, the amount at which it completes, in a heap. The amount
+ * left of a transmission in progress is kept by the channel, not by the Transmission.
  * 
  * @author Jungmin Son
  * @author Rodrigo N. Calheiros
@@ -35,8 +44,11 @@ public class Channel {
 	private double allocatedBandwidth; // Actual bandwidth allocated to the channel
 	private double previousTime;
 
-	private LinkedList<Transmission> inTransmission;
+	private PriorityQueue<InTransmission> inTransmission;
 	private LinkedList<Transmission> completed;
+
+	private long processedSoFar;	// Amount processed by every transmission since the channel was created
+	private long transmissionCount;	// Gives the order in which the transmissions were added
 	
 	private final int srcId;
 	private final int dstId;
@@ -51,7 +63,7 @@ public class Channel {
 		this.links = links;
 		this.allocatedBandwidth = bandwidth;
 		this.requestedBandwidth = bandwidth;
-		this.inTransmission = new LinkedList<Transmission>();
+		this.inTransmission = new PriorityQueue<InTransmission>(11, FINISH_ORDER);
 		this.completed = new LinkedList<Transmission>();
 	}
 	
@@ -199,30 +211,35 @@ public class Channel {
 	 */
 	public boolean updatePackageProcessing(){
 		double currentTime = CloudSim.clock();
+		// most channels are idle or already updated at this time; spare them the rounding
+		if(currentTime == this.previousTime || inTransmission.size() == 0)
+			return false;	// Nothing changed
 		double timeSpent = NetworkOperatingSystem.round(currentTime - this.previousTime);
 		
-		if(timeSpent <= 0 || inTransmission.size() == 0)
+		if(timeSpent <= 0)
 			return false;	// Nothing changed
 
 		//update the amount of transmission 
 		long processedThisRound =  Math.round(timeSpent*getAllocatedBandwidthPerTransmission());
+		processedSoFar += processedThisRound;
 		
-		//update transmission table; remove finished transmission
-		LinkedList<Transmission> completedTransmissions = new LinkedList<Transmission>();
-		for(Transmission transmission: inTransmission){
-			transmission.addCompletedLength(processedThisRound);
-			
-			if (transmission.isCompleted()){
-				completedTransmissions.add(transmission);
-				this.completed.add(transmission);
-			}	
+		//remove finished transmissions, in the order they were added
+		List<InTransmission> completedTransmissions = new ArrayList<InTransmission>();
+		while(!inTransmission.isEmpty() && inTransmission.peek().completionPoint <= processedSoFar) {
+			completedTransmissions.add(inTransmission.poll());
+		}
+		Collections.sort(completedTransmissions, ADDITION_ORDER);
+		for(InTransmission entry: completedTransmissions) {
+			entry.transmission.addCompletedLength(entry.transmission.getSize());
+			this.completed.add(entry.transmission);
 		}
 		
-		this.inTransmission.removeAll(completedTransmissions);
 		previousTime=currentTime;
 
-		Log.printLine(CloudSim.clock() + ": Channel.updatePackageProcessing() ("+this.toString()+"):Time spent:"+timeSpent+
-				", BW/host:"+getAllocatedBandwidthPerTransmission()+", Processed:"+processedThisRound);
+		if(!Log.isDisabled()) {
+			Log.printLine(CloudSim.clock() + ": Channel.updatePackageProcessing() ("+this.toString()+"):Time spent:"+timeSpent+
+					", BW/host:"+getAllocatedBandwidthPerTransmission()+", Processed:"+processedThisRound);
+		}
 		
 		if(completedTransmissions.isEmpty())
 			return false;	// Nothing changed
@@ -230,14 +247,14 @@ public class Channel {
 	}
 	
 	// Estimated finish time of one transmission
-	private double estimateFinishTime(Transmission t) {
+	private double estimateFinishTime(InTransmission t) {
 		double bw = getAllocatedBandwidthPerTransmission();
 		
 		if(bw == 0) {
 			return Double.POSITIVE_INFINITY;
 		}
 		
-		double eft= (double)t.getSize()/bw;
+		double eft= (double)(t.completionPoint - processedSoFar)/bw;
 		return eft;
 	}
 	
@@ -246,10 +263,9 @@ public class Channel {
 		//now, predicts delay to next transmission completion
 		double delay = Double.POSITIVE_INFINITY;
 
-		for (Transmission transmission:this.inTransmission){
-			double eft = estimateFinishTime(transmission);
-			if (eft<delay)
-				delay = eft;
+		// the transmission with the least amount left finishes first
+		if (!this.inTransmission.isEmpty()){
+			delay = estimateFinishTime(this.inTransmission.peek());
 		}
 		
 		if(delay == Double.POSITIVE_INFINITY) {
@@ -279,8 +295,9 @@ public class Channel {
 		if (this.inTransmission.isEmpty()) 
 			previousTime=CloudSim.clock();
 		
-		this.inTransmission.add(transmission);
-		double eft = estimateFinishTime(transmission);
+		InTransmission entry = new InTransmission(transmission, processedSoFar + transmission.getSize(), transmissionCount++);
+		this.inTransmission.add(entry);
+		double eft = estimateFinishTime(entry);
 
 		return eft;
 	}
@@ -291,7 +308,15 @@ public class Channel {
 	 * 
 	 */
 	public void removeTransmission(Transmission transmission){
-		inTransmission.remove(transmission);
+		Iterator<InTransmission> iter = inTransmission.iterator();
+		while(iter.hasNext()) {
+			InTransmission entry = iter.next();
+			if(entry.transmission == transmission) {
+				transmission.addCompletedLength(processedSoFar - (entry.completionPoint - transmission.getSize()));
+				iter.remove();
+				return;
+			}
+		}
 	}
 
 	/**
@@ -309,6 +334,18 @@ public class Channel {
 		return returnList;
 	}
 	
+	public boolean hasArrivedPackages() {
+		return !completed.isEmpty();
+	}
+	
+	public List<Link> getLinks() {
+		return links;
+	}
+	
+	public List<Node> getNodes() {
+		return nodes;
+	}
+	
 	public int getChId() {
 		return chId;
 	}
@@ -338,4 +375,33 @@ public class Channel {
 	public double getRequestedBandwidth() {
 		return requestedBandwidth;
 	}
+	
+	/**
+	 * A transmission in progress and the amount processed by the channel at which it completes.
+	 */
+	private static class InTransmission {
+		final Transmission transmission;
+		final long completionPoint;
+		final long order;
+		
+		InTransmission(Transmission transmission, long completionPoint, long order) {
+			this.transmission = transmission;
+			this.completionPoint = completionPoint;
+			this.order = order;
+		}
+	}
+	
+	private static final Comparator<InTransmission> FINISH_ORDER = new Comparator<InTransmission>() {
+		@Override
+		public int compare(InTransmission a, InTransmission b) {
+			return Long.compare(a.completionPoint, b.completionPoint);
+		}
+	};
+	
+	private static final Comparator<InTransmission> ADDITION_ORDER = new Comparator<InTransmission>() {
+		@Override
+		public int compare(InTransmission a, InTransmission b) {
+			return Long.compare(a.order, b.order);
+		}
+	};
 }
@@ -94,7 +94,8 @@ public class Link {
 		return latency;
 	}
 	
-	private List<Channel> getChannels(Node from) {
+	// Channels passing through this link from the given node
+	public List<Channel> getChannels(Node from) {
 		List<Channel> channels;
 		if(isUplink(from)) {
 			channels = this.upChannels;
@@ -106,6 +107,13 @@ public class Link {
 		return channels;
 	}
 	
+	// All channels passing through this link, in both ways
+	public List<Channel> getChannels() {
+		List<Channel> channels = new ArrayList<Channel>(this.upChannels);
+		channels.addAll(this.downChannels);
+		return channels;
+	}
+	
 	public double getDedicatedChannelAdjustFactor(Node from) {
 		double factor = 1.0;
 		double totalRequested = getRequestedBandwidthForDedicatedChannels(from);
@@ -0,0 +1,130 @@
+/*
+ * Title:        CloudSimSDN
+ * Description:  SDN extension for CloudSim
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2015, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.sdn;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares the bandwidth left by the dedicated channels among the default channels, max-min fairly.
+ * A default channel gets an equal share of the free bandwidth of the link it is the most
+ * constrained on, and the bandwidth it cannot use on its other links goes to the channels sharing
+ * them, instead of each channel getting the lowest even split along its path.
+ * <p>
+ * The shares are computed by progressive filling, one link way at a time: the way giving the
+ * lowest share to the channels not yet fixed fixes them at that share. Only the channels connected
+ * to the changed ones through the links they share are recomputed, since the shares of the other
+ * channels cannot change.
+ */
+public class MaxMinFairSharing {
+
+	/** A link in one way, with the default channels passing through it. */
+	private static class LinkWay {
+		double freeBandwidth;
+		final List<Channel> channels = new ArrayList<Channel>();
+		int unfixed;
+	}
+
+	/**
+	 * Computes the shares of the default channels connected to the given channels, and gives them to
+	 * the channels whose share changed with {@link Channel#changeBandwidth(double)}.
+	 *
+	 * @param changed the channels whose share may have changed
+	 * @param channels all the channels, in the order in which they are given their share
+	 */
+	public static void share(Collection<Channel> changed, Collection<Channel> channels) {
+		// The channels of a link in one way identify that way
+		Map<List<Channel>, LinkWay> ways = new IdentityHashMap<List<Channel>, LinkWay>();
+		List<LinkWay> wayOrder = new ArrayList<LinkWay>();
+		Map<Channel, List<LinkWay>> component = new HashMap<Channel, List<LinkWay>>();
+
+		Deque<Channel> toVisit = new ArrayDeque<Channel>();
+		for(Channel ch:changed) {
+			if(ch.getChId() == -1 && !component.containsKey(ch)) {
+				component.put(ch, null);
+				toVisit.add(ch);
+			}
+		}
+		while(!toVisit.isEmpty()) {
+			Channel ch = toVisit.poll();
+			List<LinkWay> path = new ArrayList<LinkWay>();
+			for(int i=0; i<ch.getLinks().size(); i++) {
+				Node from = ch.getNodes().get(i);
+				Link link = ch.getLinks().get(i);
+				List<Channel> linkChannels = link.getChannels(from);
+
+				LinkWay way = ways.get(linkChannels);
+				if(way == null) {
+					way = new LinkWay();
+					way.freeBandwidth = Math.max(0, link.getFreeBandwidth(from));
+					for(Channel other:linkChannels) {
+						if(other.getChId() != -1)
+							continue;
+						way.channels.add(other);
+						if(!component.containsKey(other)) {
+							component.put(other, null);
+							toVisit.add(other);
+						}
+					}
+					way.unfixed = way.channels.size();
+					ways.put(linkChannels, way);
+					wayOrder.add(way);
+				}
+				path.add(way);
+			}
+			component.put(ch, path);
+		}
+
+		Map<Channel, Double> shares = fill(wayOrder, component);
+
+		for(Channel ch:channels) {
+			Double share = shares.get(ch);
+			if(share != null && ch.getAllocatedBandwidth() != share) {
+				ch.changeBandwidth(share);
+			}
+		}
+	}
+
+	private static Map<Channel, Double> fill(List<LinkWay> ways, Map<Channel, List<LinkWay>> paths) {
+		Map<Channel, Double> shares = new HashMap<Channel, Double>();
+
+		while(shares.size() < paths.size()) {
+			LinkWay bottleneck = null;
+			double lowestShare = Double.POSITIVE_INFINITY;
+			for(LinkWay way:ways) {
+				if(way.unfixed == 0)
+					continue;
+				double share = way.freeBandwidth / way.unfixed;
+				if(share < lowestShare) {
+					lowestShare = share;
+					bottleneck = way;
+				}
+			}
+			if(bottleneck == null)
+				break;	// the channels left pass through no link
+
+			for(Channel ch:bottleneck.channels) {
+				if(shares.containsKey(ch))
+					continue;
+				shares.put(ch, lowestShare);
+				for(LinkWay way:paths.get(ch)) {
+					way.freeBandwidth = Math.max(0, way.freeBandwidth - lowestShare);
+					way.unfixed--;
+				}
+			}
+		}
+		return shares;
+	}
+}
@@ -14,11 +14,13 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
 import org.cloudbus.cloudsim.Host;
@@ -75,10 +77,16 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 	
 	boolean isApplicationDeployed = false;
 	
+	// There is at most one SDN_INTERNAL_PACKAGE_PROCESS event pending
+	private boolean internalEventPending = false;
+	
 	// Resolution of the result.
 	public static double minTimeBetweenEvents = 0.001;	// in sec
 	public static int resolutionPlaces = 5;
 	public static int timeUnit = 1;	// 1: sec, 1000: msec
+
+	// Share the free bandwidth among the default channels max-min fairly instead of evenly per link
+	public static boolean maxMinFairSharing = false;
 	
 
 
@@ -131,6 +139,7 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 		
 		switch(tag){
 			case Constants.SDN_INTERNAL_PACKAGE_PROCESS: 
+				internalEventPending = false;
 				internalPackageProcess(); 
 				break;
 			case CloudSimTags.VM_CREATE_ACK:
@@ -194,10 +203,12 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 		}
 		
 		double eft = channel.addTransmission(new Transmission(pkg));
-		Log.printLine(CloudSim.clock() + ": " + getName() + ".addPackageToChannel ("+channel
-				+"): Transmission added:" + 
-				NetworkOperatingSystem.debugVmIdName.get(src) + "->"+
-				NetworkOperatingSystem.debugVmIdName.get(dst) + ", flow ="+flowId + " / eft="+eft);
+		if(!Log.isDisabled()) {
+			Log.printLine(CloudSim.clock() + ": " + getName() + ".addPackageToChannel ("+channel
+					+"): Transmission added:" + 
+					NetworkOperatingSystem.debugVmIdName.get(src) + "->"+
+					NetworkOperatingSystem.debugVmIdName.get(dst) + ", flow ="+flowId + " / eft="+eft);
+		}
 
 		sendInternalEvent();
 	}
@@ -210,7 +221,10 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 	}
 	
 	private void sendInternalEvent() {
-		CloudSim.cancelAll(getId(), new PredicateType(Constants.SDN_INTERNAL_PACKAGE_PROCESS));
+		if(internalEventPending) {
+			CloudSim.cancelAll(getId(), new PredicateType(Constants.SDN_INTERNAL_PACKAGE_PROCESS));
+			internalEventPending = false;
+		}
 		
 		if(channelTable.size() != 0) {
 			// More to process. Send event again
@@ -218,6 +232,7 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 			Log.printLine(CloudSim.clock() + ": " + getName() + ".sendInternalEvent(): next finish time: "+ delay);
 			
 			send(this.getId(), delay, Constants.SDN_INTERNAL_PACKAGE_PROCESS);
+			internalEventPending = true;
 		}
 	}
 	
@@ -242,17 +257,23 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 		boolean needSendEvent = false;
 		
 		LinkedList<Channel> completeChannels = new LinkedList<Channel>();
+		List<String> completeKeys = new ArrayList<String>();
 		
-		for(Channel ch:channelTable.values()){
+		for(Map.Entry<String, Channel> entry:channelTable.entrySet()){
+			Channel ch = entry.getValue();
 			boolean isCompleted = ch.updatePackageProcessing();
 			needSendEvent = needSendEvent || isCompleted;
-			//completeChannels.add(ch.getArrivedPackages());
-			completeChannels.add(ch);
+			// packages may also have completed when the bandwidth of the channel was changed
+			if(ch.hasArrivedPackages()) {
+				completeChannels.add(ch);
+				completeKeys.add(entry.getKey());
+			}
 		}
 		
 		if(completeChannels.size() != 0) {
 			processCompletePackages(completeChannels);
-			updateChannel();
+			// only channels with completed packages can have become empty
+			updateChannel(completeKeys);
 		}
 
 		return needSendEvent;
@@ -296,30 +317,61 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 		//System.err.println("NOS.addChannel:"+getKey(src, dst, chId));
 		this.channelTable.put(getKey(src, dst, chId), ch);
 		ch.initialize();
-		adjustAllChannels();
+		adjustChannels(ch);
 	}
 	
 	private Channel removeChannel(String key) {
 		//System.err.println("NOS.removeChannel:"+key);
 		Channel ch = this.channelTable.remove(key);
 		ch.terminate();
-		adjustAllChannels();
+		adjustChannels(ch);
 		return ch;
 	}
 	
-	private void adjustAllChannels() {
+	/**
+	 * Adjusts the bandwidth of the channels after a channel was added or removed. The dedicated
+	 * bandwidth of a channel only depends on the links it passes through, so only the channels
+	 * sharing a link with the changed one are adjusted; the shared bandwidth also depends on the
+	 * dedicated channels of the links, so are the channels sharing a link with a dedicated channel
+	 * whose bandwidth was adjusted. The channels are adjusted in the order of the channel table.
+	 */
+	private void adjustChannels(Channel changed) {
+		Set<Channel> affected = new HashSet<Channel>();
+		addChannelsSharingLinks(changed, affected);
+		
+		List<Channel> adjusted = new ArrayList<Channel>();
 		for(Channel ch:this.channelTable.values()) {
-			if(ch.adjustDedicatedBandwidthAlongLink()) {
+			if(affected.contains(ch) && ch.adjustDedicatedBandwidthAlongLink()) {
 				// Channel BW is changed. send event.
+				adjusted.add(ch);
 			}
 		}
+		for(Channel ch:adjusted) {
+			addChannelsSharingLinks(ch, affected);
+		}
 		
+		if(maxMinFairSharing) {
+			List<Channel> changedShared = new ArrayList<Channel>();
+			for(Channel ch:this.channelTable.values()) {
+				if(affected.contains(ch))
+					changedShared.add(ch);
+			}
+			MaxMinFairSharing.share(changedShared, this.channelTable.values());
+			return;
+		}
+
 		for(Channel ch:this.channelTable.values()) {
-			if(ch.adjustSharedBandwidthAlongLink()) {
+			if(affected.contains(ch) && ch.adjustSharedBandwidthAlongLink()) {
 				// Channel BW is changed. send event.
 			}
 		}
 	}
+	
+	private void addChannelsSharingLinks(Channel channel, Set<Channel> channels) {
+		for(Link link:channel.getLinks()) {
+			channels.addAll(link.getChannels());
+		}
+	}
 
 	private Channel createChannel(int src, int dst, int flowId, Node srcNode) {
 		List<Node> nodes = new ArrayList<Node>();
@@ -369,9 +421,9 @@ public abstract class NetworkOperatingSystem extends SimEntity {
 		return channel;
 	}
 	
-	private void updateChannel() {
+	private void updateChannel(List<String> keys) {
 		List<String> removeCh = new ArrayList<String>();  
-		for(String key:this.channelTable.keySet()) {
+		for(String key:keys) {
 			Channel ch = this.channelTable.get(key);
 			if(ch.getActiveTransmissionNum() == 0) {
 				// No more job in channel. Delete
@@ -1,7 +1,6 @@
 package org.fog.application;
 
 import org.apache.commons.math3.util.Pair;
-import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.fog.application.selectivity.SelectivityModel;
 import org.fog.entities.Tuple;
 import org.fog.scheduler.TupleScheduler;
@@ -38,6 +37,15 @@ public class Application {
      */
     private List<AppLoop> loops;
     private Map<String, AppEdge> edgeMap;
+    /**
+     * Outgoing edges of each module, with their selectivity models, by module name and input tuple
+     * type. Compiled from the edges and modules on first use and dropped when they change.
+     */
+    private Map<String, Map<String, EdgeOutput[]>> edgeOutputs;
+    /**
+     * The edge leaving each source (e.g. a sensor tuple type), compiled with {@link #edgeOutputs}.
+     */
+    private Map<String, AppEdge> edgesBySource;
 
     public Application(String appId, int userId) {
         setAppId(appId);
@@ -89,6 +97,7 @@ public class Application {
                 mips, ram, bw, size, vmm, new TupleScheduler(mips, 1), new HashMap<Pair<String, String>, SelectivityModel>());
 
         getModules().add(module);
+        invalidateEdgeDispatch();
 
     }
 
@@ -106,6 +115,7 @@ public class Application {
                 mips, ram, bw, storageSize, vmm, new TupleScheduler(mips, 1), new HashMap<Pair<String, String>, SelectivityModel>());
 
         getModules().add(module);
+        invalidateEdgeDispatch();
     }
 
     public void addAppModule(String moduleName, int ram, int mips, int storageSize, long bw, int numberOfPes) {
@@ -115,6 +125,7 @@ public class Application {
                 mips, ram, bw, storageSize, vmm, new TupleScheduler(mips, numberOfPes), new HashMap<>());
 
         getModules().add(module);
+        invalidateEdgeDispatch();
     }
 
     /**
@@ -133,6 +144,7 @@ public class Application {
         AppEdge edge = new AppEdge(source, destination, tupleCpuLength, tupleNwLength, tupleType, direction, edgeType);
         getEdges().add(edge);
         getEdgeMap().put(edge.getTupleType(), edge);
+        invalidateEdgeDispatch();
     }
 
     /**
@@ -151,6 +163,7 @@ public class Application {
         AppEdge edge = new AppEdge(source, destination, periodicity, tupleCpuLength, tupleNwLength, tupleType, direction, edgeType);
         getEdges().add(edge);
         getEdgeMap().put(edge.getTupleType(), edge);
+        invalidateEdgeDispatch();
     }
 
     /**
@@ -164,6 +177,81 @@ public class Application {
     public void addTupleMapping(String moduleName, String inputTupleType, String outputTupleType, SelectivityModel selectivityModel) {
         AppModule module = getModuleByName(moduleName);
         module.getSelectivityMap().put(new Pair<String, String>(inputTupleType, outputTupleType), selectivityModel);
+        invalidateEdgeDispatch();
+    }
+
+    /**
+     * Drops the compiled edge dispatch tables, so that they are compiled again on next use. The
+     * methods of this class that change the edges or the tuple mappings call it; code that changes
+     * the lists of edges or modules, or the selectivity map of a module, directly must call it too.
+     */
+    public void invalidateEdgeDispatch() {
+        edgeOutputs = null;
+        edgesBySource = null;
+    }
+
+    /**
+     * Compiles, for each module and input tuple type, the outgoing edges that have a selectivity
+     * model, in the order of {@link #getEdges()}.
+     */
+    private void compileEdgeDispatch() {
+        Map<String, Map<String, List<EdgeOutput>>> outputs = new HashMap<>();
+        Map<String, AppEdge> bySource = new HashMap<>();
+        for (AppEdge edge : getEdges()) {
+            bySource.put(edge.getSource(), edge);
+            AppModule module = getModuleByName(edge.getSource());
+            if (module == null)
+                continue;
+            for (Map.Entry<Pair<String, String>, SelectivityModel> mapping : module.getSelectivityMap().entrySet()) {
+                if (mapping.getValue() == null || !edge.getTupleType().equals(mapping.getKey().getSecond()))
+                    continue;
+                Map<String, List<EdgeOutput>> byInputType = outputs.get(module.getName());
+                if (byInputType == null) {
+                    byInputType = new HashMap<>();
+                    outputs.put(module.getName(), byInputType);
+                }
+                List<EdgeOutput> list = byInputType.get(mapping.getKey().getFirst());
+                if (list == null) {
+                    list = new ArrayList<>();
+                    byInputType.put(mapping.getKey().getFirst(), list);
+                }
+                list.add(new EdgeOutput(edge, mapping.getValue()));
+            }
+        }
+        Map<String, Map<String, EdgeOutput[]>> compiled = new HashMap<>();
+        for (Map.Entry<String, Map<String, List<EdgeOutput>>> module : outputs.entrySet()) {
+            Map<String, EdgeOutput[]> byInputType = new HashMap<>();
+            for (Map.Entry<String, List<EdgeOutput>> input : module.getValue().entrySet()) {
+                byInputType.put(input.getKey(), input.getValue().toArray(new EdgeOutput[0]));
+            }
+            compiled.put(module.getKey(), byInputType);
+        }
+        edgeOutputs = compiled;
+        edgesBySource = bySource;
+    }
+
+    /**
+     * Gets the outgoing edges of a module for an input tuple type.
+     *
+     * @return the edges with their selectivity models, or <tt>null</tt> if there is none
+     */
+    private EdgeOutput[] getEdgeOutputs(String moduleName, String inputTupleType) {
+        if (edgeOutputs == null)
+            compileEdgeDispatch();
+        Map<String, EdgeOutput[]> byInputType = edgeOutputs.get(moduleName);
+        return byInputType != null ? byInputType.get(inputTupleType) : null;
+    }
+
+    /**
+     * Gets the edge leaving a source, e.g. the edge carrying the tuples of a sensor.
+     *
+     * @param source the name of the source module or tuple type
+     * @return the last edge of {@link #getEdges()} leaving the source, or <tt>null</tt> if there is none
+     */
+    public AppEdge getEdgeFromSource(String source) {
+        if (edgesBySource == null)
+            compileEdgeDispatch();
+        return edgesBySource.get(source);
     }
 
     /**
@@ -205,62 +293,58 @@ public class Application {
      */
     public List<Tuple> getResultantTuples(String moduleName, Tuple inputTuple, int sourceDeviceId, int sourceModuleId) {
         List<Tuple> tuples = new ArrayList<Tuple>();
-        AppModule module = getModuleByName(moduleName);
-        for (AppEdge edge : getEdges()) {
-            if (edge.getSource().equals(moduleName)) {
-                Pair<String, String> pair = new Pair<String, String>(inputTuple.getTupleType(), edge.getTupleType());
-
-                if (module.getSelectivityMap().get(pair) == null)
-                    continue;
-                SelectivityModel selectivityModel = module.getSelectivityMap().get(pair);
-                if (selectivityModel.canSelect()) {
-                    //TODO check if the edge is ACTUATOR, then create multiple tuples
-                    if (edge.getEdgeType() == AppEdge.ACTUATOR) {
-                        //for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
-                        Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),
-                                (long) (edge.getTupleCpuLength()),
-                                inputTuple.getNumberOfPes(),
-                                (long) (edge.getTupleNwLength()),
-                                inputTuple.getCloudletOutputSize(),
-                                inputTuple.getUtilizationModelCpu(),
-                                inputTuple.getUtilizationModelRam(),
-                                inputTuple.getUtilizationModelBw()
-                        );
-                        tuple.setActualTupleId(inputTuple.getActualTupleId());
-                        tuple.setUserId(inputTuple.getUserId());
-                        tuple.setAppId(inputTuple.getAppId());
-                        tuple.setDestModuleName(edge.getDestination());
-                        tuple.setSrcModuleName(edge.getSource());
-                        tuple.setDirection(Tuple.ACTUATOR);
-                        tuple.setTupleType(edge.getTupleType());
-                        tuple.setSourceDeviceId(sourceDeviceId);
-                        tuple.setSourceModuleId(sourceModuleId);
-                        //tuple.setActuatorId(actuatorId);
-
-                        tuples.add(tuple);
-                        //}
-                    } else {
-                        Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),
-                                (long) (edge.getTupleCpuLength()),
-                                inputTuple.getNumberOfPes(),
-                                (long) (edge.getTupleNwLength()),
-                                inputTuple.getCloudletOutputSize(),
-                                inputTuple.getUtilizationModelCpu(),
-                                inputTuple.getUtilizationModelRam(),
-                                inputTuple.getUtilizationModelBw()
-                        );
-                        tuple.setActualTupleId(inputTuple.getActualTupleId());
-                        tuple.setUserId(inputTuple.getUserId());
-                        tuple.setAppId(inputTuple.getAppId());
-                        tuple.setDestModuleName(edge.getDestination());
-                        tuple.setSrcModuleName(edge.getSource());
-                        tuple.setDirection(edge.getDirection());
-                        tuple.setTupleType(edge.getTupleType());
-                        tuple.setSourceModuleId(sourceModuleId);
-                        tuple.setTraversedMicroservices(inputTuple.getTraversed());
-
-                        tuples.add(tuple);
-                    }
+        EdgeOutput[] outputs = getEdgeOutputs(moduleName, inputTuple.getTupleType());
+        if (outputs == null)
+            return tuples;
+        for (EdgeOutput output : outputs) {
+            AppEdge edge = output.edge;
+            if (output.selectivityModel.canSelect()) {
+                //TODO check if the edge is ACTUATOR, then create multiple tuples
+                if (edge.getEdgeType() == AppEdge.ACTUATOR) {
+                    //for(Integer actuatorId : module.getActuatorSubscriptions().get(edge.getTupleType())){
+                    Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),
+                            (long) (edge.getTupleCpuLength()),
+                            inputTuple.getNumberOfPes(),
+                            (long) (edge.getTupleNwLength()),
+                            inputTuple.getCloudletOutputSize(),
+                            inputTuple.getUtilizationModelCpu(),
+                            inputTuple.getUtilizationModelRam(),
+                            inputTuple.getUtilizationModelBw()
+                    );
+                    tuple.setActualTupleId(inputTuple.getActualTupleId());
+                    tuple.setUserId(inputTuple.getUserId());
+                    tuple.setAppId(inputTuple.getAppId());
+                    tuple.setDestModuleName(edge.getDestination());
+                    tuple.setSrcModuleName(edge.getSource());
+                    tuple.setDirection(Tuple.ACTUATOR);
+                    tuple.setTupleType(edge.getTupleType());
+                    tuple.setSourceDeviceId(sourceDeviceId);
+                    tuple.setSourceModuleId(sourceModuleId);
+                    //tuple.setActuatorId(actuatorId);
+
+                    tuples.add(tuple);
+                    //}
+                } else {
+                    Tuple tuple = new Tuple(appId, FogUtils.generateTupleId(), edge.getDirection(),
+                            (long) (edge.getTupleCpuLength()),
+                            inputTuple.getNumberOfPes(),
+                            (long) (edge.getTupleNwLength()),
+                            inputTuple.getCloudletOutputSize(),
+                            inputTuple.getUtilizationModelCpu(),
+                            inputTuple.getUtilizationModelRam(),
+                            inputTuple.getUtilizationModelBw()
+                    );
+                    tuple.setActualTupleId(inputTuple.getActualTupleId());
+                    tuple.setUserId(inputTuple.getUserId());
+                    tuple.setAppId(inputTuple.getAppId());
+                    tuple.setDestModuleName(edge.getDestination());
+                    tuple.setSrcModuleName(edge.getSource());
+                    tuple.setDirection(edge.getDirection());
+                    tuple.setTupleType(edge.getTupleType());
+                    tuple.setSourceModuleId(sourceModuleId);
+                    tuple.setTraversedMicroservices(inputTuple.getTraversed());
+
+                    tuples.add(tuple);
                 }
             }
         }
@@ -283,9 +367,9 @@ public class Application {
                         1,
                         (long) (edge.getTupleNwLength()),
                         100,
-                        new UtilizationModelFull(),
-                        new UtilizationModelFull(),
-                        new UtilizationModelFull()
+                        Tuple.FULL_UTILIZATION,
+                        Tuple.FULL_UTILIZATION,
+                        Tuple.FULL_UTILIZATION
                 );
                 tuple.setUserId(getUserId());
                 tuple.setAppId(getAppId());
@@ -305,9 +389,9 @@ public class Application {
                     1,
                     (long) (edge.getTupleNwLength()),
                     100,
-                    new UtilizationModelFull(),
-                    new UtilizationModelFull(),
-                    new UtilizationModelFull()
+                    Tuple.FULL_UTILIZATION,
+                    Tuple.FULL_UTILIZATION,
+                    Tuple.FULL_UTILIZATION
             );
             //tuple.setActualTupleId(inputTuple.getActualTupleId());
             tuple.setUserId(getUserId());
@@ -337,6 +421,7 @@ public class Application {
 
     public void setModules(List<AppModule> modules) {
         this.modules = modules;
+        invalidateEdgeDispatch();
     }
 
     public List<AppEdge> getEdges() {
@@ -345,6 +430,7 @@ public class Application {
 
     public void setEdges(List<AppEdge> edges) {
         this.edges = edges;
+        invalidateEdgeDispatch();
     }
 
     public GeoCoverage getGeoCoverage() {
@@ -416,4 +502,17 @@ public class Application {
     public DAG getDAG() {
         return dag;
     }
+
+    /**
+     * An outgoing edge of a module and the selectivity model that governs it for one input tuple type.
+     */
+    private static class EdgeOutput {
+        final AppEdge edge;
+        final SelectivityModel selectivityModel;
+
+        EdgeOutput(AppEdge edge, SelectivityModel selectivityModel) {
+            this.edge = edge;
+            this.selectivityModel = selectivityModel;
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package org.fog.application.selectivity;
 
+import java.util.Random;
+
 /**
  * Generates an output tuple for an incoming input tuple with a fixed probability
  * @author Harshit Gupta
@@ -12,6 +14,11 @@ public class FractionalSelectivity implements SelectivityModel{
 	 */
 	double selectivity;
 	
+	/**
+	 * The source of the random draws, or null to use {@link Math#random()}
+	 */
+	private Random random;
+	
 	public FractionalSelectivity(double selectivity){
 		setSelectivity(selectivity);
 	}
@@ -22,9 +29,17 @@ public class FractionalSelectivity implements SelectivityModel{
 		this.selectivity = selectivity;
 	}
 	
+	public Random getRandom() {
+		return random;
+	}
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+	
 	@Override
 	public boolean canSelect() {
-		if(Math.random() < getSelectivity()) // if the probability condition is satisfied
+		double draw = random != null ? random.nextDouble() : Math.random();
+		if(draw < getSelectivity()) // if the probability condition is satisfied
 			return true;
 		return false;
 	}
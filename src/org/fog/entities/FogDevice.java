@@ -4,6 +4,7 @@ import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.*;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.CloudSimTags;
+import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
 import org.cloudbus.cloudsim.power.PowerDatacenter;
 import org.cloudbus.cloudsim.power.PowerHost;
@@ -23,7 +24,7 @@ import org.json.simple.JSONObject;
 
 import java.util.*;
 
-public class FogDevice extends PowerDatacenter {
+public class FogDevice extends PowerDatacenter implements TupleAckConsumer {
     protected Queue<Tuple> northTupleQueue;
     protected Queue<Pair<Tuple, Integer>> southTupleQueue;
 
@@ -72,6 +73,13 @@ public class FogDevice extends PowerDatacenter {
     protected double energyConsumption;
     protected double lastUtilizationUpdateTime;
     protected double lastUtilization;
+    /**
+     * Power drawn at the utilization {@link #powerUtilization} under {@link #powerModel}, so that
+     * the power model is only queried when the utilization changes
+     */
+    private double power;
+    private double powerUtilization = Double.NaN;
+    private PowerModel powerModel;
     private int level;
 
     protected double ratePerMips;
@@ -89,6 +97,64 @@ public class FogDevice extends PowerDatacenter {
     protected boolean isClusterLinkBusy; //Flag denoting whether the link connecting to cluster from this FogDevice is busy
     protected double clusterLinkBandwidth;
 
+    /**
+     * Times at which the links of this device finish transmitting the tuples already sent over
+     * them, used instead of the tuple queues when {@link Config#ANALYTIC_LINK_MODEL} is set
+     */
+    protected double northLinkFreeTime;
+    protected double clusterLinkFreeTime;
+    /**
+     * Time at which the link to each child is free; each child has its own link in the analytic
+     * link model
+     */
+    protected Map<Integer, Double> childToSouthLinkFreeTime = new HashMap<Integer, Double>();
+
+    /**
+     * Time of the last TUPLE_ACK sent to each entity, used to coalesce acknowledgements
+     */
+    private Map<Integer, Double> lastTupleAckTime;
+
+    /**
+     * Next hop (child ID) for every descendant of this device, or null when it has to be rebuilt.
+     * It is cleared on this device and all its ancestors whenever the children of a device change.
+     */
+    private Map<Integer, Integer> descendantToChildMap;
+
+    /**
+     * First associated actuator for every actuator type, built from associatedActuatorIds
+     */
+    private Map<String, Pair<Integer, Double>> actuatorTypeToAssociationMap;
+    private int indexedActuatorCount = -1;
+
+    /**
+     * Modules (VMs) of the host by module name, in the order of the host's VM list, or null when it
+     * has to be rebuilt. It is cleared when modules arrive, leave or are released.
+     */
+    private Map<String, List<AppModule>> moduleNameToVmsMap;
+    private int indexedVmCount = -1;
+
+    /**
+     * MIPS shares requested for a busy and for an idle module. The VM scheduler only reads the
+     * requested shares, so every allocation uses these two lists.
+     */
+    private List<Double> busyMipsShare;
+    private List<Double> idleMipsShare;
+
+    private static final int NO_ALLOCATION = 0;
+    private static final int ALL_MODULES_ALLOCATION = 1;
+    private static final int FIRST_MODULE_ALLOCATION = 2;
+
+    /**
+     * The last MIPS allocation made by this device: which kind it was, the VMs of the host, whether
+     * each one was busy, and the share the VM scheduler allocated to it. Any later change in the
+     * scheduler replaces its allocated share lists, so comparing them by identity tells whether
+     * the allocation is still in place.
+     */
+    private int allocationKind = NO_ALLOCATION;
+    private Vm[] allocatedVms = new Vm[0];
+    private boolean[] allocatedVmBusy = new boolean[0];
+    private Object[] allocatedMipsShares = new Object[0];
+
 
     public FogDevice(
             String name,
@@ -309,7 +375,7 @@ public class FogDevice extends PowerDatacenter {
         // TODO Auto-generated method stub
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
-        System.out.println(getName() + " is sending " + appModule.getName());
+        Logger.debug(getName(), "Sending module " + appModule.getName());
         NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
@@ -324,7 +390,7 @@ public class FogDevice extends PowerDatacenter {
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
         Application app = (Application) object.get("application");
-        System.out.println(getName() + " is receiving " + appModule.getName());
+        Logger.debug(getName(), "Receiving module " + appModule.getName());
         NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
@@ -353,18 +419,61 @@ public class FogDevice extends PowerDatacenter {
         if (!moduleInstanceCount.containsKey(appId))
             moduleInstanceCount.put(appId, new HashMap<String, Integer>());
         moduleInstanceCount.get(appId).put(config.getModule().getName(), config.getInstanceCount());
-        System.out.println(getName() + " Creating " + config.getInstanceCount() + " instances of module " + config.getModule().getName());
+        Logger.debug(getName(), "Creating " + config.getInstanceCount() + " instances of module " + config.getModule().getName());
     }
 
     private AppModule getModuleByName(String moduleName) {
-        AppModule module = null;
-        for (Vm vm : getHost().getVmList()) {
-            if (((AppModule) vm).getName().equals(moduleName)) {
-                module = (AppModule) vm;
-                break;
+        List<AppModule> modules = getModulesByName(moduleName);
+        return modules.isEmpty() ? null : modules.get(0);
+    }
+
+    /**
+     * Gets the modules of the host with a given name.
+     *
+     * @param moduleName the module name
+     * @return the modules, in the order of the host's VM list
+     */
+    protected List<AppModule> getModulesByName(String moduleName) {
+        List<? extends Vm> vms = getHost().getVmList();
+        if (moduleNameToVmsMap == null || indexedVmCount != vms.size()) {
+            // modules can also be placed on the host directly, which only ever adds VMs
+            moduleNameToVmsMap = new HashMap<String, List<AppModule>>();
+            for (Vm vm : vms) {
+                AppModule module = (AppModule) vm;
+                List<AppModule> modules = moduleNameToVmsMap.get(module.getName());
+                if (modules == null) {
+                    modules = new ArrayList<AppModule>(1);
+                    moduleNameToVmsMap.put(module.getName(), modules);
+                }
+                modules.add(module);
             }
+            indexedVmCount = vms.size();
         }
-        return module;
+        List<AppModule> modules = moduleNameToVmsMap.get(moduleName);
+        return modules != null ? modules : Collections.<AppModule>emptyList();
+    }
+
+    /**
+     * Gets the VM that executes the tuples sent to a module of an application.
+     *
+     * @param appId      the application id
+     * @param moduleName the module name
+     * @return the id of the last such module in the host's VM list, or -1 if there is none
+     */
+    protected int getVmIdForModule(String appId, String moduleName) {
+        List<AppModule> modules = getModulesByName(moduleName);
+        for (int i = modules.size() - 1; i >= 0; i--) {
+            if (appId == null || appId.equals(modules.get(i).getAppId()))
+                return modules.get(i).getId();
+        }
+        return -1;
+    }
+
+    /**
+     * Clears the module index after VMs have been added to or removed from the host.
+     */
+    protected void invalidateModuleIndex() {
+        moduleNameToVmsMap = null;
     }
 
     /**
@@ -424,6 +533,8 @@ public class FogDevice extends PowerDatacenter {
         double minTime = Double.MAX_VALUE;
         double timeDiff = currentTime - getLastProcessTime();
         double timeFrameDatacenterEnergy = 0.0;
+        // the arguments of Log.formatLine are boxed even when the log is disabled
+        boolean log = !Log.isDisabled();
 
         for (PowerHost host : this.<PowerHost>getHostList()) {
             Log.printLine();
@@ -433,18 +544,22 @@ public class FogDevice extends PowerDatacenter {
                 minTime = time;
             }
 
-            Log.formatLine(
-                    "%.2f: [Host #%d] utilization is %.2f%%",
-                    currentTime,
-                    host.getId(),
-                    host.getUtilizationOfCpu() * 100);
+            if (log) {
+                Log.formatLine(
+                        "%.2f: [Host #%d] utilization is %.2f%%",
+                        currentTime,
+                        host.getId(),
+                        host.getUtilizationOfCpu() * 100);
+            }
         }
 
         if (timeDiff > 0) {
-            Log.formatLine(
-                    "\nEnergy consumption for the last time frame from %.2f to %.2f:",
-                    getLastProcessTime(),
-                    currentTime);
+            if (log) {
+                Log.formatLine(
+                        "\nEnergy consumption for the last time frame from %.2f to %.2f:",
+                        getLastProcessTime(),
+                        currentTime);
+            }
 
             for (PowerHost host : this.<PowerHost>getHostList()) {
                 double previousUtilizationOfCpu = host.getPreviousUtilizationOfCpu();
@@ -455,25 +570,29 @@ public class FogDevice extends PowerDatacenter {
                         timeDiff);
                 timeFrameDatacenterEnergy += timeFrameHostEnergy;
 
-                Log.printLine();
-                Log.formatLine(
-                        "%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%",
-                        currentTime,
-                        host.getId(),
-                        getLastProcessTime(),
-                        previousUtilizationOfCpu * 100,
-                        utilizationOfCpu * 100);
+                if (log) {
+                    Log.printLine();
+                    Log.formatLine(
+                            "%.2f: [Host #%d] utilization at %.2f was %.2f%%, now is %.2f%%",
+                            currentTime,
+                            host.getId(),
+                            getLastProcessTime(),
+                            previousUtilizationOfCpu * 100,
+                            utilizationOfCpu * 100);
+                    Log.formatLine(
+                            "%.2f: [Host #%d] energy is %.2f W*sec",
+                            currentTime,
+                            host.getId(),
+                            timeFrameHostEnergy);
+                }
+            }
+
+            if (log) {
                 Log.formatLine(
-                        "%.2f: [Host #%d] energy is %.2f W*sec",
+                        "\n%.2f: Data center's energy is %.2f W*sec\n",
                         currentTime,
-                        host.getId(),
-                        timeFrameHostEnergy);
+                        timeFrameDatacenterEnergy);
             }
-
-            Log.formatLine(
-                    "\n%.2f: Data center's energy is %.2f W*sec\n",
-                    currentTime,
-                    timeFrameDatacenterEnergy);
         }
 
         setPower(getPower() + timeFrameDatacenterEnergy);
@@ -513,11 +632,19 @@ public class FogDevice extends PowerDatacenter {
                         Tuple tuple = (Tuple) cl;
                         TimeKeeper.getInstance().tupleEndedExecution(tuple);
                         Application application = getApplicationMap().get(tuple.getAppId());
-                        Logger.debug(getName(), "Completed execution of tuple " + tuple.getCloudletId() + "on " + tuple.getDestModuleName());
+                        Logger.debug(getName(), () -> "Completed execution of tuple " + tuple.getCloudletId() + "on " + tuple.getDestModuleName());
+                        Logger.trace(EventTrace.TUPLE_COMPLETED, getId(), tuple.getCloudletId(), vm.getId());
                         List<Tuple> resultantTuples = application.getResultantTuples(tuple.getDestModuleName(), tuple, getId(), vm.getId());
+                        Tuple firstResTuple = null;
                         for (Tuple resTuple : resultantTuples) {
-                            resTuple.setModuleCopyMap(new HashMap<String, Integer>(tuple.getModuleCopyMap()));
-                            resTuple.getModuleCopyMap().put(((AppModule) vm).getName(), vm.getId());
+                            // The resultant tuples all went through the same module copies, so they share one map
+                            if (firstResTuple == null) {
+                                resTuple.shareModuleCopyMap(tuple);
+                                resTuple.addModuleCopy(((AppModule) vm).getName(), vm.getId());
+                                firstResTuple = resTuple;
+                            } else {
+                                resTuple.shareModuleCopyMap(firstResTuple);
+                            }
                             updateTimingsOnSending(resTuple);
                             sendToSelf(resTuple);
                         }
@@ -537,12 +664,7 @@ public class FogDevice extends PowerDatacenter {
         String destModule = resTuple.getDestModuleName();
         for (AppLoop loop : getApplicationMap().get(resTuple.getAppId()).getLoops()) {
             if (loop.hasEdge(srcModule, destModule) && loop.isStartModule(srcModule)) {
-                int tupleId = TimeKeeper.getInstance().getUniqueId();
-                resTuple.setActualTupleId(tupleId);
-                if (!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-                    TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-                TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-                TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
+                resTuple.setActualTupleId(TimeKeeper.getInstance().tupleEmitted(loop.getLoopId()));
 
                 //Logger.debug(getName(), "\tSENDING\t"+tuple.getActualTupleId()+"\tSrc:"+srcModule+"\tDest:"+destModule);
 
@@ -551,13 +673,45 @@ public class FogDevice extends PowerDatacenter {
     }
 
     protected int getChildIdWithRouteTo(int targetDeviceId) {
-        for (Integer childId : getChildrenIds()) {
-            if (targetDeviceId == childId)
-                return childId;
-            if (((FogDevice) CloudSim.getEntity(childId)).getChildIdWithRouteTo(targetDeviceId) != -1)
-                return childId;
+        Integer childId = getDescendantToChildMap().get(targetDeviceId);
+        return childId != null ? childId : -1;
+    }
+
+    /**
+     * Gets the next hop for every descendant of this device, rebuilding it from the maps of the
+     * children if the topology below this device has changed.
+     */
+    protected Map<Integer, Integer> getDescendantToChildMap() {
+        if (descendantToChildMap == null) {
+            Map<Integer, Integer> routes = new HashMap<Integer, Integer>();
+            for (Integer childId : getChildrenIds()) {
+                if (!routes.containsKey(childId))
+                    routes.put(childId, childId);
+                SimEntity child = CloudSim.getEntity(childId);
+                if (child instanceof FogDevice) {
+                    for (Integer descendantId : ((FogDevice) child).getDescendantToChildMap().keySet()) {
+                        if (!routes.containsKey(descendantId))
+                            routes.put(descendantId, childId);
+                    }
+                }
+            }
+            descendantToChildMap = routes;
+        }
+        return descendantToChildMap;
+    }
+
+    /**
+     * Clears the routes of this device and of all its ancestors after a change of the topology
+     * below this device. Called by addChild, removeChild and setParentId.
+     */
+    protected void invalidateRoutes() {
+        FogDevice device = this;
+        while (device != null) {
+            device.descendantToChildMap = null;
+            int ancestorId = device.getParentId();
+            SimEntity ancestor = ancestorId >= 0 && ancestorId != device.getId() ? CloudSim.getEntity(ancestorId) : null;
+            device = ancestor instanceof FogDevice ? (FogDevice) ancestor : null;
         }
-        return -1;
     }
 
     protected int getChildIdForTuple(Tuple tuple) {
@@ -568,61 +722,145 @@ public class FogDevice extends PowerDatacenter {
         return -1;
     }
 
+    /**
+     * Allocates the whole host to the modules that have tuples to execute (or are about to receive
+     * one) and nothing to the others. The VM scheduler is only reset when the busy modules have
+     * changed since the last allocation, or when something else has changed the allocation.
+     *
+     * @param incomingOperator the module about to receive a tuple, or null
+     */
     protected void updateAllocatedMips(String incomingOperator) {
-        getHost().getVmScheduler().deallocatePesForAllVms();
-        for (final Vm vm : getHost().getVmList()) {
-            if (vm.getCloudletScheduler().runningCloudlets() > 0 || ((AppModule) vm).getName().equals(incomingOperator)) {
-                getHost().getVmScheduler().allocatePesForVm(vm, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
-            } else {
-                getHost().getVmScheduler().allocatePesForVm(vm, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add(0.0);
-                    }
-                });
+        List<Vm> vms = getHost().getVmList();
+        if (!isAllocationInPlace(ALL_MODULES_ALLOCATION, vms, incomingOperator)) {
+            VmScheduler scheduler = getHost().getVmScheduler();
+            scheduler.deallocatePesForAllVms();
+            for (Vm vm : vms) {
+                scheduler.allocatePesForVm(vm, isBusy(vm, incomingOperator) ? getBusyMipsShare() : getIdleMipsShare());
             }
+            recordAllocation(ALL_MODULES_ALLOCATION, vms, incomingOperator);
         }
 
         updateEnergyConsumption();
 
     }
 
+    /**
+     * Allocates the whole host to its first module again, as done on every tuple arrival. Nothing
+     * is done if this is already the allocation in place.
+     */
+    protected void updateAllocatedMipsOnArrival() {
+        List<Vm> vms = getHost().getVmList();
+        if (vms.size() > 0 && CloudSim.clock() > 0 && !isAllocationInPlace(FIRST_MODULE_ALLOCATION, vms, null)) {
+            Vm operator = vms.get(0);
+            getHost().getVmScheduler().deallocatePesForVm(operator);
+            getHost().getVmScheduler().allocatePesForVm(operator, getBusyMipsShare());
+            recordAllocation(FIRST_MODULE_ALLOCATION, vms, null);
+        }
+    }
+
+    private boolean isBusy(Vm vm, String incomingOperator) {
+        return vm.getCloudletScheduler().runningCloudlets() > 0 || ((AppModule) vm).getName().equals(incomingOperator);
+    }
+
+    private boolean isAllocationInPlace(int kind, List<Vm> vms, String incomingOperator) {
+        if (allocationKind != kind || allocatedVms.length != vms.size())
+            return false;
+        VmScheduler scheduler = getHost().getVmScheduler();
+        for (int i = 0; i < allocatedVms.length; i++) {
+            Vm vm = vms.get(i);
+            if (vm != allocatedVms[i] || vm.isInMigration() || scheduler.getAllocatedMipsForVm(vm) != allocatedMipsShares[i])
+                return false;
+            if (kind == ALL_MODULES_ALLOCATION && isBusy(vm, incomingOperator) != allocatedVmBusy[i])
+                return false;
+        }
+        return true;
+    }
+
+    private void recordAllocation(int kind, List<Vm> vms, String incomingOperator) {
+        int size = vms.size();
+        if (allocatedVms.length != size) {
+            allocatedVms = new Vm[size];
+            allocatedVmBusy = new boolean[size];
+            allocatedMipsShares = new Object[size];
+        }
+        VmScheduler scheduler = getHost().getVmScheduler();
+        for (int i = 0; i < size; i++) {
+            Vm vm = vms.get(i);
+            allocatedVms[i] = vm;
+            allocatedVmBusy[i] = kind == ALL_MODULES_ALLOCATION && isBusy(vm, incomingOperator);
+            allocatedMipsShares[i] = scheduler.getAllocatedMipsForVm(vm);
+        }
+        allocationKind = kind;
+    }
+
+    private List<Double> getBusyMipsShare() {
+        if (busyMipsShare == null)
+            busyMipsShare = Collections.singletonList((double) getHost().getTotalMips());
+        return busyMipsShare;
+    }
+
+    private List<Double> getIdleMipsShare() {
+        if (idleMipsShare == null)
+            idleMipsShare = Collections.singletonList(0.0);
+        return idleMipsShare;
+    }
+
     private void updateEnergyConsumption() {
-        double totalMipsAllocated = 0;
+        double timeNow = CloudSim.clock();
         for (final Vm vm : getHost().getVmList()) {
             AppModule operator = (AppModule) vm;
-            operator.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(operator).getVmScheduler()
-                    .getAllocatedMipsForVm(operator));
-            totalMipsAllocated += getHost().getTotalAllocatedMipsForVm(vm);
+            List<Double> mipsShare = getVmAllocationPolicy().getHost(operator).getVmScheduler()
+                    .getAllocatedMipsForVm(operator);
+            // most calls follow an update of the datacenter at the same time, which leaves nothing to do
+            if (mipsShare != null && !operator.getCloudletScheduler().isProcessingUpToDate(timeNow, mipsShare))
+                operator.updateVmProcessing(timeNow, mipsShare);
         }
+        updateUtilization();
+    }
 
+    /**
+     * Takes the utilization of the host from the MIPS allocated to its VMs, settling the energy
+     * and cost at the previous utilization.
+     */
+    private void updateUtilization() {
         double timeNow = CloudSim.clock();
-        double currentEnergyConsumption = getEnergyConsumption();
-        double newEnergyConsumption = currentEnergyConsumption + (timeNow - lastUtilizationUpdateTime) * getHost().getPowerModel().getPower(lastUtilization);
+        double totalMipsAllocated = 0;
+        for (final Vm vm : getHost().getVmList())
+            totalMipsAllocated += getHost().getTotalAllocatedMipsForVm(vm);
+        double utilization = Math.min(1, totalMipsAllocated / getHost().getTotalMips());
+
+        settleEnergyConsumption(timeNow);
+        lastUtilization = utilization;
+    }
+
+    /**
+     * Adds the energy and cost of the device since the last update, at the utilization of that
+     * update.
+     *
+     * @param timeNow the current time
+     */
+    private void settleEnergyConsumption(double timeNow) {
+        double currentEnergyConsumption = energyConsumption;
+        double newEnergyConsumption = currentEnergyConsumption + (timeNow - lastUtilizationUpdateTime) * getPower(lastUtilization);
         setEnergyConsumption(newEnergyConsumption);
-	
-		/*if(getName().equals("d-0")){
-			System.out.println("------------------------");
-			System.out.println("Utilization = "+lastUtilization);
-			System.out.println("Power = "+getHost().getPowerModel().getPower(lastUtilization));
-			System.out.println(timeNow-lastUtilizationUpdateTime);
-		}*/
 
-        double currentCost = getTotalCost();
+        double currentCost = totalCost;
         double newcost = currentCost + (timeNow - lastUtilizationUpdateTime) * getRatePerMips() * lastUtilization * getHost().getTotalMips();
         setTotalCost(newcost);
 
-        lastUtilization = Math.min(1, totalMipsAllocated / getHost().getTotalMips());
         lastUtilizationUpdateTime = timeNow;
     }
 
+    private double getPower(double utilization) {
+        PowerModel model = getHost().getPowerModel();
+        if (utilization != powerUtilization || model != powerModel) {
+            power = model.getPower(utilization);
+            powerUtilization = utilization;
+            powerModel = model;
+        }
+        return power;
+    }
+
     protected void processAppSubmit(SimEvent ev) {
         Application app = (Application) ev.getData();
         applicationMap.put(app.getAppId(), app);
@@ -631,8 +869,10 @@ public class FogDevice extends PowerDatacenter {
     public void addChild(int childId) {
         if (CloudSim.getEntityName(childId).toLowerCase().contains("sensor"))
             return;
-        if (!getChildrenIds().contains(childId) && childId != getId())
+        if (!getChildrenIds().contains(childId) && childId != getId()) {
             getChildrenIds().add(childId);
+            invalidateRoutes();
+        }
         if (!getChildToOperatorsMap().containsKey(childId))
             getChildToOperatorsMap().put(childId, new ArrayList<String>());
     }
@@ -657,20 +897,37 @@ public class FogDevice extends PowerDatacenter {
 		int childId = getChildIdForTuple(tuple);
 		if(childId != -1)
 			sendDown(tuple, childId);*/
-        for (Pair<Integer, Double> actuatorAssociation : getAssociatedActuatorIds()) {
-            int actuatorId = actuatorAssociation.getFirst();
-            double delay = actuatorAssociation.getSecond();
-            String actuatorType = ((Actuator) CloudSim.getEntity(actuatorId)).getActuatorType();
-            if (tuple.getDestModuleName().equals(actuatorType)) {
-                send(actuatorId, delay, FogEvents.TUPLE_ARRIVAL, tuple);
-                return;
-            }
+        Pair<Integer, Double> actuatorAssociation = getActuatorAssociation(tuple.getDestModuleName());
+        if (actuatorAssociation != null) {
+            send(actuatorAssociation.getFirst(), actuatorAssociation.getSecond(), FogEvents.TUPLE_ARRIVAL, tuple);
+            return;
         }
         for (int childId : getChildrenIds()) {
             sendDown(tuple, childId);
         }
     }
 
+    /**
+     * Gets the first associated actuator of a given type.
+     *
+     * @param actuatorType the actuator type
+     * @return the actuator ID and delay, or null if no associated actuator has this type
+     */
+    protected Pair<Integer, Double> getActuatorAssociation(String actuatorType) {
+        List<Pair<Integer, Double>> associations = getAssociatedActuatorIds();
+        if (indexedActuatorCount != associations.size()) {
+            // associations are only ever appended, so a new size means new actuators
+            actuatorTypeToAssociationMap = new HashMap<String, Pair<Integer, Double>>();
+            for (Pair<Integer, Double> association : associations) {
+                String type = ((Actuator) CloudSim.getEntity(association.getFirst())).getActuatorType();
+                if (!actuatorTypeToAssociationMap.containsKey(type))
+                    actuatorTypeToAssociationMap.put(type, association);
+            }
+            indexedActuatorCount = associations.size();
+        }
+        return actuatorTypeToAssociationMap.get(actuatorType);
+    }
+
     int numClients = 0;
 
     protected void processTupleArrival(SimEvent ev) {
@@ -683,16 +940,17 @@ public class FogDevice extends PowerDatacenter {
 		/*if(getName().equals("d-0") && tuple.getTupleType().equals("_SENSOR")){
 			System.out.println(++numClients);
 		}*/
-        Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
+        Logger.debug(getName(), () -> "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
                 CloudSim.getEntityName(ev.getSource()) + "|Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        Logger.trace(EventTrace.TUPLE_ARRIVAL, getId(), tuple.getCloudletId(), ev.getSource());
 		
 		/*if(CloudSim.getEntityName(ev.getSource()).equals("drone_0")||CloudSim.getEntityName(ev.getDestination()).equals("drone_0"))
 			System.out.println(CloudSim.clock()+" "+getName()+" Received tuple "+tuple.getCloudletId()+" with tupleType = "+tuple.getTupleType()+"\t| Source : "+
 		CloudSim.getEntityName(ev.getSource())+"|Dest : "+CloudSim.getEntityName(ev.getDestination()));*/
 
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        sendTupleAck(ev.getSource());
 
-        if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
+        if (FogUtils.getAppIdToGeoCoverageMap().containsKey(tuple.getAppId())) {
         }
 
         if (tuple.getDirection() == Tuple.ACTUATOR) {
@@ -700,19 +958,7 @@ public class FogDevice extends PowerDatacenter {
             return;
         }
 
-        if (getHost().getVmList().size() > 0) {
-            final AppModule operator = (AppModule) getHost().getVmList().get(0);
-            if (CloudSim.clock() > 0) {
-                getHost().getVmScheduler().deallocatePesForVm(operator);
-                getHost().getVmScheduler().allocatePesForVm(operator, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
-            }
-        }
+        updateAllocatedMipsOnArrival();
 
 
         if (getName().equals("cloud") && tuple.getDestModuleName() == null) {
@@ -721,11 +967,7 @@ public class FogDevice extends PowerDatacenter {
 
         if (appToModulesMap.containsKey(tuple.getAppId())) {
             if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-                int vmId = -1;
-                for (Vm vm : getHost().getVmList()) {
-                    if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                        vmId = vm.getId();
-                }
+                int vmId = getVmIdForModule(tuple.getAppId(), tuple.getDestModuleName());
                 if (vmId < 0
                         || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
                         tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
@@ -764,32 +1006,53 @@ public class FogDevice extends PowerDatacenter {
         List<AppLoop> loops = app.getLoops();
         for (AppLoop loop : loops) {
             if (loop.hasEdge(srcModule, destModule) && loop.isEndModule(destModule)) {
-                Double startTime = TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-                if (startTime == null)
-                    break;
-                if (!TimeKeeper.getInstance().getLoopIdToCurrentAverage().containsKey(loop.getLoopId())) {
-                    TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), 0.0);
-                    TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), 0);
-                }
-                double currentAverage = TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId());
-                int currentCount = TimeKeeper.getInstance().getLoopIdToCurrentNum().get(loop.getLoopId());
-                double delay = CloudSim.clock() - TimeKeeper.getInstance().getEmitTimes().get(tuple.getActualTupleId());
-                TimeKeeper.getInstance().getEmitTimes().remove(tuple.getActualTupleId());
-                double newAverage = (currentAverage * currentCount + delay) / (currentCount + 1);
-                TimeKeeper.getInstance().getLoopIdToCurrentAverage().put(loop.getLoopId(), newAverage);
-                TimeKeeper.getInstance().getLoopIdToCurrentNum().put(loop.getLoopId(), currentCount + 1);
+                TimeKeeper.getInstance().loopEnded(loop.getLoopId(), tuple.getActualTupleId());
                 break;
             }
         }
     }
 
     protected void processSensorJoining(SimEvent ev) {
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        sendTupleAck(ev.getSource());
+    }
+
+    /**
+     * Acknowledges a tuple to the entity that sent it, as set by {@link Config#TUPLE_ACK_POLICY}.
+     *
+     * @param entityId the id of the sender
+     */
+    protected void sendTupleAck(int entityId) {
+        switch (Config.TUPLE_ACK_POLICY) {
+            case Config.TUPLE_ACK_PER_HOP:
+                send(entityId, CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+                break;
+            case Config.TUPLE_ACK_COALESCED:
+                SimEntity entity = CloudSim.getEntity(entityId);
+                if (entity instanceof TupleAckConsumer && !((TupleAckConsumer) entity).consumesTupleAcks())
+                    break;
+                if (lastTupleAckTime == null)
+                    lastTupleAckTime = new HashMap<Integer, Double>();
+                Double lastTime = lastTupleAckTime.put(entityId, CloudSim.clock());
+                if (lastTime == null || lastTime != CloudSim.clock())
+                    send(entityId, CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Fog devices ignore the acknowledgements of the tuples they send.
+     */
+    @Override
+    public boolean consumesTupleAcks() {
+        return false;
     }
 
     protected void executeTuple(SimEvent ev, String moduleName) {
-        Logger.debug(getName(), "Executing tuple on module " + moduleName);
+        Logger.debug(getName(), () -> "Executing tuple on module " + moduleName);
         Tuple tuple = (Tuple) ev.getData();
+        Logger.trace(EventTrace.TUPLE_EXECUTION, getId(), tuple.getCloudletId(), tuple.getVmId());
 
         AppModule module = getModuleByName(moduleName);
 
@@ -824,6 +1087,7 @@ public class FogDevice extends PowerDatacenter {
         }
         appToModulesMap.get(appId).add(module.getName());
         processVmCreate(ev, false);
+        invalidateModuleIndex();
         if (module.isBeingInstantiated()) {
             module.setBeingInstantiated(false);
         }
@@ -837,6 +1101,7 @@ public class FogDevice extends PowerDatacenter {
 
     protected void processModuleTermination(SimEvent ev) {
         processVmDestroy(ev, false);
+        invalidateModuleIndex();
     }
 
     protected void initializePeriodicTuples(AppModule module) {
@@ -850,6 +1115,7 @@ public class FogDevice extends PowerDatacenter {
 
     protected void processOperatorRelease(SimEvent ev) {
         this.processVmMigrate(ev, false);
+        invalidateModuleIndex();
     }
 
 
@@ -866,13 +1132,27 @@ public class FogDevice extends PowerDatacenter {
         double networkDelay = tuple.getCloudletFileSize() / getUplinkBandwidth();
         setNorthLinkBusy(true);
         send(getId(), networkDelay, FogEvents.UPDATE_NORTH_TUPLE_QUEUE);
+        transmitUp(tuple, networkDelay);
+    }
+
+    /**
+     * Sends a tuple to the parent device over the uplink.
+     *
+     * @param tuple        the tuple
+     * @param networkDelay time from now until the tuple has been transmitted over the link
+     */
+    protected void transmitUp(Tuple tuple, double networkDelay) {
         send(parentId, networkDelay + getUplinkLatency(), FogEvents.TUPLE_ARRIVAL, tuple);
         NetworkUsageMonitor.sendingTuple(getUplinkLatency(), tuple.getCloudletFileSize());
     }
 
     protected void sendUp(Tuple tuple) {
         if (parentId > 0) {
-            if (!isNorthLinkBusy()) {
+            if (Config.ANALYTIC_LINK_MODEL) {
+                double now = CloudSim.clock();
+                northLinkFreeTime = Math.max(now, northLinkFreeTime) + tuple.getCloudletFileSize() / getUplinkBandwidth();
+                transmitUp(tuple, northLinkFreeTime - now);
+            } else if (!isNorthLinkBusy()) {
                 sendUpFreeLink(tuple);
             } else {
                 northTupleQueue.add(tuple);
@@ -895,15 +1175,33 @@ public class FogDevice extends PowerDatacenter {
         //Logger.debug(getName(), "Sending tuple with tupleType = "+tuple.getTupleType()+" DOWN");
         setSouthLinkBusy(true);
         //System.out.println(getName()+" Sending tuple with tupleType = "+tuple.getTupleType()+" to "+childId);
-        double latency = getChildToLatencyMap().get(childId);
         send(getId(), networkDelay, FogEvents.UPDATE_SOUTH_TUPLE_QUEUE);
+        transmitDown(tuple, childId, networkDelay);
+    }
+
+    /**
+     * Sends a tuple to a child device over the downlink.
+     *
+     * @param tuple        the tuple
+     * @param childId      the id of the child
+     * @param networkDelay time from now until the tuple has been transmitted over the link
+     */
+    protected void transmitDown(Tuple tuple, int childId, double networkDelay) {
+        double latency = getChildToLatencyMap().get(childId);
         send(childId, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
         NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
     }
 
     protected void sendDown(Tuple tuple, int childId) {
         if (getChildrenIds().contains(childId)) {
-            if (!isSouthLinkBusy()) {
+            if (Config.ANALYTIC_LINK_MODEL) {
+                double now = CloudSim.clock();
+                Double freeTime = childToSouthLinkFreeTime.get(childId);
+                double departureTime = freeTime != null ? Math.max(now, freeTime) : now;
+                double transmittedTime = departureTime + tuple.getCloudletFileSize() / getDownlinkBandwidth();
+                childToSouthLinkFreeTime.put(childId, transmittedTime);
+                transmitDown(tuple, childId, transmittedTime - now);
+            } else if (!isSouthLinkBusy()) {
                 sendDownFreeLink(tuple, childId);
             } else {
                 southTupleQueue.add(new Pair<Tuple, Integer>(tuple, childId));
@@ -925,7 +1223,11 @@ public class FogDevice extends PowerDatacenter {
     }
 
     public void setParentId(int parentId) {
+        if (this.parentId == parentId)
+            return;
+        invalidateRoutes(); // the previous ancestors lose this subtree
         this.parentId = parentId;
+        invalidateRoutes(); // and the new ones gain it
     }
 
     public List<Integer> getChildrenIds() {
@@ -934,6 +1236,7 @@ public class FogDevice extends PowerDatacenter {
 
     public void setChildrenIds(List<Integer> childrenIds) {
         this.childrenIds = childrenIds;
+        descendantToChildMap = null;
     }
 
     public double getUplinkBandwidth() {
@@ -1030,6 +1333,7 @@ public class FogDevice extends PowerDatacenter {
 
     public void setAssociatedActuatorIds(List<Pair<Integer, Double>> associatedActuatorIds) {
         this.associatedActuatorIds = associatedActuatorIds;
+        indexedActuatorCount = -1;
     }
 
     public double getEnergyConsumption() {
@@ -1089,8 +1393,10 @@ public class FogDevice extends PowerDatacenter {
         // TODO Auto-generated method stub
         @SuppressWarnings("deprecation")
         Integer childIDobject = new Integer(childId);
-        if (getChildrenIds().contains(childId) && childId != getId())
+        if (getChildrenIds().contains(childId) && childId != getId()) {
             getChildrenIds().remove(childIDobject);
+            invalidateRoutes();
+        }
         if (getChildToOperatorsMap().containsKey(childId)) {
             List<String> operatorName = getChildToOperatorsMap().get(childId);
             getChildToOperatorsMap().remove(childId, operatorName);
@@ -1149,7 +1455,11 @@ public class FogDevice extends PowerDatacenter {
 
     protected void sendToCluster(Tuple tuple, int clusterNodeID) {
         if (getClusterMembers().contains(clusterNodeID)) {
-            if (!isClusterLinkBusy) {
+            if (Config.ANALYTIC_LINK_MODEL) {
+                double now = CloudSim.clock();
+                clusterLinkFreeTime = Math.max(now, clusterLinkFreeTime) + tuple.getCloudletFileSize() / getClusterLinkBandwidth();
+                transmitToCluster(tuple, clusterNodeID, clusterLinkFreeTime - now);
+            } else if (!isClusterLinkBusy) {
                 sendThroughFreeClusterLink(tuple, clusterNodeID);
             } else {
                 clusterTupleQueue.add(new Pair<Tuple, Integer>(tuple, clusterNodeID));
@@ -1169,8 +1479,19 @@ public class FogDevice extends PowerDatacenter {
     private void sendThroughFreeClusterLink(Tuple tuple, Integer clusterNodeID) {
         double networkDelay = tuple.getCloudletFileSize() / getClusterLinkBandwidth();
         setClusterLinkBusy(true);
-        double latency = (getClusterMembersToLatencyMap()).get(clusterNodeID);
         send(getId(), networkDelay, FogEvents.UPDATE_CLUSTER_TUPLE_QUEUE);
+        transmitToCluster(tuple, clusterNodeID, networkDelay);
+    }
+
+    /**
+     * Sends a tuple to another member of the cluster over the cluster link.
+     *
+     * @param tuple         the tuple
+     * @param clusterNodeID the id of the cluster member
+     * @param networkDelay  time from now until the tuple has been transmitted over the link
+     */
+    protected void transmitToCluster(Tuple tuple, int clusterNodeID, double networkDelay) {
+        double latency = (getClusterMembersToLatencyMap()).get(clusterNodeID);
         send(clusterNodeID, networkDelay + latency, FogEvents.TUPLE_ARRIVAL, tuple);
         NetworkUsageMonitor.sendingTuple(latency, tuple.getCloudletFileSize());
     }
@@ -2,7 +2,6 @@ package org.fog.entities;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.Storage;
-import org.cloudbus.cloudsim.Vm;
 import org.cloudbus.cloudsim.VmAllocationPolicy;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEvent;
@@ -152,20 +151,32 @@ public class MicroserviceFogDevice extends FogDevice {
         return routingTable;
     }
 
+    /**
+     * @return the next device towards a destination, or -1 if the routing table has no route to it
+     */
+    protected int getNextHop(int destId) {
+        if (routingTable instanceof NextHopTable.Row) {
+            return ((NextHopTable.Row) routingTable).getNextHop(destId);
+        }
+        Integer nextId = routingTable.get(destId);
+        return nextId != null ? nextId : -1;
+    }
+
     protected void processTupleArrival(SimEvent ev) {
 
         Tuple tuple = (Tuple) ev.getData();
 
-        Logger.debug(getName(), "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
+        Logger.debug(getName(), () -> "Received tuple " + tuple.getCloudletId() + "with tupleType = " + tuple.getTupleType() + "\t| Source : " +
                 CloudSim.getEntityName(ev.getSource()) + "|Dest : " + CloudSim.getEntityName(ev.getDestination()));
+        Logger.trace(EventTrace.TUPLE_ARRIVAL, getId(), tuple.getCloudletId(), ev.getSource());
 
         if (deviceType.equals(MicroserviceFogDevice.CLOUD)) {
             updateCloudTraffic();
         }
 
-        send(ev.getSource(), CloudSim.getMinTimeBetweenEvents(), FogEvents.TUPLE_ACK);
+        sendTupleAck(ev.getSource());
 
-        if (FogUtils.appIdToGeoCoverageMap.containsKey(tuple.getAppId())) {
+        if (FogUtils.getAppIdToGeoCoverageMap().containsKey(tuple.getAppId())) {
         }
 
         if (tuple.getDirection() == Tuple.ACTUATOR) {
@@ -173,19 +184,7 @@ public class MicroserviceFogDevice extends FogDevice {
             return;
         }
 
-        if (getHost().getVmList().size() > 0) {
-            final AppModule operator = (AppModule) getHost().getVmList().get(0);
-            if (CloudSim.clock() > 0) {
-                getHost().getVmScheduler().deallocatePesForVm(operator);
-                getHost().getVmScheduler().allocatePesForVm(operator, new ArrayList<Double>() {
-                    protected static final long serialVersionUID = 1L;
-
-                    {
-                        add((double) getHost().getTotalMips());
-                    }
-                });
-            }
-        }
+        updateAllocatedMipsOnArrival();
 
         if (deviceType.equals(MicroserviceFogDevice.CLOUD) && tuple.getDestModuleName() == null) {
             sendNow(getControllerId(), FogEvents.TUPLE_FINISHED, null);
@@ -197,7 +196,7 @@ public class MicroserviceFogDevice extends FogDevice {
             if (tuple.getDirection() == Tuple.UP) {
                 int destination = controllerComponent.getDestinationDeviceId(tuple.getDestModuleName());
                 if (destination == -1) {
-                    System.out.println("Service DiscoveryInfo missing. Tuple routing stopped for : " + tuple.getDestModuleName());
+                    Logger.error(getName(), "Service DiscoveryInfo missing. Tuple routing stopped for : " + tuple.getDestModuleName());
                     return;
                 }
                 tuple.setDestinationDeviceId(destination);
@@ -210,11 +209,7 @@ public class MicroserviceFogDevice extends FogDevice {
         }
 
         if (tuple.getDestinationDeviceId() == getId()) {
-            int vmId = -1;
-            for (Vm vm : getHost().getVmList()) {
-                if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                    vmId = vm.getId();
-            }
+            int vmId = getVmIdForModule(tuple.getAppId(), tuple.getDestModuleName());
             if (vmId < 0
                     || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
                     tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
@@ -228,7 +223,7 @@ public class MicroserviceFogDevice extends FogDevice {
             executeTuple(ev, tuple.getDestModuleName());
         } else {
             if (tuple.getDestinationDeviceId() != -1) {
-                int nextDeviceToSend = routingTable.get(tuple.getDestinationDeviceId());
+                int nextDeviceToSend = getNextHop(tuple.getDestinationDeviceId());
                 if (nextDeviceToSend == parentId)
                     sendUp(tuple);
                 else if (childrenIds.contains(nextDeviceToSend))
@@ -243,11 +238,7 @@ public class MicroserviceFogDevice extends FogDevice {
                 if (tuple.getDirection() == Tuple.DOWN) {
                     if (appToModulesMap.containsKey(tuple.getAppId())) {
                         if (appToModulesMap.get(tuple.getAppId()).contains(tuple.getDestModuleName())) {
-                            int vmId = -1;
-                            for (Vm vm : getHost().getVmList()) {
-                                if (((AppModule) vm).getName().equals(tuple.getDestModuleName()))
-                                    vmId = vm.getId();
-                            }
+                            int vmId = getVmIdForModule(tuple.getAppId(), tuple.getDestModuleName());
                             if (vmId < 0
                                     || (tuple.getModuleCopyMap().containsKey(tuple.getDestModuleName()) &&
                                     tuple.getModuleCopyMap().get(tuple.getDestModuleName()) != vmId)) {
@@ -329,7 +320,7 @@ public class MicroserviceFogDevice extends FogDevice {
 
         PlacementLogicOutput placementLogicOutput = getControllerComponent().executeApplicationPlacementLogic(placementRequests);
         long endTime = System.nanoTime();
-        System.out.println("Placement Algorithm Completed. Time : " + (endTime - startTime) / 1e6);
+        Logger.debug(getName(), () -> "Placement Algorithm Completed. Time : " + (endTime - startTime) / 1e6);
 
         Map<Integer, Map<Application, List<ModuleLaunchConfig>>> perDevice = placementLogicOutput.getPerDevice();
         Map<Integer, List<Pair<String, Integer>>> serviceDicovery = placementLogicOutput.getServiceDiscoveryInfo();
@@ -363,7 +354,7 @@ public class MicroserviceFogDevice extends FogDevice {
             }
             placementString.append("\n");
         }
-        System.out.println(placementString.toString());
+        Logger.debug(getName(), () -> placementString.toString());
         for (int clientDevice : serviceDicovery.keySet()) {
             for (Pair serviceData : serviceDicovery.get(clientDevice)) {
                 if (MicroservicePlacementConfig.SIMULATION_MODE == "DYNAMIC") {
@@ -443,6 +434,7 @@ public class MicroserviceFogDevice extends FogDevice {
             appToModulesMap.get(appId).add(module.getName());
             processVmCreate(ev, false);
             boolean result = getVmAllocationPolicy().allocateHostForVm(module);
+            invalidateModuleIndex();
             if (result) {
                 getVmList().add(module);
                 if (module.isBeingInstantiated()) {
@@ -452,14 +444,12 @@ public class MicroserviceFogDevice extends FogDevice {
                 module.updateVmProcessing(CloudSim.clock(), getVmAllocationPolicy().getHost(module).getVmScheduler()
                         .getAllocatedMipsForVm(module));
 
-                System.out.println("Module " + module.getName() + "created on " + getName() + " under Launch module");
                 Logger.debug("Module deploy success", "Module " + module.getName() + " placement on " + getName() + " successful. vm id : " + module.getId());
             } else {
                 Logger.error("Module deploy error", "Module " + module.getName() + " placement on " + getName() + " failed");
-                System.out.println("Module " + module.getName() + " placement on " + getName() + " failed");
             }
         } else {
-            System.out.println("Module " + module.getName() + " already deplyed on" + getName());
+            Logger.debug(getName(), "Module " + module.getName() + " already deployed");
         }
     }
 
@@ -468,7 +458,7 @@ public class MicroserviceFogDevice extends FogDevice {
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
         Application app = (Application) object.get("application");
-        System.out.println(CloudSim.clock() + getName() + " is receiving " + appModule.getName());
+        Logger.debug(getName(), "Receiving module " + appModule.getName());
 
         sendNow(getId(), FogEvents.APP_SUBMIT, app);
         sendNow(getId(), FogEvents.LAUNCH_MODULE, appModule);
@@ -484,7 +474,7 @@ public class MicroserviceFogDevice extends FogDevice {
     protected void moduleSend(SimEvent ev) {
         JSONObject object = (JSONObject) ev.getData();
         AppModule appModule = (AppModule) object.get("module");
-        System.out.println(getName() + " is sending " + appModule.getName());
+        Logger.debug(getName(), "Sending module " + appModule.getName());
         NetworkUsageMonitor.sendingModule((double) object.get("delay"), appModule.getSize());
         MigrationDelayMonitor.setMigrationDelay((double) object.get("delay"));
 
@@ -555,7 +545,7 @@ public class MicroserviceFogDevice extends FogDevice {
                 sendNow(getId(), FogEvents.UPDATE_RESOURCE_INFO, tuple.getResourceData());
             }
         } else if (tuple.getDestinationDeviceId() != -1) {
-            int nextDeviceToSend = routingTable.get(tuple.getDestinationDeviceId());
+            int nextDeviceToSend = getNextHop(tuple.getDestinationDeviceId());
             if (nextDeviceToSend == parentId)
                 sendUp(tuple);
             else if (childrenIds.contains(nextDeviceToSend))
@@ -627,31 +617,25 @@ public class MicroserviceFogDevice extends FogDevice {
         }
     }
 
-    protected void sendDownFreeLink(Tuple tuple, int childId) {
+    protected void transmitDown(Tuple tuple, int childId, double networkDelay) {
         if (tuple instanceof ManagementTuple) {
-            double networkDelay = tuple.getCloudletFileSize() / getDownlinkBandwidth();
-            setSouthLinkBusy(true);
             double latency = getChildToLatencyMap().get(childId);
-            send(getId(), networkDelay, FogEvents.UPDATE_SOUTH_TUPLE_QUEUE);
             send(childId, networkDelay + latency + ((ManagementTuple) tuple).processingDelay, FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
             //todo
 //            if (Config.ENABLE_NETWORK_USAGE_AT_PLACEMENT)
 //                NetworkUsageMonitor.sendingManagementTuple(latency, tuple.getCloudletFileSize());
         } else
-            super.sendDownFreeLink(tuple, childId);
+            super.transmitDown(tuple, childId, networkDelay);
     }
 
-    protected void sendUpFreeLink(Tuple tuple) {
+    protected void transmitUp(Tuple tuple, double networkDelay) {
         if (tuple instanceof ManagementTuple) {
-            double networkDelay = tuple.getCloudletFileSize() / getUplinkBandwidth();
-            setNorthLinkBusy(true);
-            send(getId(), networkDelay, FogEvents.UPDATE_NORTH_TUPLE_QUEUE);
             send(parentId, networkDelay + getUplinkLatency() + ((ManagementTuple) tuple).processingDelay, FogEvents.MANAGEMENT_TUPLE_ARRIVAL, tuple);
             //todo
 //            if (Config.ENABLE_NETWORK_USAGE_AT_PLACEMENT)
 //                NetworkUsageMonitor.sendingManagementTuple(getUplinkLatency(), tuple.getCloudletFileSize());
         } else {
-            super.sendUpFreeLink(tuple);
+            super.transmitUp(tuple, networkDelay);
         }
 
     }
@@ -661,6 +645,10 @@ public class MicroserviceFogDevice extends FogDevice {
     }
 
     private void updateCLusterConsInRoutingTable() {
+        if (Config.SHORTEST_PATH_CLUSTER_ROUTING && routingTable instanceof NextHopTable.Row) {
+            ShortestPathRoutingGenerator.updateDevice(((NextHopTable.Row) routingTable).getTable(), getId());
+            return;
+        }
         for(int deviceId:clusterMembers){
             routingTable.put(deviceId,deviceId);
         }
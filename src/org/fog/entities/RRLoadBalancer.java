@@ -3,6 +3,8 @@ package org.fog.entities;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.fog.utils.Logger;
+
 /**
  * Created by Samodha Pallewatta
  * Round Robin LoadBalancer
@@ -23,11 +25,11 @@ public class RRLoadBalancer implements LoadBalancer {
             if(serviceDiscoveryInfo.getServiceDiscoveryInfo().containsKey(microservice)) {
                 loadBalancerPosition.put(microservice, 0);
                 if (serviceDiscoveryInfo.getServiceDiscoveryInfo().get(microservice) == null)
-                    System.out.println("null");
+                    Logger.error("RRLoadBalancer", "No device for microservice " + microservice);
                 int deviceId = serviceDiscoveryInfo.getServiceDiscoveryInfo().get(microservice).get(0);
                 return deviceId;
             }
-            System.out.println("Service Discovery Information Missing");
+            Logger.error("RRLoadBalancer", "Service Discovery Information Missing");
             return -1;
         }
     }
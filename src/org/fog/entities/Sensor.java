@@ -1,8 +1,5 @@
 package org.fog.entities;
 
-import java.util.ArrayList;
-
-import org.cloudbus.cloudsim.UtilizationModelFull;
 import org.cloudbus.cloudsim.core.CloudSim;
 import org.cloudbus.cloudsim.core.SimEntity;
 import org.cloudbus.cloudsim.core.SimEvent;
@@ -12,7 +9,7 @@ import org.fog.application.Application;
 import org.fog.utils.*;
 import org.fog.utils.distribution.Distribution;
 
-public class Sensor extends SimEntity{
+public class Sensor extends SimEntity implements TupleAckConsumer{
 	
 	private int gatewayDeviceId;
 	private GeoLocation geoLocation;
@@ -28,6 +25,13 @@ public class Sensor extends SimEntity{
 	private double latency;
 
 	private int transmissionStartDelay = Config.TRANSMISSION_START_DELAY;
+
+	/** Length of the windows of emissions scheduled by one event, or 0 for one event per emission. */
+	private double emissionWindow = Config.SENSOR_EMISSION_WINDOW;
+	/** The emitter that schedules the emissions of this sensor, or null. */
+	private SensorEmitter emitter;
+	/** Time of the next emission, when the emissions are scheduled by window. */
+	private double nextEmissionTime;
 	
 	public Sensor(String name, int userId, String appId, int gatewayDeviceId, double latency, GeoLocation geoLocation, 
 			Distribution transmitDistribution, int cpuLength, int nwLength, String tupleType, String destModuleName) {
@@ -76,52 +80,86 @@ public class Sensor extends SimEntity{
 		setUserId(userId);
 	}
 	
+	/**
+	 * Sensors ignore the acknowledgements of the tuples they send.
+	 */
+	@Override
+	public boolean consumesTupleAcks() {
+		return false;
+	}
+	
 	public void transmit(){
-		AppEdge _edge = null;
-		for(AppEdge edge : getApp().getEdges()){
-			if(edge.getSource().equals(getTupleType()))
-				_edge = edge;
-		}
+		transmit(CloudSim.clock());
+	}
+	
+	/**
+	 * Sends a tuple emitted at a given time, which may be later than now: it reaches the gateway
+	 * at that time plus the latency of the sensor.
+	 * 
+	 * @param emitTime the time of the emission
+	 */
+	protected void transmit(double emitTime){
+		AppEdge _edge = getApp().getEdgeFromSource(getTupleType());
 		long cpuLength = (long) _edge.getTupleCpuLength();
 		long nwLength = (long) _edge.getTupleNwLength();
 		
 		Tuple tuple = new Tuple(getAppId(), FogUtils.generateTupleId(), Tuple.UP, cpuLength, 1, nwLength, outputSize, 
-				new UtilizationModelFull(), new UtilizationModelFull(), new UtilizationModelFull());
+				Tuple.FULL_UTILIZATION, Tuple.FULL_UTILIZATION, Tuple.FULL_UTILIZATION);
 		tuple.setUserId(getUserId());
 		tuple.setTupleType(getTupleType());
 		
 		tuple.setDestModuleName(_edge.getDestination());
 		tuple.setSrcModuleName(getSensorName());
-		Logger.debug(getName(), "Sending tuple with tupleId = "+tuple.getCloudletId());
+		Logger.debug(getName(), () -> "Sending tuple with tupleId = "+tuple.getCloudletId());
+		Logger.trace(EventTrace.TUPLE_EMITTED, getId(), tuple.getCloudletId(), getGatewayDeviceId());
 
 		tuple.setDestinationDeviceId(getGatewayDeviceId());
 
-		int actualTupleId = updateTimings(getSensorName(), tuple.getDestModuleName());
+		int actualTupleId = updateTimings(getSensorName(), tuple.getDestModuleName(), emitTime);
 		tuple.setActualTupleId(actualTupleId);
 		
-		send(gatewayDeviceId, getLatency(), FogEvents.TUPLE_ARRIVAL,tuple);
+		if(emitTime > CloudSim.clock())
+			// sent ahead, so it must not overtake the events sent to the gateway until its emission
+			sendLast(gatewayDeviceId, emitTime - CloudSim.clock() + getLatency(), FogEvents.TUPLE_ARRIVAL, tuple);
+		else
+			send(gatewayDeviceId, getLatency(), FogEvents.TUPLE_ARRIVAL,tuple);
 	}
 	
 	protected int updateTimings(String src, String dest){
+		return updateTimings(src, dest, CloudSim.clock());
+	}
+	
+	protected int updateTimings(String src, String dest, double emitTime){
 		Application application = getApp();
 		for(AppLoop loop : application.getLoops()){
 			if(loop.hasEdge(src, dest)){
 				
-				int tupleId = TimeKeeper.getInstance().getUniqueId();
-				if(!TimeKeeper.getInstance().getLoopIdToTupleIds().containsKey(loop.getLoopId()))
-					TimeKeeper.getInstance().getLoopIdToTupleIds().put(loop.getLoopId(), new ArrayList<Integer>());
-				TimeKeeper.getInstance().getLoopIdToTupleIds().get(loop.getLoopId()).add(tupleId);
-				TimeKeeper.getInstance().getEmitTimes().put(tupleId, CloudSim.clock());
-				return tupleId;
+				return TimeKeeper.getInstance().tupleEmitted(loop.getLoopId(), emitTime);
 			}
 		}
 		return -1;
 	}
 	
+	/**
+	 * Sends the tuples emitted before a given time, each with the delay that makes it reach the
+	 * gateway at its emission time plus the latency of the sensor.
+	 * 
+	 * @param end the end of the window, excluded
+	 */
+	void emitUntil(double end){
+		while(nextEmissionTime < end){
+			transmit(nextEmissionTime);
+			nextEmissionTime += getTransmitDistribution().getNextValue();
+		}
+	}
+	
 	@Override
 	public void startEntity() {
 		send(gatewayDeviceId, CloudSim.getMinTimeBetweenEvents(), FogEvents.SENSOR_JOINED, geoLocation);
-		send(getId(), getTransmitDistribution().getNextValue() + transmissionStartDelay, FogEvents.EMIT_TUPLE);
+		double firstEmissionDelay = getTransmitDistribution().getNextValue() + transmissionStartDelay;
+		nextEmissionTime = CloudSim.clock() + firstEmissionDelay;
+		if(emitter == null)
+			send(getId(), firstEmissionDelay, FogEvents.EMIT_TUPLE);
 	}
 
 	@Override
@@ -131,8 +169,13 @@ public class Sensor extends SimEntity{
 			//transmit(transmitDistribution.getNextValue());
 			break;
 		case FogEvents.EMIT_TUPLE:
-			transmit();
-			send(getId(), getTransmitDistribution().getNextValue(), FogEvents.EMIT_TUPLE);
+			if(emissionWindow > 0){
+				emitUntil(CloudSim.clock() + emissionWindow);
+				send(getId(), nextEmissionTime - CloudSim.clock(), FogEvents.EMIT_TUPLE);
+			}else{
+				transmit();
+				send(getId(), getTransmitDistribution().getNextValue(), FogEvents.EMIT_TUPLE);
+			}
 			break;
 		}
 			
@@ -241,4 +284,42 @@ public class Sensor extends SimEntity{
 		return transmissionStartDelay;
 	}
 
+	public double getEmissionWindow() {
+		return emissionWindow;
+	}
+
+	/**
+	 * Sets the length of the windows of simulation time whose emissions are scheduled by a single
+	 * event. The tuples of a window are all built and sent when the window starts, so a change of
+	 * gateway takes effect from the next window.
+	 * <p>
+	 * The tuples still reach the gateway at the same times, but ties at those times are broken
+	 * differently, so the results may differ from those with one event per emission. A tuple sent
+	 * ahead comes after all the other events of its arrival time, including those sent after its
+	 * emission, which it would have preceded. Tuples of different sensors arriving at the same time
+	 * come in the order they were built, by window and sensor, and not in the order of their
+	 * emissions.
+	 * 
+	 * @param emissionWindow the length of the windows, or 0 for one event per emission
+	 */
+	public void setEmissionWindow(double emissionWindow) {
+		this.emissionWindow = emissionWindow;
+	}
+
+	public SensorEmitter getEmitter() {
+		return emitter;
+	}
+
+	/**
+	 * Sets the emitter that schedules the emissions of this sensor, instead of the sensor itself.
+	 * It has to be set before the simulation starts.
+	 */
+	void setEmitter(SensorEmitter emitter) {
+		this.emitter = emitter;
+	}
+
+	double getNextEmissionTime() {
+		return nextEmissionTime;
+	}
+
 }
@@ -0,0 +1,103 @@
+package org.fog.entities;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimEntity;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.fog.utils.FogEvents;
+
+/**
+ * Schedules the emissions of a group of sensors, typically those of one gateway, with one event per
+ * window of simulation time instead of one event per sensor and emission. At each window, every
+ * sensor of the group sends the tuples it emits during the window, each timed to reach the gateway
+ * at its own emission time plus the latency of the sensor. Events of the same time are ordered
+ * differently than with one event per emission; see {@link Sensor#setEmissionWindow(double)}.
+ * <p>
+ * The sensors keep their own transmit distributions, which may be shared. They are still entities
+ * of the simulation, but no longer schedule events of their own apart from joining their gateway.
+ */
+public class SensorEmitter extends SimEntity {
+
+	private final double window;
+	private final List<Sensor> sensors = new ArrayList<Sensor>();
+
+	/**
+	 * @param name the name of the entity
+	 * @param window the length of the windows of emissions
+	 */
+	public SensorEmitter(String name, double window) {
+		super(name);
+		if(!(window > 0))
+			throw new IllegalArgumentException("The emission window must be positive");
+		this.window = window;
+	}
+
+	/**
+	 * Creates one emitter for the sensors of each gateway.
+	 *
+	 * @param sensors the sensors, with their gateway set
+	 * @param window the length of the windows of emissions
+	 * @return the emitters, one per gateway
+	 */
+	public static List<SensorEmitter> groupByGateway(List<Sensor> sensors, double window) {
+		Map<Integer, SensorEmitter> emitters = new LinkedHashMap<Integer, SensorEmitter>();
+		for(Sensor sensor : sensors){
+			SensorEmitter emitter = emitters.get(sensor.getGatewayDeviceId());
+			if(emitter == null){
+				emitter = new SensorEmitter("emitter-"+CloudSim.getEntityName(sensor.getGatewayDeviceId()), window);
+				emitters.put(sensor.getGatewayDeviceId(), emitter);
+			}
+			emitter.addSensor(sensor);
+		}
+		return new ArrayList<SensorEmitter>(emitters.values());
+	}
+
+	/**
+	 * Adds a sensor to the group. It has to be done before the simulation starts.
+	 *
+	 * @param sensor the sensor
+	 */
+	public void addSensor(Sensor sensor) {
+		if(sensor.getEmitter() != null)
+			throw new IllegalArgumentException(sensor.getName()+" already has an emitter");
+		sensor.setEmitter(this);
+		sensors.add(sensor);
+	}
+
+	public List<Sensor> getSensors() {
+		return sensors;
+	}
+
+	public double getWindow() {
+		return window;
+	}
+
+	@Override
+	public void startEntity() {
+		// the sensors draw their first emission time when they start, which may be after this entity
+		send(getId(), 0, FogEvents.EMIT_TUPLE);
+	}
+
+	@Override
+	public void processEvent(SimEvent ev) {
+		if(ev.getTag() != FogEvents.EMIT_TUPLE)
+			return;
+		double end = CloudSim.clock() + window;
+		double next = Double.MAX_VALUE;
+		for(Sensor sensor : sensors){
+			sensor.emitUntil(end);
+			next = Math.min(next, sensor.getNextEmissionTime());
+		}
+		if(next < Double.MAX_VALUE)
+			send(getId(), next - CloudSim.clock(), FogEvents.EMIT_TUPLE);
+	}
+
+	@Override
+	public void shutdownEntity() {
+	}
+
+}
@@ -1,10 +1,12 @@
 package org.fog.entities;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.cloudbus.cloudsim.Cloudlet;
 import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
 
 public class Tuple extends Cloudlet{
 
@@ -12,6 +14,12 @@ public class Tuple extends Cloudlet{
 	public static final int DOWN = 2;
 	public static final int ACTUATOR = 3;
 	
+	/**
+	 * Utilization model shared by all the tuples that use their full share of CPU, RAM and
+	 * bandwidth. It has no state, so one instance is enough for the whole simulation.
+	 */
+	public static final UtilizationModel FULL_UTILIZATION = new UtilizationModelFull();
+	
 	private String appId;
 	
 	private String tupleType;
@@ -28,6 +36,11 @@ public class Tuple extends Cloudlet{
 	 * Map from moduleName to vmId of a module instance
 	 */
 	private Map<String, Integer> moduleCopyMap;
+	/**
+	 * Whether moduleCopyMap may be shared with other tuples, in which case it is copied before
+	 * being changed
+	 */
+	private boolean moduleCopyMapShared;
 
 	/**
 	 * For device id based routing used
@@ -35,7 +48,7 @@ public class Tuple extends Cloudlet{
 	protected int destinationDeviceId;
 	/* keep track of traversed microservices by tuples of type UP in microservices architecture UP -> tuple travelling towards service
 	 DOWN -> tuple travelling from service to client microservice.*/
-	protected Map<String, Integer> traversedMicroservices = new HashMap<>();
+	protected Map<String, Integer> traversedMicroservices;
 	
 	public Tuple(String appId, int cloudletId, int direction, long cloudletLength, int pesNumber,
 			long cloudletFileSize, long cloudletOutputSize,
@@ -48,7 +61,8 @@ public class Tuple extends Cloudlet{
 		setAppId(appId);
 		setDirection(direction);
 		setSourceDeviceId(-1);
-		setModuleCopyMap(new HashMap<String, Integer>());
+		moduleCopyMap = Collections.emptyMap();
+		moduleCopyMapShared = true;
 		setDestinationDeviceId(-1);
 	}
 
@@ -116,12 +130,39 @@ public class Tuple extends Cloudlet{
 		this.sourceDeviceId = sourceDeviceId;
 	}
 
+	/**
+	 * Gets the map of module name to the id of the module instance that the tuple went through.
+	 * The map may be shared with other tuples and must not be changed; use
+	 * {@link #addModuleCopy(String, int)} or {@link #setModuleCopyMap(Map)} instead.
+	 */
 	public Map<String, Integer> getModuleCopyMap() {
 		return moduleCopyMap;
 	}
 
 	public void setModuleCopyMap(Map<String, Integer> moduleCopyMap) {
 		this.moduleCopyMap = moduleCopyMap;
+		moduleCopyMapShared = false;
+	}
+
+	/**
+	 * Records that the tuple went through an instance of a module.
+	 */
+	public void addModuleCopy(String moduleName, int vmId) {
+		if (moduleCopyMapShared) {
+			moduleCopyMap = new HashMap<String, Integer>(moduleCopyMap);
+			moduleCopyMapShared = false;
+		}
+		moduleCopyMap.put(moduleName, vmId);
+	}
+
+	/**
+	 * Makes this tuple use the same module copy map as another one, without copying it. The map
+	 * is copied by whichever tuple changes it first.
+	 */
+	public void shareModuleCopyMap(Tuple tuple) {
+		moduleCopyMap = tuple.moduleCopyMap;
+		moduleCopyMapShared = true;
+		tuple.moduleCopyMapShared = true;
 	}
 
 	public int getSourceModuleId() {
@@ -141,18 +182,24 @@ public class Tuple extends Cloudlet{
 	}
 
 	public void addToTraversedMicroservices(Integer deviceID, String microserviceName) {
-		traversedMicroservices.put(microserviceName, deviceID);
+		getTraversed().put(microserviceName, deviceID);
 	}
 
 	public int getDeviceForMicroservice(String microserviceName) {
-		if (!traversedMicroservices.containsKey(microserviceName))
+		if (traversedMicroservices == null || !traversedMicroservices.containsKey(microserviceName))
 			return -1;
 		else {
 			return traversedMicroservices.get(microserviceName);
 		}
 	}
 
+	/**
+	 * Gets the traversed microservices. The map is only created when first needed, since most
+	 * tuples outside of the microservices architecture never use it.
+	 */
 	public Map<String, Integer> getTraversed() {
+		if (traversedMicroservices == null)
+			traversedMicroservices = new HashMap<>();
 		return traversedMicroservices;
 	}
 
@@ -0,0 +1,17 @@
+package org.fog.entities;
+
+import org.fog.utils.Config;
+
+/**
+ * An entity that sends tuples and declares whether it uses the TUPLE_ACK events sent back by the
+ * devices receiving them. With {@link Config#TUPLE_ACK_COALESCED}, acknowledgements are only sent
+ * to the entities that consume them; entities that do not implement this interface are assumed to
+ * consume them.
+ */
+public interface TupleAckConsumer {
+
+	/**
+	 * @return true if the entity does something with the TUPLE_ACK events it receives
+	 */
+	boolean consumesTupleAcks();
+}
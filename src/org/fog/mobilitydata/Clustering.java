@@ -4,6 +4,7 @@ import org.cloudbus.cloudsim.core.CloudSim;
 import org.fog.entities.FogDevice;
 import org.fog.placement.LocationHandler;
 import org.fog.utils.Config;
+import org.fog.utils.Logger;
 import org.json.simple.JSONObject;
 
 import java.util.ArrayList;
@@ -28,7 +29,7 @@ public class Clustering {
 
         if (SiblingListIDs.size() < 1 || SiblingListIDs.isEmpty()) {
             //System.out.println("The node: " + nodeId + " with parent Id: " + parentId + " does not have any cluster members " + parentDevice.getChildrenIds());
-            System.out.println("ERROR in clustering --> Pranet Node does not habe any children");
+            Logger.error("Clustering", "Parent node does not have any children");
             //Log.printLine("ERROR in clustering --> Pranet Node cannot be Found");
             return;
         }
@@ -82,7 +83,7 @@ public class Clustering {
             ((FogDevice) CloudSim.getEntity(fogId)).setClusterMembersToLatencyMap(latencyMapL2);
 
         }
-        System.out.println("The Fog Device: " + locatorTemp.instanceToDataId.get(fogId) + " with id: " + fogId + " and parent id: " + parentId +
+        Logger.debug("Clustering", "The Fog Device: " + locatorTemp.instanceToDataId.get(fogId) + " with id: " + fogId + " and parent id: " + parentId +
                 " has these cluster members: " + ((FogDevice) CloudSim.getEntity(fogId)).getClusterMembers());
         return;
     }
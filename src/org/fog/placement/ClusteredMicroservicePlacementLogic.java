@@ -227,7 +227,6 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                     if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
                         Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
                         getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                        System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
 
                         moduleToApp.put(microservice, app.getAppId());
 
@@ -284,7 +283,6 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                             if (getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId) <= resourceAvailability.get(deviceId).get(ControllerComponent.CPU)) {
                                 Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + device.getName() + " successful.");
                                 getCurrentCpuLoad().put(deviceId, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(deviceId));
-                                System.out.println("Placement of operator " + microservice + " on device " + device.getName() + " successful.");
 
                                 moduleToApp.put(microservice, app.getAppId());
 
@@ -384,7 +382,6 @@ public class ClusteredMicroservicePlacementLogic implements MicroservicePlacemen
                                     FogDevice placedDevice = getDevice(id);
                                     Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
                                     getCurrentCpuLoad().put(id, getModule(microservice, app).getMips() + getCurrentCpuLoad().get(id));
-                                    System.out.println("Placement of operator " + microservice + " on device " + placedDevice.getName() + " successful.");
 
                                     if (!currentModuleMap.get(id).contains(microservice))
                                         currentModuleMap.get(id).add(microservice);
@@ -12,6 +12,7 @@ import org.fog.entities.FogDevice;
 import org.fog.entities.Sensor;
 import org.fog.utils.*;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.NumberFormat;
@@ -28,6 +29,7 @@ public class Controller extends SimEntity {
     private Map<String, Application> applications;
     private Map<String, Integer> appLaunchDelays;
     private Map<String, ModulePlacement> appModulePlacementPolicy;
+    private String resultsDirectory = "./results";
 
     public Controller(String name, List<FogDevice> fogDevices, List<Sensor> sensors, List<Actuator> actuators) {
         super(name);
@@ -101,7 +103,7 @@ public class Controller extends SimEntity {
                 // printPowerDetails();
                 // printNetworkUsageDetails();
                 // printCostDetails();
-                System.exit(0);
+                CloudSim.exitSimulation();
                 break;
 
         }
@@ -159,7 +161,7 @@ public class Controller extends SimEntity {
         System.out.println("=========================================");
         System.out.println("APPLICATION LOOP DELAYS");
         System.out.println("=========================================");
-        for (Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()) {
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
 				Double startTime = 	TimeKeeper.getInstance().getEmitTimes().get(tupleId);
@@ -173,18 +175,30 @@ public class Controller extends SimEntity {
             System.out.println(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId));
         }
         System.out.println("=========================================");
+        System.out.println("APPLICATION LOOP DELAY PERCENTILES");
+        System.out.println("=========================================");
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
+            System.out.println(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getLoopDelayHistogram(loopId));
+        }
+        System.out.println("=========================================");
         System.out.println("TUPLE CPU EXECUTION DELAY");
         System.out.println("=========================================");
 
         for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
             System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType));
         }
+        System.out.println("=========================================");
+        System.out.println("TUPLE CPU EXECUTION DELAY PERCENTILES");
+        System.out.println("=========================================");
+        for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
+            System.out.println(tupleType + " ---> " + TimeKeeper.getInstance().getCpuTimeHistogram(tupleType));
+        }
 
         System.out.println("=========================================");
     }
 
     private void writeResultsHeaderToFile() {
-        try (FileWriter fw = new FileWriter("./results/" + this.getName() + "_header.txt")) {
+        try (FileWriter fw = new FileWriter(new File(getResultsDirectory(), this.getName() + "_header.txt"))) {
             fw.write("============== " + this.getName() + " =============" + System.lineSeparator());
             fw.write("=========================================" + System.lineSeparator());
             fw.write("================ RESULTS ================" + System.lineSeparator());
@@ -193,16 +207,28 @@ public class Controller extends SimEntity {
             fw.write("=========================================" + System.lineSeparator());
             fw.write("APPLICATION LOOP DELAYS" + System.lineSeparator());
             fw.write("=========================================" + System.lineSeparator());
-            for (Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()) {
+            for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
                 fw.write(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId) + System.lineSeparator());
             }
             fw.write("=========================================" + System.lineSeparator());
+            fw.write("APPLICATION LOOP DELAY PERCENTILES" + System.lineSeparator());
+            fw.write("=========================================" + System.lineSeparator());
+            for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
+                fw.write(getStringForLoopId(loopId) + " ---> " + TimeKeeper.getInstance().getLoopDelayHistogram(loopId) + System.lineSeparator());
+            }
+            fw.write("=========================================" + System.lineSeparator());
             fw.write("TUPLE CPU EXECUTION DELAY" + System.lineSeparator());
             fw.write("=========================================" + System.lineSeparator());
 
             for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
                 fw.write(tupleType + " ---> " + TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType) + System.lineSeparator());
             }
+            fw.write("=========================================" + System.lineSeparator());
+            fw.write("TUPLE CPU EXECUTION DELAY PERCENTILES" + System.lineSeparator());
+            fw.write("=========================================" + System.lineSeparator());
+            for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
+                fw.write(tupleType + " ---> " + TimeKeeper.getInstance().getCpuTimeHistogram(tupleType) + System.lineSeparator());
+            }
 
             fw.write("=========================================" + System.lineSeparator());
         } catch (IOException e) {
@@ -211,7 +237,7 @@ public class Controller extends SimEntity {
     }
 
     private void writeResultValuesToCsvFile() {
-        try (FileWriter fw = new FileWriter("./results/" + this.getName() + "_values.csv")) {
+        try (FileWriter fw = new FileWriter(new File(getResultsDirectory(), this.getName() + "_values.csv"))) {
             fw.write("fogDevice ; energy ; cost" + System.lineSeparator());
             for (FogDevice fogDevice : getFogDevices()) {
                 fw.write(fogDevice.getName() + " ; " + numberFormat.format(fogDevice.getEnergyConsumption())
@@ -223,21 +249,33 @@ public class Controller extends SimEntity {
     }
 
     private void writeTotalsToCsvFile() {
-        try (FileWriter fw = new FileWriter("./results/" + this.getName() + "_totals.csv")) {
+        try (FileWriter fw = new FileWriter(new File(getResultsDirectory(), this.getName() + "_totals.csv"))) {
             fw.write("total ; value" + System.lineSeparator());
             fw.write("energy ; " + numberFormat.format(calculateTotalEnergyConsumption()) + System.lineSeparator());
             fw.write("cost ; " + numberFormat.format(calculateTotalCost()) + System.lineSeparator());
             fw.write("network ; " + numberFormat.format(NetworkUsageMonitor.getNetworkUsage() / Config.MAX_SIMULATION_TIME) + System.lineSeparator());
             fw.write(" ; " + System.lineSeparator());
-            fw.write("loop ; delay" + System.lineSeparator());
-            for (Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()) {
-                fw.write(getStringForLoopId(loopId) + " ; " + numberFormat.format(TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId)) + System.lineSeparator());
+            fw.write("loop ; delay ; p50 ; p95 ; p99 ; max" + System.lineSeparator());
+            for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
+                fw.write(getStringForLoopId(loopId) + " ; " + numberFormat.format(TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loopId))
+                        + formatPercentiles(TimeKeeper.getInstance().getLoopDelayHistogram(loopId)) + System.lineSeparator());
+            }
+            fw.write(" ; " + System.lineSeparator());
+            fw.write("tuple ; cpu time ; p50 ; p95 ; p99 ; max" + System.lineSeparator());
+            for (String tupleType : TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().keySet()) {
+                fw.write(tupleType + " ; " + numberFormat.format(TimeKeeper.getInstance().getTupleTypeToAverageCpuTime().get(tupleType))
+                        + formatPercentiles(TimeKeeper.getInstance().getCpuTimeHistogram(tupleType)) + System.lineSeparator());
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private String formatPercentiles(LatencyHistogram histogram) {
+        return " ; " + numberFormat.format(histogram.getPercentile(50)) + " ; " + numberFormat.format(histogram.getPercentile(95))
+                + " ; " + numberFormat.format(histogram.getPercentile(99)) + " ; " + numberFormat.format(histogram.getMax());
+    }
+
     private double calculateTotalEnergyConsumption() {
         double totalEnergyConsumption = 0.0;
         for (FogDevice fogDevice : getFogDevices()) {
@@ -268,7 +306,7 @@ public class Controller extends SimEntity {
     }
 
     public void submitApplication(Application application, int delay, ModulePlacement modulePlacement) {
-        FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
+        FogUtils.getAppIdToGeoCoverageMap().put(application.getAppId(), application.getGeoCoverage());
         getApplications().put(application.getAppId(), application);
         getAppLaunchDelays().put(application.getAppId(), delay);
         getAppModulePlacementPolicy().put(application.getAppId(), modulePlacement);
@@ -303,7 +341,7 @@ public class Controller extends SimEntity {
 
     private void processAppSubmit(Application application) {
         System.out.println(CloudSim.clock() + " Submitted application " + application.getAppId());
-        FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
+        FogUtils.getAppIdToGeoCoverageMap().put(application.getAppId(), application.getGeoCoverage());
         getApplications().put(application.getAppId(), application);
 
         ModulePlacement modulePlacement = getAppModulePlacementPolicy().get(application.getAppId());
@@ -369,4 +407,15 @@ public class Controller extends SimEntity {
     public void setAppModulePlacementPolicy(Map<String, ModulePlacement> appModulePlacementPolicy) {
         this.appModulePlacementPolicy = appModulePlacementPolicy;
     }
+
+    public String getResultsDirectory() {
+        return resultsDirectory;
+    }
+
+    /**
+     * Sets the directory the result files are written to, <tt>./results</tt> by default.
+     */
+    public void setResultsDirectory(String resultsDirectory) {
+        this.resultsDirectory = resultsDirectory;
+    }
 }
\ No newline at end of file
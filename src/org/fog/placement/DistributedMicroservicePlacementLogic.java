@@ -156,7 +156,6 @@ public class DistributedMicroservicePlacementLogic implements MicroservicePlacem
                     } else if (getModule(microservice, app).getMips() + currentCpuLoad <= resourceAvailability.get(fogDevice.getId()).get(ControllerComponent.CPU)) {
                         Logger.debug("ModulePlacementEdgeward", "Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
                         currentCpuLoad = getModule(microservice, app).getMips() + currentCpuLoad;
-                        System.out.println("Placement of operator " + microservice + " on device " + fogDevice.getName() + " successful.");
 
                         moduleToApp.put(microservice, app.getAppId());
 
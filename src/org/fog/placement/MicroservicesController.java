@@ -26,6 +26,11 @@ public class MicroservicesController extends SimEntity {
 
     protected List<Integer> clustering_levels;
 
+    /**
+     * The routes between the devices, of which the routing tables of the devices are rows.
+     */
+    protected NextHopTable routing;
+
     /**
      * @param name
      * @param fogDevices
@@ -125,10 +130,10 @@ public class MicroservicesController extends SimEntity {
     }
 
     protected void generateRoutingTable() {
-        Map<Integer, Map<Integer, Integer>> routing = ShortestPathRoutingGenerator.generateRoutingTable(fogDevices);
+        routing = ShortestPathRoutingGenerator.generateNextHopTable(fogDevices);
 
         for (FogDevice f : fogDevices) {
-            ((MicroserviceFogDevice) f).addRoutingTable(routing.get(f.getId()));
+            ((MicroserviceFogDevice) f).addRoutingTable(routing.getRow(f.getId()));
         }
 
     }
@@ -219,7 +224,7 @@ public class MicroservicesController extends SimEntity {
                 printCostDetails();
                 printNetworkUsageDetails();
                 printQoSDetails();
-                System.exit(0);
+                CloudSim.exitSimulation();
                 break;
         }
 
@@ -298,7 +303,7 @@ public class MicroservicesController extends SimEntity {
         System.out.println("=========================================");
         System.out.println("APPLICATION LOOP DELAYS");
         System.out.println("=========================================");
-        for (Integer loopId : TimeKeeper.getInstance().getLoopIdToTupleIds().keySet()) {
+        for (Integer loopId : TimeKeeper.getInstance().getLoopIds()) {
 			/*double average = 0, count = 0;
 			for(int tupleId : TimeKeeper.getInstance().getLoopIdToTupleIds().get(loopId)){
 				Double startTime = 	TimeKeeper.getInstance().getEmitTimes().get(tupleId);
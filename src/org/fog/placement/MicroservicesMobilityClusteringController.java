@@ -14,7 +14,9 @@ import org.fog.entities.PlacementRequest;
 import org.fog.mobilitydata.References;
 import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
+import org.fog.utils.Logger;
 import org.fog.utils.MigrationDelayMonitor;
+import org.fog.utils.ShortestPathRoutingGenerator;
 import org.json.simple.JSONObject;
 
 import java.util.ArrayList;
@@ -101,7 +103,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
                 printCostDetails();
                 printNetworkUsageDetails();
                 printMigrationDelayDetails();
-                System.exit(0);
+                CloudSim.exitSimulation();
                 break;
             default:
                 super.processEvent(ev);
@@ -158,7 +160,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
             double latency = fogDevice.getUplinkLatency();
             parent.getChildToLatencyMap().put(fogDevice.getId(), latency);
             parent.getChildrenIds().add(fogDevice.getId());
-            System.out.println("Child " + fogDevice.getName() + "\t----->\tParent " + parent.getName());
+            Logger.debug(getName(), "Child " + fogDevice.getName() + "\t----->\tParent " + parent.getName());
         }
     }
 
@@ -168,7 +170,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
         FogDevice fogDevice = (FogDevice) ev.getData();
         FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
         FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(), CloudSim.clock()));
-        System.out.println(CloudSim.clock() + " Starting Mobility Management for " + fogDevice.getName());
+        Logger.debug(getName(), "Starting Mobility Management for " + fogDevice.getName());
         parentReference.put(fogDevice.getId(), newParent.getId());
         Map<String, Integer> migratingModules = new HashMap<>(); // migrating module _> it's device (can be preParent or  device the same cluster
         setNewOrchestratorNode(fogDevice,newParent);
@@ -184,7 +186,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
 
             fogDevice.setParentId(newParent.getId());
-            System.out.println("Child " + fogDevice.getName() + "\t----->\tParent " + newParent.getName());
+            Logger.debug(getName(), "Child " + fogDevice.getName() + "\t----->\tParent " + newParent.getName());
             newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
             newParent.addChild(fogDevice.getId());
             prevParent.removeChild(fogDevice.getId());
@@ -212,7 +214,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
                     send(migratingModules.get(moduleName), upDelay, FogEvents.MODULE_SEND, jsonSend);
                     send(newParent.getId(), downDelay, FogEvents.MODULE_RECEIVE, jsonReceive);
-                    System.out.println("Migrating " + moduleName + " from " + prevParent.getName() + " to " + newParent.getName());
+                    Logger.debug(getName(), "Migrating " + moduleName + " from " + prevParent.getName() + " to " + newParent.getName());
                 }
 
                 serviceDiscoveryUpdate(fogDevice, migratingModules, applicationName, newParent.getId(), upDelays, downDelays);
@@ -240,7 +242,7 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
                     ((MicroserviceFogDevice)getFogDeviceById(currentFon)).removeMonitoredDevice(fogDevice);
                     ((MicroserviceFogDevice) fogDevice).setFonID(parentId);
                     ((MicroserviceFogDevice)getFogDeviceById(parentId)).addMonitoredDevice(fogDevice);
-                    System.out.println("Orchestrator Node for device : " + fogDevice.getId() + " updated to " + parentId);
+                    Logger.debug(getName(), "Orchestrator Node for device : " + fogDevice.getId() + " updated to " + parentId);
                 }
                 break;
             }
@@ -253,6 +255,10 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
     }
 
     private void updateRoutingTable(FogDevice fogDevice) {
+        if (Config.SHORTEST_PATH_CLUSTER_ROUTING) {
+            ShortestPathRoutingGenerator.updateDevice(routing, fogDevice.getId());
+            return;
+        }
 
         for (FogDevice f : fogDevices) {
             if (f.getId() != fogDevice.getId()) {
@@ -416,11 +422,11 @@ public class MicroservicesMobilityClusteringController extends MicroservicesCont
 
 
     public void clusteringSubmit(List Levels) {
-        System.out.println(CloudSim.clock() + " Start sending Clustering Request to Fog Devices in level: " + Levels);
+        Logger.debug(getName(), "Start sending Clustering Request to Fog Devices in level: " + Levels);
         for (int i = 0; i < Levels.size(); i++) {
             int clusterLevel = (int) Levels.get(i);
             for (FogDevice fogDevice : fogDevices) {
-                System.out.println(CloudSim.clock() + " fog Device: " + fogDevice.getName() + " with id: " + fogDevice.getId() + " is at level: " + fogDevice.getLevel());
+                Logger.debug(getName(), "fog Device: " + fogDevice.getName() + " with id: " + fogDevice.getId() + " is at level: " + fogDevice.getLevel());
                 if ((int) fogDevice.getLevel() == clusterLevel) {
                     JSONObject jsonMessage = new JSONObject();
                     jsonMessage.put("locationsInfo", getLocator());
@@ -20,6 +20,7 @@ import org.fog.mobilitydata.References;
 import org.fog.utils.Config;
 import org.fog.utils.FogEvents;
 import org.fog.utils.FogUtils;
+import org.fog.utils.Logger;
 import org.fog.utils.MigrationDelayMonitor;
 import org.fog.utils.NetworkUsageMonitor;
 import org.fog.utils.TimeKeeper;
@@ -103,7 +104,7 @@ public class MobilityController extends SimEntity{
 			double latency = fogDevice.getUplinkLatency();
 			parent.getChildToLatencyMap().put(fogDevice.getId(), latency);
 			parent.getChildrenIds().add(fogDevice.getId());
-			System.out.println("Child "+fogDevice.getName()+"\t----->\tParent "+parent.getName());
+			Logger.debug(getName(), "Child "+fogDevice.getName()+"\t----->\tParent "+parent.getName());
 		}
 	}
 	
@@ -152,7 +153,7 @@ public class MobilityController extends SimEntity{
 			printCostDetails();
 			printNetworkUsageDetails();
 			printMigrationDelayDetails();
-			System.exit(0);
+			CloudSim.exitSimulation();
 			break;
 			
 		}
@@ -177,7 +178,7 @@ public class MobilityController extends SimEntity{
 		FogDevice fogDevice = (FogDevice) ev.getData();
 		FogDevice prevParent = getFogDeviceById(parentReference.get(fogDevice.getId()));
 		FogDevice newParent = getFogDeviceById(locator.determineParent(fogDevice.getId(),CloudSim.clock()));
-		System.out.println(CloudSim.clock()+" Starting Mobility Management for "+fogDevice.getName());
+		Logger.debug(getName(), "Starting Mobility Management for "+fogDevice.getName());
 		parentReference.put(fogDevice.getId(),newParent.getId());
 		List<String>migratingModules = new ArrayList<String>();
 		if(prevParent.getId()!=newParent.getId()) {
@@ -191,7 +192,7 @@ public class MobilityController extends SimEntity{
 			
 			
 			fogDevice.setParentId(newParent.getId());
-			System.out.println("Child "+fogDevice.getName()+"\t----->\tParent "+newParent.getName());
+			Logger.debug(getName(), "Child "+fogDevice.getName()+"\t----->\tParent "+newParent.getName());
 			newParent.getChildToLatencyMap().put(fogDevice.getId(), fogDevice.getUplinkLatency());
 			newParent.addChild(fogDevice.getId());
 			prevParent.removeChild(fogDevice.getId());
@@ -213,7 +214,7 @@ public class MobilityController extends SimEntity{
 					
 					send(prevParent.getId(),upDelay, FogEvents.MODULE_SEND, jsonSend);
 					send(newParent.getId(),downDelay, FogEvents.MODULE_RECEIVE, jsonReceive);
-					System.out.println("Migrating "+moduleName+" from "+prevParent.getName()+" to "+newParent.getName());
+					Logger.debug(getName(), "Migrating "+moduleName+" from "+prevParent.getName()+" to "+newParent.getName());
 				}
 			}
 			
@@ -352,7 +353,7 @@ public class MobilityController extends SimEntity{
 	}
 	
 	public void submitApplication(Application application, int delay, ModulePlacement modulePlacement){
-		FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
+		FogUtils.getAppIdToGeoCoverageMap().put(application.getAppId(), application.getGeoCoverage());
 		getApplications().put(application.getAppId(), application);
 		getAppLaunchDelays().put(application.getAppId(), delay);
 		getAppModulePlacementPolicy().put(application.getAppId(), modulePlacement);
@@ -387,7 +388,7 @@ public class MobilityController extends SimEntity{
 	
 	private void processAppSubmit(Application application){
 		System.out.println(CloudSim.clock()+" Submitted application "+ application.getAppId());
-		FogUtils.appIdToGeoCoverageMap.put(application.getAppId(), application.getGeoCoverage());
+		FogUtils.getAppIdToGeoCoverageMap().put(application.getAppId(), application.getGeoCoverage());
 		getApplications().put(application.getAppId(), application);
 		
 		ModulePlacement modulePlacement = getAppModulePlacementPolicy().get(application.getAppId());
@@ -231,7 +231,6 @@ public class ModulePlacementEdgewards extends ModulePlacement {
                     } else {
                         Logger.debug("ModulePlacementEdgeward", "Placement of operator " + moduleName + " on device " + device.getName() + " successful.");
                         getCurrentCpuLoad().put(deviceId, totalCpuLoad + getCurrentCpuLoad().get(deviceId));
-                        System.out.println("Placement of operator " + moduleName + " on device " + device.getName() + " successful.");
 
                         if (!currentModuleMap.containsKey(deviceId))
                             currentModuleMap.put(deviceId, new ArrayList<String>());
@@ -267,7 +266,7 @@ public class ModulePlacementEdgewards extends ModulePlacement {
      * @param deviceId
      */
     private List<String> shiftModuleNorth(String moduleName, double cpuLoad, Integer deviceId, List<String> operatorsToPlace) {
-        System.out.println(CloudSim.getEntityName(deviceId) + " is shifting " + moduleName + " north.");
+        Logger.debug("ModulePlacementEdgeward", CloudSim.getEntityName(deviceId) + " is shifting " + moduleName + " north.");
         List<String> modulesToShift = findModulesToShift(moduleName, deviceId);
 
         Map<String, Integer> moduleToNumInstances = new HashMap<String, Integer>(); // Map of number of instances of modules that need to be shifted
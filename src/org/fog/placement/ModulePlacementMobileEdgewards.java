@@ -62,7 +62,7 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement {
     protected void mapModules() {
 
         for (String deviceName : getModuleMapping().getDeviceToModules().keySet()) {
-            System.out.println("*****MapModules " + deviceName);
+            Logger.debug("ModulePlacementEdgeward", "Mapping modules to " + deviceName);
             for (String moduleName : getModuleMapping().getDeviceToModules().get(deviceName)) {
                 int deviceId = CloudSim.getEntityId(deviceName);
                 getCurrentModuleMap().get(deviceId).add(moduleName);
@@ -251,7 +251,6 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement {
                     } else {
                         Logger.debug("ModulePlacementEdgeward", "Placement of operator " + moduleName + " on device " + device.getName() + " successful.");
                         getCurrentCpuLoad().put(deviceId, totalCpuLoad + getCurrentCpuLoad().get(deviceId));
-                        System.out.println("Placement of operator " + moduleName + " on device " + device.getName() + " successful.");
 
                         if (!currentModuleMap.containsKey(deviceId))
                             currentModuleMap.put(deviceId, new ArrayList<String>());
@@ -287,7 +286,7 @@ public class ModulePlacementMobileEdgewards extends ModulePlacement {
      * @param deviceId
      */
     private List<String> shiftModuleNorth(String moduleName, double cpuLoad, Integer deviceId, List<String> operatorsToPlace) {
-        System.out.println(CloudSim.getEntityName(deviceId) + " is shifting " + moduleName + " north.");
+        Logger.debug("ModulePlacementEdgeward", CloudSim.getEntityName(deviceId) + " is shifting " + moduleName + " north.");
         List<String> modulesToShift = findModulesToShift(moduleName, deviceId);
 
         Map<String, Integer> moduleToNumInstances = new HashMap<String, Integer>(); // Map of number of instances of modules that need to be shifted
@@ -12,6 +12,7 @@ import org.fog.entities.Actuator;
 import org.fog.entities.FogDevice;
 import org.fog.entities.Sensor;
 import org.fog.entities.Tuple;
+import org.fog.utils.Logger;
 
 public class ModulePlacementOnlyCloud extends ModulePlacement{
 	
@@ -63,7 +64,7 @@ public class ModulePlacementOnlyCloud extends ModulePlacement{
 				getModuleInstanceCountMap().get(cloudId).put(module.getName(), maxInstances);
 			}
 		}
-		System.out.println(getModuleInstanceCountMap());
+		Logger.debug("ModulePlacementOnlyCloud", "Module instance counts: "+getModuleInstanceCountMap());
 	}
 
 	private boolean isModuleInstanceCalculationComplete() {
@@ -1,9 +1,10 @@
 package org.fog.scheduler;
 
-import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
+import org.cloudbus.cloudsim.CloudletSchedulerVirtualTimeShared;
 import org.cloudbus.cloudsim.ResCloudlet;
+import org.fog.utils.Logger;
 
-public class TupleScheduler extends CloudletSchedulerTimeShared{
+public class TupleScheduler extends CloudletSchedulerVirtualTimeShared{
 
 	public TupleScheduler(double mips, int numberOfPes) {
 		//super(mips, numberOfPes);
@@ -24,7 +25,7 @@ public class TupleScheduler extends CloudletSchedulerTimeShared{
 		/*>>>>>>>>>>>>>>>>>>>>*/
 		/* edit made by HARSHIT GUPTA */
 		
-		System.out.println("ALLOCATED MIPS FOR CLOUDLET = "+getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
+		Logger.debug("TupleScheduler", () -> "ALLOCATED MIPS FOR CLOUDLET = "+getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
 		return time
 				+ ((rcl.getRemainingCloudletLength()) / getTotalCurrentAllocatedMipsForCloudlet(rcl, time));
 		
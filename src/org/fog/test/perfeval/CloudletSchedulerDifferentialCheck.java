@@ -0,0 +1,123 @@
+package org.fog.test.perfeval;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
+import org.cloudbus.cloudsim.CloudletSchedulerVirtualTimeShared;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.core.CloudSim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Differential check of {@link CloudletSchedulerVirtualTimeShared} against
+ * {@link CloudletSchedulerTimeShared}. Both schedulers are given the same random sequences of
+ * submissions, updates, cancellations, pauses, resumes and migrations, and every result, the
+ * progress of the finished cloudlets and the status of all the cloudlets are compared bit for bit
+ * after each operation.
+ * <p>
+ * Usage: <tt>CloudletSchedulerDifferentialCheck [seed] [runs] [operationsPerRun]</tt>
+ */
+public class CloudletSchedulerDifferentialCheck {
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+
+        CloudSim.init(1, Calendar.getInstance(), false);
+        Log.disable();
+        Random random = new Random(seed);
+        for (int run = 0; run < runs; run++) {
+            check(random, operations, run);
+        }
+        System.out.println("Both schedulers gave the same results for " + runs * operations + " operations (seed " + seed + ")");
+    }
+
+    private static void check(Random random, int operations, int run) {
+        CloudletSchedulerTimeShared expected = new CloudletSchedulerTimeShared();
+        CloudletSchedulerVirtualTimeShared actual = new CloudletSchedulerVirtualTimeShared();
+        double time = 0;
+        List<Double> mipsShare = Arrays.asList(random.nextInt(3000) + 1.0);
+        expected.updateVmProcessing(time, mipsShare);
+        actual.updateVmProcessing(time, mipsShare);
+
+        List<Integer> ids = new ArrayList<>();
+        for (int step = 0; step < operations; step++) {
+            String where = "run " + run + ", operation " + step + ": ";
+            int operation = random.nextInt(10);
+            if (operation < 4) {
+                // some cloudlets are empty, use two PEs or are submitted after a file transfer
+                int id = ids.size();
+                int pes = random.nextInt(5) == 0 ? 2 : 1;
+                long length = random.nextInt(4) == 0 ? 0 : random.nextInt(20000);
+                double fileTransferTime = random.nextInt(3) == 0 ? random.nextDouble() : 0;
+                compare(expected.cloudletSubmit(newCloudlet(id, length, pes), fileTransferTime),
+                        actual.cloudletSubmit(newCloudlet(id, length, pes), fileTransferTime), where + "submit");
+                ids.add(id);
+            } else if (operation < 8) {
+                // the clock may stand still, and the share may change or leave a PE without MIPS
+                if (random.nextBoolean()) {
+                    time += random.nextInt(3) == 0 ? 0 : random.nextDouble() * 5;
+                }
+                if (random.nextInt(5) == 0) {
+                    mipsShare = Arrays.asList(random.nextInt(3000) + 1.0, random.nextBoolean() ? 0.0 : 500.0);
+                }
+                compare(expected.isProcessingUpToDate(time, mipsShare) ? 1 : 0,
+                        actual.isProcessingUpToDate(time, mipsShare) ? 1 : 0, where + "isProcessingUpToDate");
+                compare(expected.updateVmProcessing(time, mipsShare),
+                        actual.updateVmProcessing(time, mipsShare), where + "updateVmProcessing");
+            } else if (!ids.isEmpty()) {
+                int id = ids.get(random.nextInt(ids.size()));
+                switch (random.nextInt(4)) {
+                    case 0:
+                        compare(expected.cloudletCancel(id), actual.cloudletCancel(id), where + "cloudletCancel");
+                        break;
+                    case 1:
+                        compare(expected.cloudletPause(id) ? 1 : 0, actual.cloudletPause(id) ? 1 : 0, where + "cloudletPause");
+                        break;
+                    case 2:
+                        compare(expected.cloudletResume(id), actual.cloudletResume(id), where + "cloudletResume");
+                        break;
+                    default:
+                        if (expected.runningCloudlets() > 0) {
+                            compare(expected.migrateCloudlet(), actual.migrateCloudlet(), where + "migrateCloudlet");
+                        }
+                        break;
+                }
+            }
+
+            compare(expected.runningCloudlets(), actual.runningCloudlets(), where + "runningCloudlets");
+            while (expected.isFinishedCloudlets() || actual.isFinishedCloudlets()) {
+                compare(expected.getNextFinishedCloudlet(), actual.getNextFinishedCloudlet(), where + "getNextFinishedCloudlet");
+            }
+            for (int id : ids) {
+                compare(expected.getCloudletStatus(id), actual.getCloudletStatus(id), where + "getCloudletStatus(" + id + ")");
+            }
+        }
+    }
+
+    private static Cloudlet newCloudlet(int id, long length, int pes) {
+        Cloudlet cloudlet = new Cloudlet(id, length, pes, 0, 0, new UtilizationModelFull(), new UtilizationModelFull(),
+                new UtilizationModelFull());
+        cloudlet.setResourceParameter(1, 0);
+        return cloudlet;
+    }
+
+    private static void compare(Cloudlet expected, Cloudlet actual, String where) {
+        compare(expected == null ? -1 : expected.getCloudletId(), actual == null ? -1 : actual.getCloudletId(), where);
+        if (expected != null) {
+            compare(expected.getCloudletFinishedSoFar(), actual.getCloudletFinishedSoFar(), where);
+        }
+    }
+
+    private static void compare(double expected, double actual, String where) {
+        if (Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual)) {
+            throw new IllegalStateException(where + " gave " + actual + " instead of " + expected);
+        }
+    }
+}
@@ -106,7 +106,7 @@ public class DCNSFog {
      * @param userId
      * @param appId
      */
-    private static void createFogDevices(int userId, String appId) {
+    static void createFogDevices(int userId, String appId) {
         FogDevice cloud = createFogDevice("cloud", 44800, 40000, 100, 10000, 0, 0.01, 16 * 103, 16 * 83.25);
         cloud.setParentId(-1);
         fogDevices.add(cloud);
@@ -222,7 +222,7 @@ public class DCNSFog {
      * @return
      */
     @SuppressWarnings({"serial"})
-    private static Application createApplication(String appId, int userId) {
+    static Application createApplication(String appId, int userId) {
 
         Application application = Application.createApplication(appId, userId);
         /*
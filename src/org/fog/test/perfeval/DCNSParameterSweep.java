@@ -0,0 +1,230 @@
+package org.fog.test.perfeval;
+
+import org.cloudbus.cloudsim.Host;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationRunner;
+import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.cloudbus.cloudsim.sdn.overbooking.BwProvisionerOverbooking;
+import org.cloudbus.cloudsim.sdn.overbooking.PeProvisionerOverbooking;
+import org.fog.application.AppLoop;
+import org.fog.application.AppModule;
+import org.fog.application.Application;
+import org.fog.application.selectivity.FractionalSelectivity;
+import org.fog.application.selectivity.SelectivityModel;
+import org.fog.entities.*;
+import org.fog.placement.Controller;
+import org.fog.placement.ModuleMapping;
+import org.fog.placement.ModulePlacementEdgewards;
+import org.fog.policy.AppModuleAllocationPolicy;
+import org.fog.scheduler.StreamOperatorScheduler;
+import org.fog.utils.Config;
+import org.fog.utils.FogLinearPowerModel;
+import org.fog.utils.FogUtils;
+import org.fog.utils.NetworkUsageMonitor;
+import org.fog.utils.TimeKeeper;
+import org.fog.utils.distribution.DeterministicDistribution;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * Parameter sweep over the Intelligent Surveillance case study of {@link DCNSFog}: the scenario is
+ * simulated for 1 to N smart cameras per area, and all the simulations run concurrently in one JVM
+ * through a {@link SimulationRunner}. Each simulation keeps its topology in its own
+ * {@link Scenario} object instead of static fields, so the runs do not share any state. Each run
+ * also draws the output tuples of its modules from its own random generator, seeded from the
+ * given seed, so a sweep gives the same results whatever the number of threads. The result files
+ * of the controllers are written to a new temporary directory.
+ * <p>
+ * Usage: <tt>DCNSParameterSweep [maxCamerasPerArea] [numOfAreas] [threads] [seed]</tt>
+ */
+public class DCNSParameterSweep {
+
+    public static void main(String[] args) {
+        int maxCameras = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int numOfAreas = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        Log.disable();
+        try {
+            String resultsDirectory = Files.createTempDirectory("dcns-sweep").toString();
+            List<Scenario> scenarios = new ArrayList<Scenario>();
+            for (int cameras = 1; cameras <= maxCameras; cameras++) {
+                scenarios.add(new Scenario(numOfAreas, cameras, seed + cameras, resultsDirectory));
+            }
+
+            long start = System.currentTimeMillis();
+            List<String> results = new SimulationRunner(threads).run(scenarios);
+            for (String result : results) {
+                System.out.println(result);
+            }
+            System.out.println(scenarios.size() + " simulations in " + (System.currentTimeMillis() - start) + " ms");
+            System.out.println("Result files written to " + resultsDirectory);
+        } catch (Exception e) {
+            e.printStackTrace();
+            Log.printLine("Unwanted errors happen");
+        }
+    }
+
+    /**
+     * One point of the sweep. Returns a summary of the loop delays, network usage and energy.
+     */
+    static class Scenario implements Callable<String> {
+
+        private final int numOfAreas;
+        private final int numOfCamerasPerArea;
+        private final long seed;
+        private final String resultsDirectory;
+        private final List<FogDevice> fogDevices = new ArrayList<FogDevice>();
+        private final List<Sensor> sensors = new ArrayList<Sensor>();
+        private final List<Actuator> actuators = new ArrayList<Actuator>();
+
+        Scenario(int numOfAreas, int numOfCamerasPerArea, long seed, String resultsDirectory) {
+            this.numOfAreas = numOfAreas;
+            this.numOfCamerasPerArea = numOfCamerasPerArea;
+            this.seed = seed;
+            this.resultsDirectory = resultsDirectory;
+        }
+
+        @Override
+        public String call() throws Exception {
+            CloudSim.init(1, Calendar.getInstance(), false);
+
+            String appId = "dcns";
+            FogBroker broker = new FogBroker("broker");
+            Application application = DCNSFog.createApplication(appId, broker.getId());
+            application.setUserId(broker.getId());
+            Random random = new Random(seed);
+            for (AppModule module : application.getModules()) {
+                for (SelectivityModel selectivity : module.getSelectivityMap().values()) {
+                    if (selectivity instanceof FractionalSelectivity) {
+                        ((FractionalSelectivity) selectivity).setRandom(random);
+                    }
+                }
+            }
+
+            createFogDevices(broker.getId(), appId);
+
+            ModuleMapping moduleMapping = ModuleMapping.createModuleMapping();
+            for (FogDevice device : fogDevices) {
+                if (device.getName().startsWith("m")) {
+                    moduleMapping.addModuleToDeviceIfNotPresent("motion_detector", device.getName());
+                }
+            }
+            moduleMapping.addModuleToDeviceIfNotPresent("user_interface", "cloud");
+
+            // the name of the controller names its result files, so it has to be unique in the sweep
+            Controller controller = new Controller("controller-" + numOfAreas + "x" + numOfCamerasPerArea, fogDevices,
+                    sensors, actuators);
+            controller.setResultsDirectory(resultsDirectory);
+            controller.submitApplication(application,
+                    new ModulePlacementEdgewards(fogDevices, sensors, actuators, application, moduleMapping));
+
+            TimeKeeper.getInstance().setSimulationStartTime(Calendar.getInstance().getTimeInMillis());
+            CloudSim.startSimulation();
+
+            StringBuilder result = new StringBuilder();
+            result.append(numOfAreas).append(" areas x ").append(numOfCamerasPerArea).append(" cameras");
+            for (AppLoop loop : application.getLoops()) {
+                result.append(" ; ").append(loop.getModules()).append(" = ")
+                        .append(TimeKeeper.getInstance().getLoopIdToCurrentAverage().get(loop.getLoopId()));
+            }
+            double energy = 0;
+            for (FogDevice device : fogDevices) {
+                energy += device.getEnergyConsumption();
+            }
+            result.append(" ; network = ").append(NetworkUsageMonitor.getNetworkUsage() / Config.MAX_SIMULATION_TIME);
+            result.append(" ; energy = ").append(energy);
+            return result.toString();
+        }
+
+        private void createFogDevices(int userId, String appId) {
+            FogDevice cloud = createFogDevice("cloud", 44800, 40000, 100, 10000, 0, 0.01, 16 * 103, 16 * 83.25);
+            cloud.setParentId(-1);
+            fogDevices.add(cloud);
+            FogDevice proxy = createFogDevice("proxy-server", 2800, 4000, 10000, 10000, 1, 0.0, 107.339, 83.4333);
+            proxy.setParentId(cloud.getId());
+            proxy.setUplinkLatency(100);
+            fogDevices.add(proxy);
+            for (int i = 0; i < numOfAreas; i++) {
+                addArea(i + "", userId, appId, proxy.getId());
+            }
+        }
+
+        private FogDevice addArea(String id, int userId, String appId, int parentId) {
+            FogDevice router = createFogDevice("d-" + id, 2800, 4000, 10000, 10000, 1, 0.0, 107.339, 83.4333);
+            fogDevices.add(router);
+            router.setUplinkLatency(2);
+            for (int i = 0; i < numOfCamerasPerArea; i++) {
+                String mobileId = id + "-" + i;
+                FogDevice camera = addCamera(mobileId, userId, appId, router.getId());
+                camera.setUplinkLatency(2);
+                fogDevices.add(camera);
+            }
+            router.setParentId(parentId);
+            return router;
+        }
+
+        private FogDevice addCamera(String id, int userId, String appId, int parentId) {
+            FogDevice camera = createFogDevice("m-" + id, 500, 1000, 10000, 10000, 3, 0, 87.53, 82.44);
+            camera.setParentId(parentId);
+            Sensor sensor = new Sensor("s-" + id, "CAMERA", userId, appId, new DeterministicDistribution(5));
+            sensors.add(sensor);
+            Actuator ptz = new Actuator("ptz-" + id, userId, appId, "PTZ_CONTROL");
+            actuators.add(ptz);
+            sensor.setGatewayDeviceId(camera.getId());
+            sensor.setLatency(1.0);
+            ptz.setGatewayDeviceId(camera.getId());
+            ptz.setLatency(1.0);
+            return camera;
+        }
+
+        private static FogDevice createFogDevice(String nodeName, long mips,
+                                                 int ram, long upBw, long downBw, int level, double ratePerMips, double busyPower, double idlePower) {
+            List<Pe> peList = new ArrayList<Pe>();
+            peList.add(new Pe(0, new PeProvisionerOverbooking(mips)));
+
+            int hostId = FogUtils.generateEntityId();
+            long storage = 1000000;
+            int bw = 10000;
+
+            PowerHost host = new PowerHost(
+                    hostId,
+                    new RamProvisionerSimple(ram),
+                    new BwProvisionerOverbooking(bw),
+                    storage,
+                    peList,
+                    new StreamOperatorScheduler(peList),
+                    new FogLinearPowerModel(busyPower, idlePower)
+            );
+
+            List<Host> hostList = new ArrayList<Host>();
+            hostList.add(host);
+
+            LinkedList<Storage> storageList = new LinkedList<Storage>();
+            FogDeviceCharacteristics characteristics = new FogDeviceCharacteristics(
+                    "x86", "Linux", "Xen", host, 10.0, 3.0, 0.05, 0.001, 0.0);
+
+            FogDevice fogdevice = null;
+            try {
+                fogdevice = new FogDevice(nodeName, characteristics,
+                        new AppModuleAllocationPolicy(hostList), storageList, 10, upBw, downBw, 0, ratePerMips);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            fogdevice.setLevel(level);
+            return fogdevice;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package org.fog.test.perfeval;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.CalendarFutureQueue;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.FutureQueue;
+import org.cloudbus.cloudsim.core.HeapFutureQueue;
+import org.cloudbus.cloudsim.core.SimEvent;
+import org.cloudbus.cloudsim.core.TreeSetFutureQueue;
+import org.fog.application.Application;
+import org.fog.entities.FogBroker;
+import org.fog.entities.FogDevice;
+import org.fog.placement.Controller;
+import org.fog.placement.ModuleMapping;
+import org.fog.placement.ModulePlacementEdgewards;
+import org.fog.utils.FogEvents;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Micro-benchmark for the {@link FutureQueue} implementations. It runs the Intelligent Surveillance
+ * scenario of {@link DCNSFog} once while recording every operation done on the future event queue,
+ * then replays the recorded trace against each implementation and reports the time per operation.
+ * The replay also checks that every implementation hands the events out in the recorded order.
+ * <p>
+ * Usage: <tt>FutureQueueBenchmark [numOfAreas] [numOfCamerasPerArea] [iterations]</tt>
+ */
+public class FutureQueueBenchmark {
+
+    private static final byte ADD = 0;
+    private static final byte ADD_FIRST = 1;
+    private static final byte PEEK = 2;
+    private static final byte POLL = 3;
+    private static final byte REMOVE = 4;
+    private static final byte POLL_AT = 5;
+    private static final byte ADD_LAST = 6;
+
+    private static final int WARMUP_ITERATIONS = 5;
+
+    public static void main(String[] args) throws Exception {
+        DCNSFog.numOfAreas = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        DCNSFog.numOfCamerasPerArea = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        Log.disable();
+        Trace trace = recordTrace();
+        System.out.println("Recorded " + trace.size + " queue operations from " + DCNSFog.fogDevices.size()
+                + " fog devices and " + DCNSFog.sensors.size() + " sensors");
+
+        String[] names = {"TreeSet", "Binary heap", "4-ary heap", "Calendar queue"};
+        for (int i = 0; i < names.length; i++) {
+            for (int w = 0; w < WARMUP_ITERATIONS; w++) {
+                trace.replay(newQueue(i));
+            }
+            long[] nanos = new long[iterations];
+            for (int it = 0; it < iterations; it++) {
+                FutureQueue queue = newQueue(i);
+                long start = System.nanoTime();
+                trace.replay(queue);
+                nanos[it] = System.nanoTime() - start;
+            }
+            Arrays.sort(nanos);
+            System.out.printf("%-15s median %8.2f ms  min %8.2f ms  %6.1f ns/op%n", names[i], nanos[iterations / 2] / 1e6,
+                    nanos[0] / 1e6, (double) nanos[iterations / 2] / trace.size);
+        }
+    }
+
+    private static FutureQueue newQueue(int index) {
+        switch (index) {
+            case 0:
+                return new TreeSetFutureQueue();
+            case 1:
+                return new HeapFutureQueue(2);
+            case 2:
+                return new HeapFutureQueue();
+            default:
+                return new CalendarFutureQueue();
+        }
+    }
+
+    /**
+     * Runs the DCNS scenario on a recording queue. The controller stops the simulation without
+     * exiting the JVM.
+     */
+    private static Trace recordTrace() throws Exception {
+        Trace trace = new Trace();
+        CloudSim.init(1, Calendar.getInstance(), false, new RecordingFutureQueue(new TreeSetFutureQueue(), trace));
+
+        String appId = "dcns";
+        FogBroker broker = new FogBroker("broker");
+        Application application = DCNSFog.createApplication(appId, broker.getId());
+        application.setUserId(broker.getId());
+        DCNSFog.createFogDevices(broker.getId(), appId);
+
+        ModuleMapping moduleMapping = ModuleMapping.createModuleMapping();
+        for (FogDevice device : DCNSFog.fogDevices) {
+            if (device.getName().startsWith("m")) {
+                moduleMapping.addModuleToDeviceIfNotPresent("motion_detector", device.getName());
+            }
+        }
+        moduleMapping.addModuleToDeviceIfNotPresent("user_interface", "cloud");
+
+        Controller controller = new Controller("master-controller", DCNSFog.fogDevices, DCNSFog.sensors,
+                DCNSFog.actuators) {
+            @Override
+            public void processEvent(SimEvent ev) {
+                if (ev.getTag() == FogEvents.STOP_SIMULATION) {
+                    CloudSim.abruptallyTerminate();
+                    return;
+                }
+                super.processEvent(ev);
+            }
+        };
+        controller.submitApplication(application, new ModulePlacementEdgewards(DCNSFog.fogDevices, DCNSFog.sensors,
+                DCNSFog.actuators, application, moduleMapping));
+
+        CloudSim.startSimulation();
+        return trace;
+    }
+
+    /**
+     * The recorded sequence of queue operations, together with the events they apply to.
+     */
+    private static class Trace {
+        private byte[] ops = new byte[1 << 16];
+        private SimEvent[] events = new SimEvent[1 << 16];
+        private double[] times = new double[1 << 16];
+        private int size = 0;
+
+        private void record(byte op, SimEvent event) {
+            record(op, event, 0);
+        }
+
+        private void record(byte op, SimEvent event, double time) {
+            if (size == ops.length) {
+                ops = Arrays.copyOf(ops, size << 1);
+                events = Arrays.copyOf(events, size << 1);
+                times = Arrays.copyOf(times, size << 1);
+            }
+            ops[size] = op;
+            times[size] = time;
+            events[size++] = event;
+        }
+
+        private void replay(FutureQueue queue) {
+            for (int i = 0; i < size; i++) {
+                switch (ops[i]) {
+                    case ADD:
+                        queue.addEvent(events[i]);
+                        break;
+                    case ADD_FIRST:
+                        queue.addEventFirst(events[i]);
+                        break;
+                    case ADD_LAST:
+                        queue.addEventLast(events[i]);
+                        break;
+                    case PEEK:
+                        if (queue.peek() != events[i]) {
+                            throw new IllegalStateException("Event order differs from the recorded trace at operation " + i);
+                        }
+                        break;
+                    case POLL:
+                        if (queue.poll() != events[i]) {
+                            throw new IllegalStateException("Event order differs from the recorded trace at operation " + i);
+                        }
+                        break;
+                    case POLL_AT:
+                        if (queue.pollAt(times[i]) != events[i]) {
+                            throw new IllegalStateException("Event order differs from the recorded trace at operation " + i);
+                        }
+                        break;
+                    default:
+                        queue.remove(events[i]);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A future queue that records the operations done on another queue.
+     */
+    private static class RecordingFutureQueue implements FutureQueue {
+        private final FutureQueue queue;
+        private final Trace trace;
+
+        private RecordingFutureQueue(FutureQueue queue, Trace trace) {
+            this.queue = queue;
+            this.trace = trace;
+        }
+
+        @Override
+        public void addEvent(SimEvent newEvent) {
+            queue.addEvent(newEvent);
+            trace.record(ADD, newEvent);
+        }
+
+        @Override
+        public void addEventFirst(SimEvent newEvent) {
+            queue.addEventFirst(newEvent);
+            trace.record(ADD_FIRST, newEvent);
+        }
+
+        @Override
+        public void addEventLast(SimEvent newEvent) {
+            queue.addEventLast(newEvent);
+            trace.record(ADD_LAST, newEvent);
+        }
+
+        @Override
+        public SimEvent peek() {
+            SimEvent first = queue.peek();
+            trace.record(PEEK, first);
+            return first;
+        }
+
+        @Override
+        public SimEvent poll() {
+            SimEvent first = queue.poll();
+            trace.record(POLL, first);
+            return first;
+        }
+
+        @Override
+        public SimEvent pollAt(double time) {
+            SimEvent first = queue.pollAt(time);
+            trace.record(POLL_AT, first, time);
+            return first;
+        }
+
+        @Override
+        public Iterator<SimEvent> iterator() {
+            return queue.iterator();
+        }
+
+        @Override
+        public int size() {
+            return queue.size();
+        }
+
+        @Override
+        public boolean remove(SimEvent event) {
+            boolean removed = queue.remove(event);
+            if (removed) {
+                trace.record(REMOVE, event);
+            }
+            return removed;
+        }
+
+        @Override
+        public boolean removeAll(Collection<SimEvent> events) {
+            List<SimEvent> toRemove = new ArrayList<SimEvent>(events);
+            boolean removed = false;
+            for (SimEvent event : toRemove) {
+                removed |= remove(event);
+            }
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            queue.clear();
+        }
+    }
+}
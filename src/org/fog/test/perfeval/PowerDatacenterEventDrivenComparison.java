@@ -0,0 +1,163 @@
+package org.fog.test.perfeval;
+
+import org.cloudbus.cloudsim.Cloudlet;
+import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
+import org.cloudbus.cloudsim.DatacenterBroker;
+import org.cloudbus.cloudsim.DatacenterCharacteristics;
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.Pe;
+import org.cloudbus.cloudsim.Storage;
+import org.cloudbus.cloudsim.UtilizationModel;
+import org.cloudbus.cloudsim.UtilizationModelFull;
+import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.VmSchedulerTimeShared;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.power.PowerDatacenter;
+import org.cloudbus.cloudsim.power.PowerHost;
+import org.cloudbus.cloudsim.power.PowerVm;
+import org.cloudbus.cloudsim.power.PowerVmAllocationPolicySimple;
+import org.cloudbus.cloudsim.power.models.PowerModelLinear;
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares the polling and the event-driven modes of {@link PowerDatacenter} on a small power
+ * scenario: random cloudlets on six VMs spread over eight hosts, with a scheduling interval of 300
+ * seconds and migrations disabled.
+ * <p>
+ * In polling mode the hosts are only updated every scheduling interval, so a cloudlet is seen as
+ * finished at the first tick after it actually finishes, and it keeps its share of the VM until
+ * then. In event-driven mode the hosts are updated when their next cloudlet finishes. Every
+ * cloudlet is therefore expected to finish earlier in event-driven mode, never later. The delays
+ * add up along the cloudlets of a VM, so the last ones finish up to two or three scheduling
+ * intervals earlier. The energy is expected to differ by about 1% either way: polling interpolates
+ * the power of a host linearly between its utilizations at two ticks, event-driven mode keeps it
+ * constant between two updates, and the two modes end at different times.
+ * <p>
+ * Usage: <tt>PowerDatacenterEventDrivenComparison [cloudlets] [seed]</tt>
+ */
+public class PowerDatacenterEventDrivenComparison {
+
+    private static final double SCHEDULING_INTERVAL = 300;
+
+    public static void main(String[] args) throws Exception {
+        int cloudlets = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        Log.disable();
+        Result polling = run(false, cloudlets, seed);
+        Result eventDriven = run(true, cloudlets, seed);
+
+        System.out.printf("%-13s %12s %18s %16s%n", "Mode", "Last finish", "Energy (W*sec)", "Mean finish");
+        print("Polling", polling);
+        print("Event-driven", eventDriven);
+
+        double maxEarlier = 0;
+        double totalEarlier = 0;
+        for (Map.Entry<Integer, Double> finish : polling.finishTimes.entrySet()) {
+            double earlier = finish.getValue() - eventDriven.finishTimes.get(finish.getKey());
+            if (earlier < -CloudSim.getMinTimeBetweenEvents()) {
+                throw new IllegalStateException("Cloudlet " + finish.getKey() + " finished " + (-earlier)
+                        + " seconds later in event-driven mode");
+            }
+            maxEarlier = Math.max(maxEarlier, earlier);
+            totalEarlier += earlier;
+        }
+        System.out.printf("Event-driven cloudlets finish %.3f seconds earlier on average, %.3f at most%n",
+                totalEarlier / cloudlets, maxEarlier);
+        System.out.printf("Event-driven energy differs by %+.3f%%%n",
+                100 * (eventDriven.energy - polling.energy) / polling.energy);
+    }
+
+    private static void print(String mode, Result result) {
+        double last = 0;
+        double total = 0;
+        for (double finishTime : result.finishTimes.values()) {
+            last = Math.max(last, finishTime);
+            total += finishTime;
+        }
+        System.out.printf("%-13s %12.3f %18.3f %16.3f%n", mode, last, result.energy, total / result.finishTimes.size());
+    }
+
+    private static Result run(boolean eventDriven, int cloudlets, long seed) throws Exception {
+        CloudSim.init(1, Calendar.getInstance(), false);
+
+        List<PowerHost> hosts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            List<Pe> pes = new ArrayList<>();
+            pes.add(new Pe(0, new PeProvisionerSimple(1000)));
+            pes.add(new Pe(1, new PeProvisionerSimple(1000)));
+            hosts.add(new PowerHost(i, new RamProvisionerSimple(8192), new BwProvisionerSimple(100000), 1000000, pes,
+                    new VmSchedulerTimeShared(pes), new PowerModelLinear(250, 0.7)));
+        }
+        DatacenterCharacteristics characteristics = new DatacenterCharacteristics("x86", "Linux", "Xen", hosts, 10, 3,
+                0.05, 0.001, 0);
+        PowerDatacenter datacenter = new PowerDatacenter("datacenter", characteristics,
+                new PowerVmAllocationPolicySimple(hosts), new LinkedList<Storage>(), SCHEDULING_INTERVAL);
+        datacenter.setDisableMigrations(true);
+        datacenter.setEventDriven(eventDriven);
+
+        DatacenterBroker broker = new DatacenterBroker("broker");
+        List<Vm> vms = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            vms.add(new PowerVm(i, broker.getId(), 1000, 1, 512, 1000, 1000, 1, "Xen", new BusyCloudletScheduler(),
+                    SCHEDULING_INTERVAL));
+        }
+        List<Cloudlet> cloudletList = new ArrayList<>();
+        Random random = new Random(seed);
+        UtilizationModel full = new UtilizationModelFull();
+        for (int i = 0; i < cloudlets; i++) {
+            Cloudlet cloudlet = new Cloudlet(i, 50000 + random.nextInt(2000000), 1, 300, 300, full, full, full);
+            cloudlet.setUserId(broker.getId());
+            cloudlet.setVmId(i % vms.size());
+            cloudletList.add(cloudlet);
+        }
+        broker.submitVmList(vms);
+        broker.submitCloudletList(cloudletList);
+
+        CloudSim.startSimulation();
+        CloudSim.stopSimulation();
+
+        Result result = new Result();
+        result.energy = datacenter.getPower();
+        for (Cloudlet cloudlet : broker.getCloudletReceivedList()) {
+            result.finishTimes.put(cloudlet.getCloudletId(), cloudlet.getFinishTime());
+        }
+        if (result.finishTimes.size() != cloudlets) {
+            throw new IllegalStateException((eventDriven ? "Event-driven" : "Polling") + " mode finished "
+                    + result.finishTimes.size() + " of " + cloudlets + " cloudlets");
+        }
+        return result;
+    }
+
+    private static class Result {
+        double energy;
+        final Map<Integer, Double> finishTimes = new HashMap<>();
+    }
+
+    /**
+     * A time-shared scheduler that asks for the full MIPS of its VM while it runs cloudlets.
+     * {@link CloudletSchedulerTimeShared} asks for none, which makes {@link PowerDatacenter} treat
+     * the VM as idle and take it off its host.
+     */
+    private static class BusyCloudletScheduler extends CloudletSchedulerTimeShared {
+
+        @Override
+        public List<Double> getCurrentRequestedMips() {
+            if (runningCloudlets() == 0) {
+                return new ArrayList<>();
+            }
+            return Collections.singletonList(1000.0);
+        }
+    }
+}
@@ -21,6 +21,28 @@ public class Config {
 	public static boolean ENABLE_DYNAMIC_CLUSTERING = true;
 	public static double Node_Communication_RANGE = 300.0; // In terms of meter
 	public static double clusteringLatency = 2.0; //milisecond
+	// Recompute the shortest paths of all the devices over the cluster links and the new parent links when the
+	// clusters or the parent of a mobile device change. Off, only the routes of the devices concerned are patched.
+	public static boolean SHORTEST_PATH_CLUSTER_ROUTING = false;
 
 	public static final int TRANSMISSION_START_DELAY = 50;
+
+	// Compute the departure time of each tuple from the time its link becomes free, instead of queueing tuples and
+	// scheduling an event when the link is released. Downlinks to different children are then independent.
+	public static boolean ANALYTIC_LINK_MODEL = false;
+
+	// How the devices acknowledge the tuples they receive: not at all, with one TUPLE_ACK event per tuple and hop, or
+	// with at most one TUPLE_ACK per sender and clock tick, sent only to the entities that consume them
+	public static final int TUPLE_ACK_OFF = 0;
+	public static final int TUPLE_ACK_PER_HOP = 1;
+	public static final int TUPLE_ACK_COALESCED = 2;
+	public static int TUPLE_ACK_POLICY = TUPLE_ACK_PER_HOP;
+
+	// Number of tuples in flight whose emission and CPU start times are kept by TimeKeeper; older ones are dropped
+	public static int MAX_TRACKED_TUPLES = 1 << 20;
+
+	// Length of the windows of simulation time over which each sensor schedules its emissions with a single event,
+	// instead of one EMIT_TUPLE event per tuple; 0 keeps one event per tuple. Tuples arrive at the same times, but
+	// those arriving together with other events are ordered differently, so results may change (see Sensor)
+	public static double SENSOR_EMISSION_WINDOW = 0;
 }
@@ -0,0 +1,160 @@
+package org.fog.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
+
+/**
+ * Compact binary trace of the tuple events of a simulation, written to a memory-mapped file. Each
+ * record is {@link #RECORD_SIZE} bytes: the simulation time (double), the kind of event, the id of
+ * the entity, the id of the tuple and one more value that depends on the kind (ints), all
+ * big-endian. The file starts with the 8 bytes "IFOGTRC1" and the record size (int).
+ * <p>
+ * A trace is opened for the simulation context of the calling thread, and closed when that
+ * simulation finishes or exits if it was not closed before. When no trace is open anywhere,
+ * {@link #record(int, int, int, int)} returns after reading one static field.
+ *
+ * @see Logger#trace(int, int, int, int)
+ */
+public class EventTrace {
+
+	/** A sensor emitted a tuple; the value is the id of its gateway device. */
+	public static final int TUPLE_EMITTED = 1;
+	/** A device received a tuple; the value is the id of the sender. */
+	public static final int TUPLE_ARRIVAL = 2;
+	/** A device started executing a tuple; the value is the id of the module VM. */
+	public static final int TUPLE_EXECUTION = 3;
+	/** A device finished executing a tuple; the value is the id of the module VM. */
+	public static final int TUPLE_COMPLETED = 4;
+
+	public static final int RECORD_SIZE = 24;
+
+	private static final byte[] MAGIC = {'I', 'F', 'O', 'G', 'T', 'R', 'C', '1'};
+
+	private static final int HEADER_SIZE = MAGIC.length + 4;
+
+	/** Size of the regions of the file mapped at a time. */
+	private static final int REGION_SIZE = RECORD_SIZE * (1 << 20);
+
+	/** The number of traces open in all the simulation contexts. */
+	private static volatile int openTraces = 0;
+
+	private final SimulationContext context;
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private MappedByteBuffer region;
+	/** Position in the file of the start of the mapped region. */
+	private long regionStart;
+
+	private EventTrace(SimulationContext context, String path) throws IOException {
+		this.context = context;
+		file = new RandomAccessFile(path, "rw");
+		file.setLength(0);
+		channel = file.getChannel();
+		mapRegion(0);
+		region.put(MAGIC);
+		region.putInt(RECORD_SIZE);
+	}
+
+	/**
+	 * Opens a trace for the simulation of the calling thread, replacing the file if it exists.
+	 * A trace that is already open for the simulation is closed first.
+	 *
+	 * @param path the path of the file
+	 * @throws IOException if the file cannot be created
+	 */
+	public static synchronized void open(String path) throws IOException {
+		close();
+		SimulationContext context = SimulationContext.current();
+		final EventTrace trace = new EventTrace(context, path);
+		context.setAttribute(EventTrace.class, trace);
+		context.closeOnFinish(new Closeable() {
+			@Override
+			public void close() throws IOException {
+				trace.closeFile();
+			}
+		});
+		openTraces++;
+	}
+
+	/**
+	 * Closes the trace of the simulation of the calling thread, if any, and cuts the file to the
+	 * records written.
+	 *
+	 * @throws IOException if the file cannot be written
+	 */
+	public static synchronized void close() throws IOException {
+		EventTrace trace = (EventTrace) SimulationContext.current().getAttribute(EventTrace.class);
+		if (trace != null)
+			trace.closeFile();
+	}
+
+	/**
+	 * Closes this trace and cuts the file to the records written. It does nothing if the trace is
+	 * already closed.
+	 */
+	private void closeFile() throws IOException {
+		synchronized (EventTrace.class) {
+			if (region == null)
+				return;
+			if (context.getAttribute(EventTrace.class) == this)
+				context.setAttribute(EventTrace.class, null);
+			openTraces--;
+			long length = regionStart + region.position();
+			region.force();
+			region = null;
+			channel.truncate(length);
+			file.close();
+		}
+	}
+
+	/**
+	 * @return true if a trace is open for the simulation of the calling thread
+	 */
+	public static boolean isOpen() {
+		return openTraces > 0 && SimulationContext.current().getAttribute(EventTrace.class) != null;
+	}
+
+	/**
+	 * Writes a record to the trace of the simulation of the calling thread, if one is open.
+	 *
+	 * @param kind     the kind of event, e.g. {@link #TUPLE_ARRIVAL}
+	 * @param entityId the id of the entity where the event happened
+	 * @param tupleId  the id of the tuple
+	 * @param value    the value that goes with this kind of event
+	 */
+	public static void record(int kind, int entityId, int tupleId, int value) {
+		if (openTraces == 0)
+			return;
+		EventTrace trace = (EventTrace) SimulationContext.current().getAttribute(EventTrace.class);
+		if (trace != null)
+			trace.write(kind, entityId, tupleId, value);
+	}
+
+	private void write(int kind, int entityId, int tupleId, int value) {
+		if (region.remaining() < RECORD_SIZE) {
+			try {
+				mapRegion(regionStart + region.position());
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot extend the event trace", e);
+			}
+		}
+		region.putDouble(CloudSim.clock());
+		region.putInt(kind);
+		region.putInt(entityId);
+		region.putInt(tupleId);
+		region.putInt(value);
+	}
+
+	private void mapRegion(long start) throws IOException {
+		if (region != null)
+			region.force();
+		regionStart = start;
+		region = channel.map(FileChannel.MapMode.READ_WRITE, start, start == 0 ? HEADER_SIZE + REGION_SIZE : REGION_SIZE);
+	}
+}
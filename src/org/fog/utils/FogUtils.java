@@ -3,13 +3,31 @@ package org.fog.utils;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.cloudbus.cloudsim.core.SimulationContext;
+
 public class FogUtils {
-	private static int TUPLE_ID = 1;
-	private static int ENTITY_ID = 1;
-	private static int ACTUAL_TUPLE_ID = 1;
+	/**
+	 * The id counters, kept per simulation context so that concurrent simulations number their
+	 * tuples and entities independently.
+	 */
+	private static class Counters {
+		int tupleId = 1;
+		int entityId = 1;
+		int actualTupleId = 1;
+	}
+	
+	private static Counters getCounters(){
+		SimulationContext context = SimulationContext.current();
+		Counters counters = (Counters) context.getAttribute(Counters.class);
+		if(counters == null){
+			counters = new Counters();
+			context.setAttribute(Counters.class, counters);
+		}
+		return counters;
+	}
 	
 	public static int generateTupleId(){
-		return TUPLE_ID++;
+		return getCounters().tupleId++;
 	}
 	
 	public static String getSensorTypeFromSensorName(String sensorName){
@@ -17,11 +35,11 @@ public class FogUtils {
 	}
 	
 	public static int generateEntityId(){
-		return ENTITY_ID++;
+		return getCounters().entityId++;
 	}
 	
 	public static int generateActualTupleId(){
-		return ACTUAL_TUPLE_ID++;
+		return getCounters().actualTupleId++;
 	}
 	
 	public static int USER_ID = 1;
@@ -29,5 +47,18 @@ public class FogUtils {
 	//public static int MAX = 10000000;
 	public static int MAX = 10000000;
 	
-	public static Map<String, GeoCoverage> appIdToGeoCoverageMap = new HashMap<String, GeoCoverage>();
+	/**
+	 * @return the geographical coverage of each application, by application id, in the current
+	 * simulation context
+	 */
+	@SuppressWarnings("unchecked")
+	public static Map<String, GeoCoverage> getAppIdToGeoCoverageMap(){
+		SimulationContext context = SimulationContext.current();
+		Map<String, GeoCoverage> appIdToGeoCoverageMap = (Map<String, GeoCoverage>) context.getAttribute(GeoCoverage.class);
+		if(appIdToGeoCoverageMap == null){
+			appIdToGeoCoverageMap = new HashMap<String, GeoCoverage>();
+			context.setAttribute(GeoCoverage.class, appIdToGeoCoverageMap);
+		}
+		return appIdToGeoCoverageMap;
+	}
 }
@@ -0,0 +1,87 @@
+package org.fog.utils;
+
+/**
+ * Distribution of latencies in a fixed number of logarithmic buckets, so that percentiles can be
+ * reported without keeping every sample. Each bucket covers a range of values 2^(1/16) times wider
+ * than the previous one, so a percentile is off by less than 4.5% of its value. The count, mean and
+ * maximum are exact.
+ */
+public class LatencyHistogram {
+
+	/** Upper bound of the first bucket; smaller values, including 0, all fall into it. */
+	private static final double MIN_VALUE = 1e-3;
+
+	private static final int BUCKETS_PER_DOUBLING = 16;
+
+	/** Enough buckets to go from MIN_VALUE to about 10^9. */
+	private static final int BUCKET_COUNT = 40 * BUCKETS_PER_DOUBLING + 1;
+
+	private static final double LOG_GROWTH = Math.log(2) / BUCKETS_PER_DOUBLING;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long count;
+	private double sum;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	public void add(double value) {
+		counts[bucketOf(value)]++;
+		count++;
+		sum += value;
+		max = Math.max(max, value);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the mean of the values, or NaN if there is none
+	 */
+	public double getMean() {
+		return count > 0 ? sum / count : Double.NaN;
+	}
+
+	/**
+	 * @return the largest value, or NaN if there is none
+	 */
+	public double getMax() {
+		return count > 0 ? max : Double.NaN;
+	}
+
+	/**
+	 * Gets a percentile of the values, as the upper bound of the bucket that holds it.
+	 *
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the percentile, or NaN if there are no values
+	 */
+	public double getPercentile(double percentile) {
+		if (count == 0)
+			return Double.NaN;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank)
+				return Math.min(max, upperBound(bucket));
+		}
+		return max;
+	}
+
+	private static int bucketOf(double value) {
+		if (!(value > MIN_VALUE))
+			return 0;
+		int bucket = (int) Math.ceil(Math.log(value / MIN_VALUE) / LOG_GROWTH);
+		return Math.min(bucket, BUCKET_COUNT - 1);
+	}
+
+	private static double upperBound(int bucket) {
+		if (bucket == BUCKET_COUNT - 1)
+			return Double.POSITIVE_INFINITY;
+		return MIN_VALUE * Math.exp(bucket * LOG_GROWTH);
+	}
+
+	@Override
+	public String toString() {
+		return "p50=" + getPercentile(50) + " p95=" + getPercentile(95) + " p99=" + getPercentile(99) + " max=" + getMax();
+	}
+}
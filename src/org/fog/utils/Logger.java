@@ -1,16 +1,22 @@
 package org.fog.utils;
 
 import java.text.DecimalFormat;
+import java.util.function.Supplier;
 
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
 
+/**
+ * Log of the fog entities, off unless {@link #ENABLED} is set. On hot paths, pass the message as a
+ * {@link Supplier} so that it is only built when it is printed; with logging off such a call costs
+ * one field read.
+ */
 public class Logger {
 	
 	public static final int ERROR = 1;
 	public static final int DEBUG = 0;
 	
 	public static int LOG_LEVEL = Logger.DEBUG;
-	private static DecimalFormat df = new DecimalFormat("#.00"); 
 
 	public static boolean ENABLED = false;;
 	
@@ -18,17 +24,68 @@ public class Logger {
 		Logger.LOG_LEVEL = level;
 	}
 	
+	/**
+	 * @return true if debug messages are printed
+	 */
+	public static boolean isDebugEnabled(){
+		return ENABLED && Logger.LOG_LEVEL <= Logger.DEBUG;
+	}
+
 	public static void debug(String name, String message){
 		if(!ENABLED)
 			return;
 		if(Logger.LOG_LEVEL <= Logger.DEBUG)
-			System.out.println(df.format(CloudSim.clock())+" : "+name+" : "+message);
+			System.out.println(format(CloudSim.clock())+" : "+name+" : "+message);
+	}
+
+	/**
+	 * Prints a debug message built only if debug messages are printed.
+	 */
+	public static void debug(String name, Supplier<String> message){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.DEBUG)
+			System.out.println(format(CloudSim.clock())+" : "+name+" : "+message.get());
 	}
+
 	public static void error(String name, String message){
 		if(!ENABLED)
 			return;
 		if(Logger.LOG_LEVEL <= Logger.ERROR)
-			System.out.println(df.format(CloudSim.clock())+" : "+name+" : "+message);
+			System.out.println(format(CloudSim.clock())+" : "+name+" : "+message);
+	}
+
+	/**
+	 * Prints an error message built only if error messages are printed.
+	 */
+	public static void error(String name, Supplier<String> message){
+		if(!ENABLED)
+			return;
+		if(Logger.LOG_LEVEL <= Logger.ERROR)
+			System.out.println(format(CloudSim.clock())+" : "+name+" : "+message.get());
+	}
+
+	/**
+	 * Records an event in the binary trace of the simulation, if one was opened with
+	 * {@link EventTrace#open(String)}. It does not depend on {@link #ENABLED}.
+	 *
+	 * @see EventTrace#record(int, int, int, int)
+	 */
+	public static void trace(int kind, int entityId, int tupleId, int value){
+		EventTrace.record(kind, entityId, tupleId, value);
 	}
 	
+	/**
+	 * Formats a time with the format of the current simulation context, since a DecimalFormat
+	 * cannot be shared by concurrent simulations.
+	 */
+	private static String format(double time){
+		SimulationContext context = SimulationContext.current();
+		DecimalFormat df = (DecimalFormat) context.getAttribute(Logger.class);
+		if(df == null){
+			df = new DecimalFormat("#.00");
+			context.setAttribute(Logger.class, df);
+		}
+		return df.format(time);
+	}
 }
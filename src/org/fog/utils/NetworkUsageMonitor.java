@@ -1,18 +1,35 @@
 package org.fog.utils;
 
+import org.cloudbus.cloudsim.core.SimulationContext;
+
 public class NetworkUsageMonitor {
 
-	private static double networkUsage = 0.0;
+	/**
+	 * The network usage of one simulation context.
+	 */
+	private static class Usage {
+		double networkUsage = 0.0;
+	}
+	
+	private static Usage getUsage(){
+		SimulationContext context = SimulationContext.current();
+		Usage usage = (Usage) context.getAttribute(Usage.class);
+		if(usage == null){
+			usage = new Usage();
+			context.setAttribute(Usage.class, usage);
+		}
+		return usage;
+	}
 	
 	public static void sendingTuple(double latency, double tupleNwSize){
-		networkUsage += latency*tupleNwSize;
+		getUsage().networkUsage += latency*tupleNwSize;
 	}
 	
 	public static void sendingModule(double latency, long moduleSize){
-		networkUsage += latency*moduleSize;
+		getUsage().networkUsage += latency*moduleSize;
 	}
 	
 	public static double getNetworkUsage(){
-		return networkUsage;
+		return getUsage().networkUsage;
 	}
 }
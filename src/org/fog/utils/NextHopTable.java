@@ -0,0 +1,272 @@
+package org.fog.utils;
+
+import org.fog.entities.FogDevice;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Next hops between all pairs of a set of devices, kept in one <tt>int</tt> array instead of boxed
+ * maps. The row of a device is exposed as a <tt>Map&lt;destination id, next device id&gt;</tt> view
+ * (see {@link #getRow(int)}) that can be given to a device as its routing table.
+ * <p>
+ * The next hop of a device to itself is its own id, and the next hop to an unreachable device is -1.
+ *
+ * @see ShortestPathRoutingGenerator
+ */
+public class NextHopTable {
+
+    /**
+     * Ids of the devices, by index.
+     */
+    private final int[] ids;
+
+    /**
+     * Indices of the devices, by id (-1 for the ids that are not in the table).
+     */
+    private final int[] indexOf;
+
+    /**
+     * The next hops, <tt>nextHops[source index * size + destination index]</tt>.
+     */
+    private final int[] nextHops;
+
+    private final Row[] rows;
+
+    /**
+     * The devices, by index, and the links the routes were computed for.
+     */
+    List<FogDevice> devices;
+    ShortestPathRoutingGenerator.Graph graph;
+
+    NextHopTable(int[] ids) {
+        this.ids = ids;
+        int maxId = -1;
+        for (int id : ids) {
+            maxId = Math.max(maxId, id);
+        }
+        indexOf = new int[maxId + 1];
+        Arrays.fill(indexOf, -1);
+        for (int i = 0; i < ids.length; i++) {
+            indexOf[ids[i]] = i;
+        }
+        nextHops = new int[ids.length * ids.length];
+        Arrays.fill(nextHops, -1);
+        rows = new Row[ids.length];
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @return the index of a device, or -1 if it is not in the table
+     */
+    int indexOf(int deviceId) {
+        return deviceId >= 0 && deviceId < indexOf.length ? indexOf[deviceId] : -1;
+    }
+
+    int getNextHopAt(int sourceIndex, int destIndex) {
+        return nextHops[sourceIndex * ids.length + destIndex];
+    }
+
+    void setNextHopAt(int sourceIndex, int destIndex, int nextId) {
+        nextHops[sourceIndex * ids.length + destIndex] = nextId;
+    }
+
+    /**
+     * Gets the next hop from a device to another.
+     *
+     * @return the id of the next device, or -1 if the destination is unreachable or one of the
+     * devices is not in the table
+     */
+    public int getNextHop(int sourceId, int destId) {
+        int source = indexOf(sourceId);
+        int dest = indexOf(destId);
+        if (source < 0 || dest < 0) {
+            return -1;
+        }
+        return getNextHopAt(source, dest);
+    }
+
+    /**
+     * Gets the routing table of a device. Changes to the returned map write through to this table.
+     *
+     * @param deviceId the id of the device
+     * @return the map of destination id to next device id
+     */
+    public synchronized Row getRow(int deviceId) {
+        int source = indexOf(deviceId);
+        if (source < 0) {
+            throw new IllegalArgumentException("Device " + deviceId + " is not in the routing table");
+        }
+        if (rows[source] == null) {
+            rows[source] = new Row(source);
+        }
+        return rows[source];
+    }
+
+    /**
+     * Gets the routing tables of all the devices.
+     *
+     * @return the map of source id to its routing table
+     */
+    public Map<Integer, Map<Integer, Integer>> toMap() {
+        Map<Integer, Map<Integer, Integer>> routing = new HashMap<>();
+        for (int id : ids) {
+            routing.put(id, getRow(id));
+        }
+        return routing;
+    }
+
+    /**
+     * The routing table of one device, backed by its row in the {@link NextHopTable}. Destinations
+     * that are not in the table can still be added; they are kept in a separate map.
+     */
+    public class Row extends AbstractMap<Integer, Integer> {
+
+        private final int source;
+
+        /**
+         * Routes to the devices that are not in the table, created on first use.
+         */
+        private Map<Integer, Integer> others;
+
+        private Row(int source) {
+            this.source = source;
+        }
+
+        /**
+         * @return the table this row belongs to
+         */
+        public NextHopTable getTable() {
+            return NextHopTable.this;
+        }
+
+        /**
+         * Gets the next hop to a destination without boxing.
+         *
+         * @return the id of the next device, or -1 if there is no route
+         */
+        public int getNextHop(int destId) {
+            int dest = indexOf(destId);
+            if (dest >= 0) {
+                return getNextHopAt(source, dest);
+            }
+            if (others != null) {
+                Integer nextId = others.get(destId);
+                if (nextId != null) {
+                    return nextId;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Integer get(Object key) {
+            if (!(key instanceof Integer)) {
+                return null;
+            }
+            int dest = indexOf((Integer) key);
+            if (dest >= 0) {
+                return getNextHopAt(source, dest);
+            }
+            return others != null ? others.get(key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            if (!(key instanceof Integer)) {
+                return false;
+            }
+            return indexOf((Integer) key) >= 0 || (others != null && others.containsKey(key));
+        }
+
+        @Override
+        public Integer put(Integer key, Integer value) {
+            int dest = indexOf(key);
+            if (dest >= 0) {
+                int previous = getNextHopAt(source, dest);
+                setNextHopAt(source, dest, value);
+                return previous;
+            }
+            if (others == null) {
+                others = new HashMap<>();
+            }
+            return others.put(key, value);
+        }
+
+        @Override
+        public int size() {
+            return ids.length + (others != null ? others.size() : 0);
+        }
+
+        @Override
+        public Set<Entry<Integer, Integer>> entrySet() {
+            return new AbstractSet<Entry<Integer, Integer>>() {
+                @Override
+                public Iterator<Entry<Integer, Integer>> iterator() {
+                    final Iterator<Entry<Integer, Integer>> rest = others != null ? others.entrySet().iterator() : null;
+                    return new Iterator<Entry<Integer, Integer>>() {
+                        private int dest = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return dest < ids.length || (rest != null && rest.hasNext());
+                        }
+
+                        @Override
+                        public Entry<Integer, Integer> next() {
+                            if (dest < ids.length) {
+                                final int index = dest++;
+                                return new SimpleEntry<Integer, Integer>(ids[index], getNextHopAt(source, index)) {
+                                    @Override
+                                    public Integer setValue(Integer value) {
+                                        super.setValue(value);
+                                        int previous = getNextHopAt(source, index);
+                                        setNextHopAt(source, index, value);
+                                        return previous;
+                                    }
+                                };
+                            }
+                            if (rest != null) {
+                                return rest.next();
+                            }
+                            throw new NoSuchElementException();
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return Row.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Creates an empty table (all next hops -1) for a list of devices.
+     */
+    static NextHopTable forDevices(List<FogDevice> devices) {
+        int[] ids = new int[devices.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = devices.get(i).getId();
+        }
+        NextHopTable table = new NextHopTable(ids);
+        table.devices = new ArrayList<>(devices);
+        return table;
+    }
+}
@@ -1,129 +1,249 @@
 package org.fog.utils;
 
-import org.apache.commons.math3.util.Pair;
 import org.fog.entities.FogDevice;
 import org.fog.entities.MicroserviceFogDevice;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by Samodha Pallewatta on 6/18/2021.
  * Creates a routing table considering shortest path between devices.
+ * <p>
+ * The devices and their parent, child and cluster links form an undirected graph weighted by the
+ * link latencies. The routes of each source device are found by a Dijkstra search from it, so the
+ * sources are independent and can be searched in parallel. The next hops are stored in a
+ * {@link NextHopTable}.
  */
 public class ShortestPathRoutingGenerator {
 
+    /**
+     * Number of devices below which the sources are searched on the calling thread only.
+     */
+    private static final int MIN_DEVICES_PER_THREAD = 256;
+
     public static Map<Integer, Map<Integer, Integer>> generateRoutingTable(List<FogDevice> fogDevices) {
         // <source device id>  ->  <dest device id,next device to route to>
-        Map<Integer, Map<Integer, Integer>> routing = new HashMap<>();
-        Map<String, Map<String, String>> routingString = new HashMap<>();
-        int size = fogDevices.size();
-
-        int[][] routingMatrix = new int[size][size];
-        double[][] distanceMatrix = new double[size][size];
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
-                routingMatrix[row][column] = -1;
-                distanceMatrix[row][column] = -1;
-            }
-        }
-
-        boolean change = true;
-        boolean firstIteration = true;
-        while (change || firstIteration) {
-            change = false;
-            for (int row = 0; row < size; row++) {
-                for (int column = 0; column < size; column++) {
-                    double dist = distanceMatrix[row][column];
-                    FogDevice rFog = fogDevices.get(row);
-                    FogDevice cFog = fogDevices.get(column);
-                    if (firstIteration && dist < 0) {
-                        if (row == column) {
-                            dist = 0;
-                        } else {
-                            dist = directlyConnectedDist(rFog, cFog);
-                        }
-                        if (dist >= 0) {
-                            change = true;
-                            distanceMatrix[row][column] = dist;
-                            distanceMatrix[column][row] = dist;
-
-                            // directly connected
-                            routingMatrix[row][column] = cFog.getId();
-                            routingMatrix[column][row] = rFog.getId();
-                        }
-                    }
-                    if (dist < 0) {
-                        Pair<Double, Integer> result = indirectDist(row, column, size, distanceMatrix);
-                        dist = result.getFirst();
-                        int mid = result.getSecond();
-                        if (dist >= 0) {
-                            change = true;
-                            distanceMatrix[row][column] = dist;
-                            routingMatrix[row][column] = routingMatrix[row][mid];
-                        }
-                    }
-                    if (dist > 0) {
-                        Pair<Double, Integer> result = indirectDist(row, column, size, distanceMatrix);
-                        double distNew = result.getFirst();
-                        int mid = result.getSecond();
-                        if (distNew < dist) {
-                            change = true;
-                            distanceMatrix[row][column] = distNew;
-                            routingMatrix[row][column] = routingMatrix[row][mid];
-                        }
-                    }
+        return generateNextHopTable(fogDevices).toMap();
+    }
+
+    /**
+     * Creates the routing table of a set of devices, using one thread per available processor for
+     * large topologies.
+     *
+     * @param fogDevices the devices
+     * @return the next hops between all pairs of devices
+     */
+    public static NextHopTable generateNextHopTable(List<FogDevice> fogDevices) {
+        return generateNextHopTable(fogDevices, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates the routing table of a set of devices.
+     *
+     * @param fogDevices the devices
+     * @param threads    the maximum number of threads searching the routes
+     * @return the next hops between all pairs of devices
+     */
+    public static NextHopTable generateNextHopTable(List<FogDevice> fogDevices, int threads) {
+        NextHopTable table = NextHopTable.forDevices(fogDevices);
+        Graph graph = new Graph(fogDevices, table);
+        int[] sources = new int[table.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = i;
+        }
+        computeRoutes(graph, table, sources, threads);
+        table.graph = graph;
+        logRoutingTable(table, fogDevices);
+        return table;
+    }
+
+    /**
+     * Updates a routing table after the link between two devices has been added, removed or has
+     * changed latency, e.g. when cluster links change.
+     *
+     * @param table     the routing table, created by {@link #generateNextHopTable(List)}
+     * @param deviceId1 one end of the link
+     * @param deviceId2 the other end of the link
+     * @see #updateLinks(NextHopTable, List)
+     */
+    public static void updateLink(NextHopTable table, int deviceId1, int deviceId2) {
+        updateLinks(table, Arrays.asList(new int[]{deviceId1, deviceId2}));
+    }
+
+    /**
+     * Updates a routing table after links between devices have been added, removed or have changed
+     * latency, e.g. when a device moves to another parent. The other links are kept as they were
+     * when the table was generated or last updated. Only the sources for which an old link was on
+     * a shortest path, or a new link gives a shorter one, are searched again.
+     *
+     * @param table the routing table, created by {@link #generateNextHopTable(List)}
+     * @param links the ids of the two ends of each changed link
+     */
+    public static void updateLinks(NextHopTable table, List<int[]> links) {
+        Graph oldGraph = table.graph;
+        Graph graph = oldGraph.relink(table.devices, table, links);
+        table.graph = graph;
+
+        // the distances are those of the old routes, so decide for all the sources before searching again
+        int size = table.size();
+        boolean[] affected = new boolean[size];
+        for (int[] link : links) {
+            int a = table.indexOf(link[0]);
+            int b = table.indexOf(link[1]);
+            if (a < 0 || b < 0 || a == b) {
+                continue;
+            }
+            double oldLatency = oldGraph.weight(a, b);
+            double latency = graph.weight(a, b);
+            if (oldLatency == latency) {
+                continue;
+            }
+            for (int source = 0; source < size; source++) {
+                if (affected[source]) {
+                    continue;
+                }
+                double toA = pathLatency(oldGraph, table, source, a);
+                double toB = pathLatency(oldGraph, table, source, b);
+                if (Double.isNaN(toA) || Double.isNaN(toB)) {
+                    affected[source] = true;
+                } else if (oldLatency >= 0 && onShortestPath(toA, toB, oldLatency)) {
+                    affected[source] = true;
+                } else if (latency >= 0 && (toA + latency < toB || toB + latency < toA)) {
+                    affected[source] = true;
                 }
             }
-            firstIteration = false;
         }
 
-        for (int row = 0; row < size; row++) {
-            for (int column = 0; column < size; column++) {
-                int sourceId = fogDevices.get(row).getId();
-                int destId = fogDevices.get(column).getId();
-                if (routing.containsKey(sourceId)) {
-                    routing.get(sourceId).put(destId, routingMatrix[row][column]);
-                    routingString.get(fogDevices.get(row).getName()).put(fogDevices.get(column).getName(), getFogDeviceById(routingMatrix[row][column], fogDevices).getName());
-                } else {
-                    Map<Integer, Integer> route = new HashMap<>();
-                    route.put(destId, routingMatrix[row][column]);
-                    routing.put(sourceId, route);
+        int[] sources = new int[size];
+        int count = 0;
+        for (int source = 0; source < size; source++) {
+            if (affected[source]) {
+                sources[count++] = source;
+            }
+        }
+        computeRoutes(graph, table, Arrays.copyOf(sources, count), Runtime.getRuntime().availableProcessors());
+    }
 
-                    Map<String, String> routeS = new HashMap<>();
-                    routeS.put(fogDevices.get(column).getName(), getFogDeviceById(routingMatrix[row][column], fogDevices).getName());
-                    routingString.put(fogDevices.get(row).getName(), routeS);
-                }
+    /**
+     * Updates a routing table after the links of a device have changed, e.g. when it moves to
+     * another parent or joins a cluster. The routes of all the devices may then go over the new
+     * links, so the microservice devices and controllers only call it when
+     * {@link Config#SHORTEST_PATH_CLUSTER_ROUTING} is set, and otherwise patch the rows concerned.
+     *
+     * @param table    the routing table, created by {@link #generateNextHopTable(List)}
+     * @param deviceId the device
+     * @see #updateLinks(NextHopTable, List)
+     */
+    public static void updateDevice(NextHopTable table, int deviceId) {
+        int index = table.indexOf(deviceId);
+        if (index < 0) {
+            return;
+        }
+        // the links the table knows of, and the links the device has now
+        List<int[]> links = new ArrayList<>();
+        for (int neighbour : table.graph.neighbours(index)) {
+            links.add(new int[]{deviceId, table.getId(neighbour)});
+        }
+        FogDevice device = table.devices.get(index);
+        links.add(new int[]{deviceId, device.getParentId()});
+        if (device.getChildrenIds() != null) {
+            for (int childId : device.getChildrenIds()) {
+                links.add(new int[]{deviceId, childId});
             }
         }
+        if (device.getClusterMembers() != null) {
+            for (int memberId : device.getClusterMembers()) {
+                links.add(new int[]{deviceId, memberId});
+            }
+        }
+        updateLinks(table, links);
+    }
 
-        System.out.println("Routing Table : ");
-        for (String deviceName : routingString.keySet()) {
-            System.out.println(deviceName + " : " + routingString.get(deviceName).toString());
+    private static boolean onShortestPath(double toA, double toB, double latency) {
+        if (Double.isInfinite(toA) || Double.isInfinite(toB)) {
+            return false;
         }
-        System.out.println("\n");
+        // the two distances are summed along different routes, so allow for rounding
+        return Math.abs(Math.abs(toA - toB) - latency) <= 1e-9 * Math.max(1, Math.max(toA, toB));
+    }
 
-        return routing;
+    /**
+     * Follows the next hops from a source to a destination and adds up the latencies.
+     *
+     * @return the latency of the route, infinity if there is none, or NaN if the route loops or
+     * goes through a link that does not exist
+     */
+    private static double pathLatency(Graph graph, NextHopTable table, int source, int dest) {
+        double latency = 0;
+        int current = source;
+        for (int hops = 0; current != dest; hops++) {
+            int nextId = table.getNextHopAt(current, dest);
+            if (nextId < 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            int next = table.indexOf(nextId);
+            double weight = next >= 0 ? graph.weight(current, next) : -1;
+            if (weight < 0 || hops == table.size()) {
+                return Double.NaN;
+            }
+            latency += weight;
+            current = next;
+        }
+        return latency;
     }
 
+    private static void computeRoutes(final Graph graph, final NextHopTable table, final int[] sources, int threads) {
+        threads = Math.max(1, Math.min(threads, sources.length / MIN_DEVICES_PER_THREAD));
+        if (threads == 1) {
+            new Search(graph, table).run(sources, 0, 1);
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                final int step = threads;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        new Search(graph, table).run(sources, first, step);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating the routing table", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to generate the routing table", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-    private static Pair<Double, Integer> indirectDist(int row, int dest, int size, double[][] distanceMatrix) {
-        double minDistFromDirectConn = distanceMatrix[row][dest];
-        int midPoint = -1;
-        for (int column = 0; column < size; column++) {
-            if (distanceMatrix[row][column] >= 0 && distanceMatrix[column][dest] >= 0) {
-                double totalDist = distanceMatrix[row][column] + distanceMatrix[column][dest];
-                if (minDistFromDirectConn >= 0 && totalDist < minDistFromDirectConn) {
-                    minDistFromDirectConn = totalDist;
-                    midPoint = column;
-                } else if (minDistFromDirectConn < 0) {
-                    minDistFromDirectConn = totalDist;
-                    midPoint = column;
-                }
+    private static void logRoutingTable(NextHopTable table, List<FogDevice> fogDevices) {
+        if (!Logger.ENABLED) {
+            return;
+        }
+        for (int source = 0; source < table.size(); source++) {
+            StringBuilder routes = new StringBuilder();
+            for (int dest = 0; dest < table.size(); dest++) {
+                int next = table.indexOf(table.getNextHopAt(source, dest));
+                routes.append(dest == 0 ? "{" : ", ").append(fogDevices.get(dest).getName()).append('=')
+                        .append(next >= 0 ? fogDevices.get(next).getName() : "-");
             }
+            Logger.debug("Routing Table", fogDevices.get(source).getName() + " : " + routes.append('}'));
         }
-        return new Pair<>(minDistFromDirectConn, midPoint);
     }
 
     private static double directlyConnectedDist(FogDevice rFog, FogDevice cFog) {
@@ -140,11 +260,246 @@ public class ShortestPathRoutingGenerator {
         return -1;
     }
 
-    private static FogDevice getFogDeviceById(int id, List<FogDevice> fogDevices) {
-        for (FogDevice f : fogDevices) {
-            if (f.getId() == id)
-                return f;
+    /**
+     * The links between the devices, by device index, in compressed adjacency arrays.
+     */
+    static class Graph {
+
+        private final int[] start;
+        private final int[] neighbours;
+        private final double[] latencies;
+
+        Graph(List<FogDevice> fogDevices, NextHopTable table) {
+            this(fogDevices, links(fogDevices, table));
+        }
+
+        private Graph(List<FogDevice> fogDevices, List<List<Integer>> adjacent) {
+            int size = fogDevices.size();
+            start = new int[size + 1];
+            for (int i = 0; i < size; i++) {
+                start[i + 1] = start[i] + adjacent.get(i).size();
+            }
+            neighbours = new int[start[size]];
+            latencies = new double[start[size]];
+            for (int i = 0; i < size; i++) {
+                int k = start[i];
+                for (int j : adjacent.get(i)) {
+                    // a link has the latency seen from the device that comes first in the list
+                    int first = Math.min(i, j);
+                    int second = Math.max(i, j);
+                    double latency = directlyConnectedDist(fogDevices.get(first), fogDevices.get(second));
+                    if (latency < 0) {
+                        latency = directlyConnectedDist(fogDevices.get(second), fogDevices.get(first));
+                    }
+                    neighbours[k] = j;
+                    latencies[k++] = latency;
+                }
+            }
+        }
+
+        private static List<List<Integer>> links(List<FogDevice> fogDevices, NextHopTable table) {
+            int size = fogDevices.size();
+            List<List<Integer>> adjacent = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                adjacent.add(new ArrayList<Integer>());
+            }
+            for (int i = 0; i < size; i++) {
+                FogDevice device = fogDevices.get(i);
+                addLink(adjacent, i, table.indexOf(device.getParentId()));
+                if (device.getChildrenIds() != null) {
+                    for (int childId : device.getChildrenIds()) {
+                        addLink(adjacent, i, table.indexOf(childId));
+                    }
+                }
+                if (device.getClusterMembers() != null) {
+                    for (int memberId : device.getClusterMembers()) {
+                        addLink(adjacent, i, table.indexOf(memberId));
+                    }
+                }
+            }
+            return adjacent;
+        }
+
+        /**
+         * Creates the graph with the given links as they are now between the devices, and the other
+         * links as in this graph.
+         *
+         * @param fogDevices the devices, in the order of the table
+         * @param table      the routing table
+         * @param links      the ids of the two ends of each changed link
+         */
+        Graph relink(List<FogDevice> fogDevices, NextHopTable table, List<int[]> links) {
+            int size = fogDevices.size();
+            List<List<Integer>> adjacent = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                List<Integer> devices = new ArrayList<>(start[i + 1] - start[i]);
+                for (int k = start[i]; k < start[i + 1]; k++) {
+                    devices.add(neighbours[k]);
+                }
+                adjacent.add(devices);
+            }
+            for (int[] link : links) {
+                int a = table.indexOf(link[0]);
+                int b = table.indexOf(link[1]);
+                if (a < 0 || b < 0 || a == b) {
+                    continue;
+                }
+                adjacent.get(a).remove(Integer.valueOf(b));
+                adjacent.get(b).remove(Integer.valueOf(a));
+                if (directlyConnectedDist(fogDevices.get(a), fogDevices.get(b)) >= 0
+                        || directlyConnectedDist(fogDevices.get(b), fogDevices.get(a)) >= 0) {
+                    addLink(adjacent, a, b);
+                }
+            }
+            return new Graph(fogDevices, adjacent);
+        }
+
+        private static void addLink(List<List<Integer>> adjacent, int i, int j) {
+            if (j < 0 || j == i) {
+                return;
+            }
+            if (!adjacent.get(i).contains(j)) {
+                adjacent.get(i).add(j);
+            }
+            if (!adjacent.get(j).contains(i)) {
+                adjacent.get(j).add(i);
+            }
+        }
+
+        /**
+         * @return the indexes of the devices linked to a device
+         */
+        int[] neighbours(int i) {
+            return Arrays.copyOfRange(neighbours, start[i], start[i + 1]);
+        }
+
+        /**
+         * @return the latency of the link between two devices, or -1 if they are not linked
+         */
+        double weight(int i, int j) {
+            for (int k = start[i]; k < start[i + 1]; k++) {
+                if (neighbours[k] == j) {
+                    return latencies[k];
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Dijkstra search with a binary heap indexed by device, reused for several sources.
+     */
+    private static class Search {
+
+        private final Graph graph;
+        private final NextHopTable table;
+        private final double[] distance;
+        private final int[] firstHop;
+        private final int[] heap;
+        private final int[] position;
+        private int heapSize;
+
+        Search(Graph graph, NextHopTable table) {
+            this.graph = graph;
+            this.table = table;
+            int size = table.size();
+            distance = new double[size];
+            firstHop = new int[size];
+            heap = new int[size];
+            position = new int[size];
+        }
+
+        /**
+         * Searches the routes of <tt>sources[first]</tt>, <tt>sources[first + step]</tt>, ...
+         */
+        void run(int[] sources, int first, int step) {
+            for (int i = first; i < sources.length; i += step) {
+                search(sources[i]);
+            }
+        }
+
+        private void search(int source) {
+            Arrays.fill(distance, Double.POSITIVE_INFINITY);
+            Arrays.fill(firstHop, -1);
+            Arrays.fill(position, -1);
+            heapSize = 0;
+
+            distance[source] = 0;
+            firstHop[source] = table.getId(source);
+            push(source);
+            while (heapSize > 0) {
+                int u = pop();
+                for (int k = graph.start[u]; k < graph.start[u + 1]; k++) {
+                    int v = graph.neighbours[k];
+                    double d = distance[u] + graph.latencies[k];
+                    if (d < distance[v]) {
+                        distance[v] = d;
+                        firstHop[v] = u == source ? table.getId(v) : firstHop[u];
+                        if (position[v] < 0) {
+                            push(v);
+                        } else {
+                            siftUp(position[v]);
+                        }
+                    }
+                }
+            }
+            for (int dest = 0; dest < firstHop.length; dest++) {
+                table.setNextHopAt(source, dest, firstHop[dest]);
+            }
+        }
+
+        private void push(int v) {
+            heap[heapSize] = v;
+            position[v] = heapSize;
+            siftUp(heapSize++);
+        }
+
+        private int pop() {
+            int top = heap[0];
+            heap[0] = heap[--heapSize];
+            position[heap[0]] = 0;
+            // popped devices are settled, they are never pushed again
+            position[top] = Integer.MAX_VALUE;
+            if (heapSize > 0) {
+                siftDown(0);
+            }
+            return top;
+        }
+
+        private void siftUp(int i) {
+            int v = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distance[heap[parent]] <= distance[v]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                position[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = v;
+            position[v] = i;
+        }
+
+        private void siftDown(int i) {
+            int v = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && distance[heap[child + 1]] < distance[heap[child]]) {
+                    child++;
+                }
+                if (distance[v] <= distance[heap[child]]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                position[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = v;
+            position[v] = i;
         }
-        return null;
     }
 }
@@ -3,27 +3,31 @@ package org.fog.utils;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.math3.util.Pair;
 import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
 import org.fog.entities.Tuple;
 
 public class TimeKeeper {
 
-	private static TimeKeeper instance;
-	
 	private long simulationStartTime;
 	private int count; 
-	private Map<Integer, Double> emitTimes;
+	private TupleTimeTable emitTimes;
 	private Map<Integer, Double> endTimes;
-	private Map<Integer, List<Integer>> loopIdToTupleIds;
-	private Map<Integer, Double> tupleIdToCpuStartTime;
+	private TupleTimeTable tupleIdToCpuStartTime;
 	private Map<String, Double> tupleTypeToAverageCpuTime;
 	private Map<String, Integer> tupleTypeToExecutedTupleCount;
 	
 	private Map<Integer, Double> loopIdToCurrentAverage;
 	private Map<Integer, Integer> loopIdToCurrentNum;
 
+	/** Distribution of the delays of each application loop, from the first tuple emitted on it. */
+	private Map<Integer, LatencyHistogram> loopIdToDelayHistogram = new HashMap<>();
+	/** Distribution of the CPU execution times of each tuple type. */
+	private Map<String, LatencyHistogram> tupleTypeToCpuTimeHistogram = new HashMap<>();
+
 	private Map<Integer, Integer> loopIdToLatencyQoSSuccessCount = new HashMap<>();
 
 	// loopID -> < Microservice -> < deviceID, <requestCount,totalExecutionTime > >
@@ -31,9 +35,16 @@ public class TimeKeeper {
 	// last execution time
 	private Map<Integer, Double> tupleIdToExecutionTime = new HashMap<>();
 	
+	/**
+	 * Gets the time keeper of the simulation context of the calling thread.
+	 */
 	public static TimeKeeper getInstance(){
-		if(instance == null)
+		SimulationContext context = SimulationContext.current();
+		TimeKeeper instance = (TimeKeeper) context.getAttribute(TimeKeeper.class);
+		if(instance == null){
 			instance = new TimeKeeper();
+			context.setAttribute(TimeKeeper.class, instance);
+		}
 		return instance;
 	}
 	
@@ -41,36 +52,83 @@ public class TimeKeeper {
 		return count++;
 	}
 	
+	/**
+	 * Records a tuple starting an application loop.
+	 * 
+	 * @param loopId the id of the loop
+	 * @return the id of the tuple, used to close the loop
+	 */
+	public int tupleEmitted(int loopId){
+		return tupleEmitted(loopId, CloudSim.clock());
+	}
+	
+	/**
+	 * Records a tuple starting an application loop at a given time, for the sensors that send
+	 * their tuples ahead of their emission.
+	 * 
+	 * @param loopId the id of the loop
+	 * @param emitTime the time the tuple is emitted
+	 * @return the id of the tuple, used to close the loop
+	 */
+	public int tupleEmitted(int loopId, double emitTime){
+		int tupleId = getUniqueId();
+		if(!loopIdToDelayHistogram.containsKey(loopId))
+			loopIdToDelayHistogram.put(loopId, new LatencyHistogram());
+		emitTimes.put(tupleId, emitTime);
+		return tupleId;
+	}
+	
+	/**
+	 * Records a tuple reaching the end of an application loop.
+	 * 
+	 * @param loopId the id of the loop
+	 * @param tupleId the id given to the tuple when it was emitted
+	 * @return false if the emission of the tuple is unknown, or has been evicted
+	 */
+	public boolean loopEnded(int loopId, int tupleId){
+		if(!emitTimes.containsKey(tupleId))
+			return false;
+		if(!loopIdToCurrentAverage.containsKey(loopId)){
+			loopIdToCurrentAverage.put(loopId, 0.0);
+			loopIdToCurrentNum.put(loopId, 0);
+		}
+		double currentAverage = loopIdToCurrentAverage.get(loopId);
+		int currentCount = loopIdToCurrentNum.get(loopId);
+		double delay = CloudSim.clock() - emitTimes.remove(tupleId);
+		double newAverage = (currentAverage*currentCount + delay)/(currentCount+1);
+		loopIdToCurrentAverage.put(loopId, newAverage);
+		loopIdToCurrentNum.put(loopId, currentCount+1);
+		loopIdToDelayHistogram.get(loopId).add(delay);
+		return true;
+	}
+	
 	public void tupleStartedExecution(Tuple tuple){
-		tupleIdToCpuStartTime.put(tuple.getCloudletId(), CloudSim.clock());
+		tupleIdToCpuStartTime.putShared(tuple.getCloudletId(), CloudSim.clock());
 	}
 	
 	public void tupleEndedExecution(Tuple tuple){
 		if(!tupleIdToCpuStartTime.containsKey(tuple.getCloudletId()))
 			return;
-		double executionTime = CloudSim.clock() - tupleIdToCpuStartTime.get(tuple.getCloudletId());
+		double executionTime = CloudSim.clock() - tupleIdToCpuStartTime.release(tuple.getCloudletId());
 		if(!tupleTypeToAverageCpuTime.containsKey(tuple.getTupleType())){
 			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), executionTime);
 			tupleTypeToExecutedTupleCount.put(tuple.getTupleType(), 1);
+			tupleTypeToCpuTimeHistogram.put(tuple.getTupleType(), new LatencyHistogram());
 		} else{
 			double currentAverage = tupleTypeToAverageCpuTime.get(tuple.getTupleType());
 			int currentCount = tupleTypeToExecutedTupleCount.get(tuple.getTupleType());
 			tupleTypeToAverageCpuTime.put(tuple.getTupleType(), (currentAverage*currentCount+executionTime)/(currentCount+1));
 		}
-	}
-	
-	public Map<Integer, List<Integer>> loopIdToTupleIds(){
-		return getInstance().getLoopIdToTupleIds();
+		tupleTypeToCpuTimeHistogram.get(tuple.getTupleType()).add(executionTime);
 	}
 	
 	private TimeKeeper(){
 		count = 1;
-		setEmitTimes(new HashMap<Integer, Double>());
+		emitTimes = new TupleTimeTable(Config.MAX_TRACKED_TUPLES);
+		tupleIdToCpuStartTime = new TupleTimeTable(Config.MAX_TRACKED_TUPLES);
 		setEndTimes(new HashMap<Integer, Double>());
-		setLoopIdToTupleIds(new HashMap<Integer, List<Integer>>());
 		setTupleTypeToAverageCpuTime(new HashMap<String, Double>());
 		setTupleTypeToExecutedTupleCount(new HashMap<String, Integer>());
-		setTupleIdToCpuStartTime(new HashMap<Integer, Double>());
 		setLoopIdToCurrentAverage(new HashMap<Integer, Double>());
 		setLoopIdToCurrentNum(new HashMap<Integer, Integer>());
 	}
@@ -83,12 +141,19 @@ public class TimeKeeper {
 		this.count = count;
 	}
 
+	/**
+	 * Gets the emission times of the tuples whose loop has not ended yet, by tuple id. Only the
+	 * most recent {@link Config#MAX_TRACKED_TUPLES} tuples are kept.
+	 */
 	public Map<Integer, Double> getEmitTimes() {
-		return emitTimes;
+		return emitTimes.asMap();
 	}
 
-	public void setEmitTimes(Map<Integer, Double> emitTimes) {
-		this.emitTimes = emitTimes;
+	/**
+	 * @return the number of tuples whose emission time was dropped before their loop ended
+	 */
+	public long getEvictedEmitTimeCount() {
+		return emitTimes.getEvictedCount();
 	}
 
 	public Map<Integer, Double> getEndTimes() {
@@ -99,12 +164,26 @@ public class TimeKeeper {
 		this.endTimes = endTimes;
 	}
 
-	public Map<Integer, List<Integer>> getLoopIdToTupleIds() {
-		return loopIdToTupleIds;
+	/**
+	 * @return the ids of the loops on which tuples have been emitted
+	 */
+	public Set<Integer> getLoopIds() {
+		return loopIdToDelayHistogram.keySet();
 	}
 
-	public void setLoopIdToTupleIds(Map<Integer, List<Integer>> loopIdToTupleIds) {
-		this.loopIdToTupleIds = loopIdToTupleIds;
+	/**
+	 * @return the distribution of the delays of a loop, or null if no tuple was emitted on it
+	 */
+	public LatencyHistogram getLoopDelayHistogram(int loopId) {
+		return loopIdToDelayHistogram.get(loopId);
+	}
+
+	/**
+	 * @return the distribution of the CPU execution times of a tuple type, or null if no such
+	 * tuple has been executed
+	 */
+	public LatencyHistogram getCpuTimeHistogram(String tupleType) {
+		return tupleTypeToCpuTimeHistogram.get(tupleType);
 	}
 
 	public Map<String, Double> getTupleTypeToAverageCpuTime() {
@@ -125,12 +204,12 @@ public class TimeKeeper {
 		this.tupleTypeToExecutedTupleCount = tupleTypeToExecutedTupleCount;
 	}
 
+	/**
+	 * Gets the start times of the tuples being executed, by cloudlet id. Only the most recent
+	 * {@link Config#MAX_TRACKED_TUPLES} tuples are kept.
+	 */
 	public Map<Integer, Double> getTupleIdToCpuStartTime() {
-		return tupleIdToCpuStartTime;
-	}
-
-	public void setTupleIdToCpuStartTime(Map<Integer, Double> tupleIdToCpuStartTime) {
-		this.tupleIdToCpuStartTime = tupleIdToCpuStartTime;
+		return tupleIdToCpuStartTime.asMap();
 	}
 
 	public long getSimulationStartTime() {
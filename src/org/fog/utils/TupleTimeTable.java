@@ -0,0 +1,227 @@
+package org.fog.utils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Times of the tuples in flight, by tuple id, in primitive arrays. Tuple ids are handed out in
+ * increasing order, so the table is a ring indexed by the low bits of the id: it grows while the
+ * oldest entry is still in use, up to a maximum size, and then the oldest entries are evicted. The
+ * memory used therefore stays bounded however long the simulation runs.
+ * <p>
+ * Copies of a tuple sent to several modules share its id. Each entry therefore counts its uses
+ * (see {@link #putShared(int, double)}) and is only removed when the last one is released.
+ */
+class TupleTimeTable {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private final int maxCapacity;
+	private int[] ids;
+	private double[] times;
+	private int[] uses;
+	private int size;
+	private long evicted;
+
+	/**
+	 * @param maxCapacity the maximum number of entries, rounded up to a power of two
+	 */
+	TupleTimeTable(int maxCapacity) {
+		this.maxCapacity = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, maxCapacity) - 1) << 1;
+		ids = new int[INITIAL_CAPACITY];
+		times = new double[INITIAL_CAPACITY];
+		uses = new int[INITIAL_CAPACITY];
+		Arrays.fill(ids, FREE);
+	}
+
+	void put(int id, double time) {
+		int slot = insert(id, time);
+		uses[slot] = 1;
+	}
+
+	/**
+	 * Puts the time of a tuple that is used once more, e.g. by another copy of it. The time replaces
+	 * the previous one, but the entry is kept until all its uses are released.
+	 */
+	void putShared(int id, double time) {
+		int slot = insert(id, time);
+		uses[slot]++;
+	}
+
+	/**
+	 * @return the slot of the tuple, whose uses are 0 if it was not in the table
+	 */
+	private int insert(int id, double time) {
+		int slot = id & (ids.length - 1);
+		if (ids[slot] != FREE && ids[slot] != id) {
+			if (ids.length < maxCapacity) {
+				grow();
+				return insert(id, time);
+			}
+			evicted++;
+			size--;
+		}
+		if (ids[slot] != id) {
+			size++;
+			uses[slot] = 0;
+		}
+		ids[slot] = id;
+		times[slot] = time;
+		return slot;
+	}
+
+	boolean containsKey(int id) {
+		return ids[id & (ids.length - 1)] == id;
+	}
+
+	/**
+	 * @return the time of a tuple, or NaN if it is not in the table
+	 */
+	double get(int id) {
+		int slot = id & (ids.length - 1);
+		return ids[slot] == id ? times[slot] : Double.NaN;
+	}
+
+	/**
+	 * @return the time of the tuple, or NaN if it was not in the table
+	 */
+	double remove(int id) {
+		int slot = id & (ids.length - 1);
+		if (ids[slot] != id)
+			return Double.NaN;
+		ids[slot] = FREE;
+		size--;
+		return times[slot];
+	}
+
+	/**
+	 * Releases one use of a tuple, and removes it when no use is left.
+	 *
+	 * @return the time of the tuple, or NaN if it was not in the table
+	 */
+	double release(int id) {
+		int slot = id & (ids.length - 1);
+		if (ids[slot] != id)
+			return Double.NaN;
+		if (--uses[slot] == 0) {
+			ids[slot] = FREE;
+			size--;
+		}
+		return times[slot];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of entries dropped to keep the table within its maximum size
+	 */
+	long getEvictedCount() {
+		return evicted;
+	}
+
+	private void grow() {
+		int[] oldIds = ids;
+		double[] oldTimes = times;
+		int[] oldUses = uses;
+		int capacity = oldIds.length << 1;
+		ids = new int[capacity];
+		times = new double[capacity];
+		uses = new int[capacity];
+		Arrays.fill(ids, FREE);
+		for (int i = 0; i < oldIds.length; i++) {
+			if (oldIds[i] != FREE) {
+				int slot = oldIds[i] & (capacity - 1);
+				ids[slot] = oldIds[i];
+				times[slot] = oldTimes[i];
+				uses[slot] = oldUses[i];
+			}
+		}
+	}
+
+	/**
+	 * Gets a map view of the table, for the callers that expect a map.
+	 */
+	Map<Integer, Double> asMap() {
+		return new AbstractMap<Integer, Double>() {
+
+			@Override
+			public Double get(Object key) {
+				if (!(key instanceof Integer) || !TupleTimeTable.this.containsKey((Integer) key))
+					return null;
+				return TupleTimeTable.this.get((Integer) key);
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return key instanceof Integer && TupleTimeTable.this.containsKey((Integer) key);
+			}
+
+			@Override
+			public Double put(Integer key, Double value) {
+				Double previous = get(key);
+				TupleTimeTable.this.put(key, value);
+				return previous;
+			}
+
+			@Override
+			public Double remove(Object key) {
+				Double previous = get(key);
+				if (previous != null)
+					TupleTimeTable.this.remove((Integer) key);
+				return previous;
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Set<Entry<Integer, Double>> entrySet() {
+				return new AbstractSet<Entry<Integer, Double>>() {
+
+					@Override
+					public Iterator<Entry<Integer, Double>> iterator() {
+						return new Iterator<Entry<Integer, Double>>() {
+							private int slot = nextSlot(0);
+
+							private int nextSlot(int from) {
+								while (from < ids.length && ids[from] == FREE)
+									from++;
+								return from;
+							}
+
+							@Override
+							public boolean hasNext() {
+								return slot < ids.length;
+							}
+
+							@Override
+							public Entry<Integer, Double> next() {
+								if (slot >= ids.length)
+									throw new NoSuchElementException();
+								Entry<Integer, Double> entry = new SimpleImmutableEntry<Integer, Double>(ids[slot], times[slot]);
+								slot = nextSlot(slot + 1);
+								return entry;
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return size;
+					}
+				};
+			}
+		};
+	}
+}